@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.NearCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отдельная H2-база в памяти со схемой из миграций приложения и синтетическими данными заданного размера.
+ * Id пользователей и фильмов идут подряд с 1, поэтому бенчмарки могут выбирать их случайно.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final int BATCH_SIZE = 1000;
+    private static final int GENRES = 6;
+    private static final int MPA_RATINGS = 5;
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random = new Random(42);
+    private int users;
+    private int films;
+
+    public BenchmarkDatabase() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:bench" + COUNTER.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(16);
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getFilms() {
+        return films;
+    }
+
+    public FilmDbStorage filmStorage() {
+        return new FilmDbStorage(jdbcTemplate);
+    }
+
+    public UserDbStorage userStorage() {
+        UserDbStorage storage = new UserDbStorage(jdbcTemplate);
+        storage.reloadFriendGraph();
+        return storage;
+    }
+
+    public MpaDbStorage mpaStorage() {
+        MpaDbStorage storage = new MpaDbStorage(jdbcTemplate);
+        storage.refresh();
+        return storage;
+    }
+
+    public GenreDbStorage genreStorage() {
+        GenreDbStorage storage = new GenreDbStorage(jdbcTemplate);
+        storage.refresh();
+        return storage;
+    }
+
+    /**
+     * Ближний кэш без ограничения по времени и без оценки памяти; выключенный пропускает все чтения в хранилище.
+     */
+    public static <T> NearCache<T> nearCache(boolean enabled) {
+        return new NearCache<>(enabled, 100_000, Duration.ZERO, value -> 0);
+    }
+
+    public BenchmarkDatabase seedUsers(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{"user" + i + "@example.com", "user" + i, "User " + i, "1990-01-01"});
+        }
+        batch("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)", rows);
+        users += count;
+        return this;
+    }
+
+    /**
+     * Фильмы с 1–3 жанрами и случайным рейтингом MPA.
+     */
+    public BenchmarkDatabase seedFilms(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{"Film " + i, "Description of film " + i, "2000-01-01", 90 + i % 60,
+                    1 + random.nextInt(MPA_RATINGS)});
+        }
+        batch("INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)", rows);
+
+        List<Object[]> genres = new ArrayList<>();
+        for (int film = films + 1; film <= films + count; film++) {
+            int first = 1 + random.nextInt(GENRES);
+            int extra = random.nextInt(3);
+            for (int g = 0; g < extra + 1; g++) {
+                genres.add(new Object[]{film, 1 + (first + g - 1) % GENRES});
+            }
+        }
+        batch("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genres);
+        films += count;
+        return this;
+    }
+
+    /**
+     * Каждый пользователь лайкает perUser разных фильмов; популярность смещена к фильмам с малыми id.
+     */
+    public BenchmarkDatabase seedLikes(int perUser) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int user = 1; user <= users; user++) {
+            for (long film : skewedDistinct(perUser, films)) {
+                rows.add(new Object[]{film, user});
+            }
+        }
+        batch("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", rows);
+        filmStorage().reconcileLikeCounts();
+        return this;
+    }
+
+    /**
+     * Каждый пользователь добавляет в друзья perUser других; у «ранних» пользователей друзей больше всего.
+     */
+    public BenchmarkDatabase seedFriends(int perUser) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int user = 1; user <= users; user++) {
+            for (long friend : skewedDistinct(perUser + 1, users)) {
+                if (friend != user && rows.size() < (long) users * perUser) {
+                    rows.add(new Object[]{user, friend});
+                }
+            }
+        }
+        batch("INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)", rows);
+        return this;
+    }
+
+    public long randomUserId() {
+        return 1 + random.nextInt(users);
+    }
+
+    public long randomFilmId() {
+        return 1 + random.nextInt(films);
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+
+    private long[] skewedDistinct(int count, int bound) {
+        int limit = Math.min(count, bound);
+        Set<Long> picked = new LinkedHashSet<>();
+        while (picked.size() < limit) {
+            double r = random.nextDouble();
+            picked.add(1 + (long) (bound * r * r));
+        }
+        return picked.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.storage.dump.DumpDbStorage;
+import ru.yandex.practicum.filmorate.storage.dump.DumpTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность выгрузки и загрузки таблицы likes в строках в секунду.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(DumpBenchmark.ROWS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DumpBenchmark {
+    static final int ROWS = 200_000;
+    private static final int FILMS = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class Tables {
+        BenchmarkDatabase database;
+        DumpDbStorage dumpStorage;
+        List<Object[]> likes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            database = new BenchmarkDatabase().seedUsers(ROWS / FILMS).seedFilms(FILMS);
+            dumpStorage = new DumpDbStorage(database.getJdbcTemplate());
+            likes = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                likes.add(new Object[]{(long) (i % FILMS + 1), (long) (i / FILMS + 1), null});
+            }
+            dumpStorage.importRows(DumpTable.LIKES, likes.iterator());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            database.close();
+        }
+    }
+
+    /**
+     * Загрузка требует пустой таблицы; очистка в замер не входит.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyLikes extends Tables {
+        @Setup(Level.Invocation)
+        public void clear() {
+            database.getJdbcTemplate().update("DELETE FROM likes");
+        }
+    }
+
+    @Benchmark
+    public void exportLikes(Tables tables, Blackhole blackhole) {
+        tables.dumpStorage.export(DumpTable.LIKES, blackhole::consume);
+    }
+
+    @Benchmark
+    public long importLikes(EmptyLikes tables) {
+        return tables.dumpStorage.importRows(DumpTable.LIKES, tables.likes.iterator());
+    }
+}
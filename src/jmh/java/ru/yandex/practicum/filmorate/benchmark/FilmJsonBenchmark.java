@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.service.film.FilmJsonCache;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ответ /films/popular: загрузка из БД и сериализация Jackson против склейки готового JSON из кэша.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmJsonBenchmark {
+    @Param({"10", "100"})
+    private int count;
+
+    private BenchmarkDatabase database;
+    private FilmDbStorage filmStorage;
+    private ObjectMapper objectMapper;
+    private FilmJsonCache jsonCache;
+    private List<Long> popular;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase().seedUsers(1_000).seedFilms(10_000).seedLikes(20);
+        filmStorage = database.filmStorage();
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        jsonCache = new FilmJsonCache(objectMapper, database.genreStorage(), database.mpaStorage(), 100_000, Duration.ZERO);
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard(filmStorage, Duration.ofHours(24));
+        leaderboard.reload();
+        popular = leaderboard.top(count);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public byte[] loadAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(filmStorage.findByIds(popular));
+    }
+
+    @Benchmark
+    public byte[] cachedJson() {
+        return jsonCache.getArray(popular, filmStorage::findByIds);
+    }
+}
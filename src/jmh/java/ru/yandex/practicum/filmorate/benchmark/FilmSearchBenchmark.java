@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск по индексу каталога из films фильмов. Слова берутся из словаря с перекосом к частым,
+ * поэтому в запросах встречаются и списки на сотни тысяч фильмов, и редкие слова.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilmSearchBenchmark {
+    private static final int VOCABULARY = 50_000;
+    private static final int LIMIT = 10;
+
+    @Param({"1000000"})
+    private int films;
+
+    private FilmSearchIndex index;
+    private String[] words;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = word(i);
+        }
+        index = new FilmSearchIndex();
+        for (int id = 1; id <= films; id++) {
+            index.add(id, phrase(3), phrase(25));
+        }
+    }
+
+    @Benchmark
+    public List<Long> singleWord() {
+        return index.search(randomWord(), LIMIT);
+    }
+
+    @Benchmark
+    public List<Long> twoWords() {
+        return index.search(randomWord() + " " + randomWord(), LIMIT);
+    }
+
+    @Benchmark
+    public List<Long> prefix() {
+        String word = randomWord();
+        return index.search(word.substring(0, Math.min(word.length(), 3)), LIMIT);
+    }
+
+    private String phrase(int length) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            phrase.append(randomWord()).append(' ');
+        }
+        return phrase.toString();
+    }
+
+    private String randomWord() {
+        double r = random.nextDouble();
+        return words[(int) (VOCABULARY * r * r * r)];
+    }
+
+    private static String word(int index) {
+        StringBuilder word = new StringBuilder();
+        int value = index;
+        do {
+            word.append((char) ('a' + value % 26));
+            value /= 26;
+        } while (value > 0);
+        return word.append("film").toString();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.service.film.FilmJsonCache;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.film.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.service.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Валидация фильма перед сохранением: проверки полей и поиск MPA и жанров в справочниках.
+ * Бины собираются вручную, поэтому кэши справочников и лидерборд загружаются явно.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmServiceBenchmark {
+    @Param({"1", "6"})
+    private int genres;
+
+    private BenchmarkDatabase database;
+    private FilmService filmService;
+    private Film film;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        FilmDbStorage filmStorage = database.filmStorage();
+        UserDbStorage userStorage = database.userStorage();
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard(filmStorage, Duration.ofHours(24));
+        leaderboard.reload();
+        filmService = new FilmService(filmStorage, userStorage, database.mpaStorage(), database.genreStorage(),
+                new UserService(userStorage, BenchmarkDatabase.nearCache(false),
+                        UserService.DEFAULT_SUGGESTION_FAN_OUT), leaderboard,
+                new FilmSimilarityIndex(filmStorage, 20, 1000, 1),
+                new FilmJsonCache(new ObjectMapper(), database.genreStorage(), database.mpaStorage(), 1000, Duration.ZERO),
+                new LikeWriteBuffer(filmStorage, userStorage, false, 1000, "target/benchmark-likes.log"),
+                BenchmarkDatabase.nearCache(false));
+
+        film = new Film();
+        film.setName("Benchmark");
+        film.setDescription("Фильм для бенчмарка валидации");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(3L);
+        film.setMpa(mpa);
+        Set<Genre> filmGenres = new LinkedHashSet<>();
+        for (long id = 1; id <= genres; id++) {
+            Genre genre = new Genre();
+            genre.setId(id);
+            filmGenres.add(genre);
+        }
+        film.setGenres(filmGenres);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Film validateFilm() {
+        filmService.validateFilm(film);
+        return film;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение и обновление фильмов в FilmDbStorage. Параметр likesPerUser показывает, что время топа
+ * не растёт вместе с числом лайков.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmStorageBenchmark {
+    @Param({"1000", "10000"})
+    private int films;
+
+    @Param({"5", "50"})
+    private int likesPerUser;
+
+    @Param({"1000"})
+    private int users;
+
+    private BenchmarkDatabase database;
+    private FilmDbStorage storage;
+    private List<Film> loaded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase()
+                .seedUsers(users)
+                .seedFilms(films)
+                .seedLikes(likesPerUser);
+        storage = database.filmStorage();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= Math.min(films, 1000); id++) {
+            ids.add(id);
+        }
+        loaded = storage.findByIds(ids);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Collection<Film> findAll() {
+        return storage.findAll();
+    }
+
+    @Benchmark
+    public Film findById() {
+        return storage.findById(database.randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return storage.getPopularFilms(10);
+    }
+
+    /**
+     * Правка описания без смены жанров, как при массовом обновлении каталога.
+     */
+    @Benchmark
+    public Film update() {
+        Film film = loaded.get((int) (database.randomFilmId() % loaded.size()));
+        return storage.update(film);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подбор друзей на графе со степенным распределением: степень пользователя растёт как 1/rank^alpha,
+ * поэтому у немногих «хабов» десятки тысяч друзей. Параметр maxFanOut показывает, как ограничение
+ * обхода удерживает время для хабов; hub — запросы только для самых связанных пользователей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FriendSuggestionBenchmark {
+    private static final int LIMIT = 10;
+    private static final int HUBS = 100;
+
+    @Param({"100000"})
+    private int users;
+
+    @Param({"20"})
+    private int averageDegree;
+
+    @Param({"100", "500", "1000000"})
+    private int maxFanOut;
+
+    private FriendGraphIndex graph;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        double alpha = 0.8;
+        double[] weights = new double[users];
+        double total = 0;
+        for (int rank = 0; rank < users; rank++) {
+            weights[rank] = 1 / Math.pow(rank + 1, alpha);
+            total += weights[rank];
+        }
+        // Кумулятивное распределение: друзей выбирают пропорционально «популярности»
+        double[] cumulative = new double[users];
+        double sum = 0;
+        for (int i = 0; i < users; i++) {
+            sum += weights[i] / total;
+            cumulative[i] = sum;
+        }
+
+        Map<Long, LongIdSet> snapshot = new HashMap<>();
+        long edges = (long) users * averageDegree;
+        Map<Long, long[]> buffers = new HashMap<>();
+        int[] sizes = new int[users + 1];
+        for (long e = 0; e < edges; e++) {
+            long from = pick(cumulative);
+            long to = pick(cumulative);
+            if (from == to) {
+                continue;
+            }
+            long[] buffer = buffers.computeIfAbsent(from, k -> new long[8]);
+            int size = sizes[(int) from];
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+                buffers.put(from, buffer);
+            }
+            buffer[size] = to;
+            sizes[(int) from] = size + 1;
+        }
+        buffers.forEach((user, buffer) -> snapshot.put(user, LongIdSet.of(Arrays.copyOf(buffer, sizes[user.intValue()]))));
+        graph = new FriendGraphIndex();
+        graph.reload(snapshot);
+    }
+
+    @Benchmark
+    public long[] suggestRandomUser() {
+        return graph.suggest(1 + random.nextInt(users), LIMIT, maxFanOut);
+    }
+
+    @Benchmark
+    public long[] suggestHub() {
+        return graph.suggest(1 + random.nextInt(HUBS), LIMIT, maxFanOut);
+    }
+
+    private long pick(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return 1 + Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+}
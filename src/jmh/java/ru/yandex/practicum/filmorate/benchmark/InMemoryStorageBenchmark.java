@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути in-memory хранилищ: топ фильмов, общие друзья и конкурентные лайки.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryStorageBenchmark {
+    @Param({"10000"})
+    private int films;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"50"})
+    private int perUser;
+
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        userStorage = new InMemoryUserStorage();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userStorage.create(user);
+        }
+        for (int i = 0; i < films; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            MpaRating mpa = new MpaRating();
+            mpa.setId(1L);
+            film.setMpa(mpa);
+            filmStorage.create(film);
+        }
+        for (long user = 1; user <= users; user++) {
+            for (int j = 0; j < perUser; j++) {
+                double r = random.nextDouble();
+                filmStorage.addLike(1 + (long) (films * r * r), user);
+                userStorage.addFriend(user, 1 + (long) (users * r * r));
+            }
+        }
+    }
+
+    @Benchmark
+    public Collection<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public Film findById() {
+        return filmStorage.findById(1 + ThreadLocalRandom.current().nextLong(films));
+    }
+
+    @Benchmark
+    public Collection<User> getCommonFriends() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userStorage.getCommonFriends(1 + random.nextLong(users), 1 + random.nextLong(users));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean addAndRemoveLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long filmId = 1 + random.nextLong(films);
+        long userId = 1 + random.nextLong(users);
+        return filmStorage.addLike(filmId, userId) && filmStorage.removeLike(filmId, userId);
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.service.film.FilmJsonCache;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.film.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.service.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайк и снятие лайка через FilmService: синхронная запись в БД против очереди отложенной записи.
+ * Пары (фильм, пользователь) перебираются по кругу: на одном круге лайк ставится, на следующем снимается.
+ * При pairs = 1000 круг короче очереди, и лайк со снятием сокращаются в ней, не доходя до БД.
+ * Сброс очереди здесь происходит только при её заполнении, в приложении к нему добавляется сброс по расписанию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikeBenchmark {
+    private static final int USERS = 1_000;
+    private static final int FILMS = 1_000;
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    @Param({"1000", "1000000"})
+    private int pairs;
+
+    private BenchmarkDatabase database;
+    private LikeWriteBuffer likeBuffer;
+    private FilmService filmService;
+    private Path logPath;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase().seedUsers(USERS).seedFilms(FILMS);
+        FilmDbStorage filmStorage = database.filmStorage();
+        UserDbStorage userStorage = database.userStorage();
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard(filmStorage, Duration.ofHours(24));
+        leaderboard.reload();
+        logPath = Files.createTempFile("likes", ".log");
+        likeBuffer = new LikeWriteBuffer(filmStorage, userStorage, writeBehind, 10_000, logPath.toString());
+        filmService = new FilmService(filmStorage, userStorage, database.mpaStorage(), database.genreStorage(),
+                new UserService(userStorage, BenchmarkDatabase.nearCache(false),
+                        UserService.DEFAULT_SUGGESTION_FAN_OUT), leaderboard,
+                new FilmSimilarityIndex(filmStorage, 20, 1000, 1),
+                new FilmJsonCache(new ObjectMapper(), database.genreStorage(), database.mpaStorage(), 1000, Duration.ZERO),
+                likeBuffer, BenchmarkDatabase.nearCache(false));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        likeBuffer.shutdown();
+        database.close();
+        Files.deleteIfExists(logPath);
+    }
+
+    @Benchmark
+    public boolean toggleLike() {
+        long i = counter++;
+        long pair = i % pairs;
+        long userId = pair % USERS + 1;
+        long filmId = pair / USERS + 1;
+        if ((i / pairs) % 2 == 0) {
+            return filmService.addLike(filmId, userId);
+        }
+        return filmService.removeLike(filmId, userId);
+    }
+}
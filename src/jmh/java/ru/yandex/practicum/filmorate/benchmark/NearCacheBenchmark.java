@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.film.FilmJsonCache;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.film.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.service.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /users/{id} и GET /films/{id} на уровне сервисов: версия для ETag и сама сущность,
+ * с ближним кэшем и без него. Все id помещаются в кэш, поэтому после прогрева чтения идут из памяти.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearCacheBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 10_000;
+
+    @Param({"false", "true"})
+    private boolean nearCache;
+
+    private BenchmarkDatabase database;
+    private UserService userService;
+    private FilmService filmService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase().seedUsers(USERS).seedFilms(FILMS);
+        FilmDbStorage filmStorage = database.filmStorage();
+        UserDbStorage userStorage = database.userStorage();
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard(filmStorage, Duration.ofHours(24));
+        leaderboard.reload();
+        userService = new UserService(userStorage, BenchmarkDatabase.nearCache(nearCache),
+                UserService.DEFAULT_SUGGESTION_FAN_OUT);
+        filmService = new FilmService(filmStorage, userStorage, database.mpaStorage(), database.genreStorage(),
+                userService, leaderboard, new FilmSimilarityIndex(filmStorage, 20, 1000, 1),
+                new FilmJsonCache(new ObjectMapper(), database.genreStorage(), database.mpaStorage(), 1000, Duration.ZERO),
+                new LikeWriteBuffer(filmStorage, userStorage, false, 1000, "target/benchmark-likes.log"),
+                BenchmarkDatabase.nearCache(nearCache));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public User getUser() {
+        long id = database.randomUserId();
+        Optional<EntityVersion> version = userService.findVersion(id);
+        return version.isPresent() ? userService.getUserById(id) : null;
+    }
+
+    @Benchmark
+    public Film getFilm() {
+        long id = database.randomFilmId();
+        Optional<EntityVersion> version = filmService.findVersion(id);
+        return version.isPresent() ? filmService.getFilmById(id) : null;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /films/popular?genreId=&year=: соединение с film_genres и агрегация likes по всему каталогу против рейтингов
+ * жанров и годов в памяти. Годы выпуска фильмов равномерно распределены по 50 годам. Жанр и год меняются от вызова
+ * к вызову: H2 возвращает сохранённый результат повторного запроса с теми же параметрами, если таблицы не менялись.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PopularFilterBenchmark {
+    private static final int COUNT = 10;
+    private static final int GENRES = 6;
+    private static final int YEARS = 50;
+    private static final String FILTERED_AGGREGATION = "SELECT f.id FROM films f " +
+            "JOIN film_genres fg ON fg.film_id = f.id " +
+            "LEFT JOIN likes l ON l.film_id = f.id " +
+            "WHERE (? IS NULL OR fg.genre_id = ?) AND (? IS NULL OR EXTRACT(YEAR FROM f.release_date) = ?) " +
+            "GROUP BY f.id ORDER BY COUNT(l.user_id) DESC, f.id LIMIT ?";
+
+    @Param({"10000", "100000"})
+    private int films;
+
+    @Param({"genre", "year", "both"})
+    private String filter;
+
+    private BenchmarkDatabase database;
+    private PopularityLeaderboard leaderboard;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase().seedUsers(2_000).seedFilms(films).seedLikes(20);
+        database.getJdbcTemplate().update(
+                "UPDATE films SET release_date = DATEADD(YEAR, MOD(id, ?), DATE '1970-01-01')", YEARS);
+        leaderboard = new PopularityLeaderboard(database.filmStorage(), Duration.ofHours(24));
+        leaderboard.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Long> sqlAggregation() {
+        next++;
+        Long genreId = genreId();
+        Integer year = year();
+        return database.getJdbcTemplate().queryForList(FILTERED_AGGREGATION, Long.class,
+                genreId, genreId, year, year, COUNT);
+    }
+
+    @Benchmark
+    public List<Long> rankingIndexes() {
+        next++;
+        return leaderboard.top(COUNT, null, genreId(), year());
+    }
+
+    private Long genreId() {
+        return filter.equals("year") ? null : 1L + next % GENRES;
+    }
+
+    private Integer year() {
+        if (filter.equals("genre")) {
+            return null;
+        }
+        // При обоих фильтрах год меняется после полного круга жанров, чтобы перебирались все пары
+        return 1970 + (filter.equals("both") ? next / GENRES : next) % YEARS;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.datasource.BulkheadDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Пачка из concurrency одновременных «запросов» на пуле платформенных потоков (как у Tomcat, 200 потоков)
+ * и на виртуальных потоках. Каждый запрос ждёт ioMillis вне БД (внешний вызов, сеть) и читает фильм
+ * через пул из 10 соединений за BulkheadDataSource. Throughput — пачек в секунду, SampleTime даёт p99 пачки.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestExecutorBenchmark {
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int POOL_SIZE = 10;
+
+    @Param({"platform", "virtual"})
+    private String executor;
+
+    @Param({"200", "2000"})
+    private int concurrency;
+
+    @Param({"0", "5"})
+    private int ioMillis;
+
+    private BenchmarkDatabase database;
+    private FilmDbStorage storage;
+    private ExecutorService executorService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase()
+                .seedFilms(1000);
+        database.getDataSource().setMaximumPoolSize(POOL_SIZE);
+        storage = new FilmDbStorage(new JdbcTemplate(
+                new BulkheadDataSource(database.getDataSource(), POOL_SIZE, Duration.ofSeconds(30))));
+        executorService = executor.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+        database.close();
+    }
+
+    @Benchmark
+    public List<Film> burst() throws Exception {
+        List<Future<Film>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long filmId = 1 + ThreadLocalRandom.current().nextInt(database.getFilms());
+            futures.add(executorService.submit(() -> handle(filmId)));
+        }
+        List<Film> films = new ArrayList<>(concurrency);
+        for (Future<Film> future : futures) {
+            films.add(future.get());
+        }
+        return films;
+    }
+
+    private Film handle(long filmId) throws InterruptedException {
+        if (ioMillis > 0) {
+            Thread.sleep(ioMillis);
+        }
+        return storage.findById(filmId);
+    }
+}
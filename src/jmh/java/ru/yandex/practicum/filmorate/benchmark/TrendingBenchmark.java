@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.service.film.PopularityWindow;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /films/popular?window=: агрегация таблицы likes за окно на каждый запрос против счётчиков по часовым корзинам.
+ * Время лайков равномерно разбросано по последним 30 дням.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrendingBenchmark {
+    private static final int COUNT = 10;
+    private static final String WINDOW_AGGREGATION = "SELECT film_id FROM likes WHERE created_at >= ? " +
+            "GROUP BY film_id ORDER BY COUNT(*) DESC, film_id LIMIT ?";
+
+    @Param({"24h", "7d", "30d"})
+    private String window;
+
+    private BenchmarkDatabase database;
+    private PopularityLeaderboard leaderboard;
+    private PopularityWindow popularityWindow;
+    private long filmId;
+    private long userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase().seedUsers(2_000).seedFilms(10_000).seedLikes(20);
+        database.getJdbcTemplate().update("UPDATE likes SET created_at = DATEADD(MINUTE, " +
+                "-MOD(film_id * 7919 + user_id * 104729, 30 * 24 * 60), CURRENT_TIMESTAMP)");
+        FilmDbStorage filmStorage = database.filmStorage();
+        leaderboard = new PopularityLeaderboard(filmStorage, Duration.ofHours(24));
+        leaderboard.reload();
+        popularityWindow = PopularityWindow.of(window);
+        filmId = database.randomFilmId();
+        // Пользователь вне выборки лайков, чтобы его лайк не совпал с существующим
+        userId = database.getUsers() + 1L;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Long> sqlAggregation() {
+        Instant since = Instant.now().minus(Duration.ofHours(popularityWindow.hours()));
+        return database.getJdbcTemplate().queryForList(WINDOW_AGGREGATION, Long.class, Timestamp.from(since), COUNT);
+    }
+
+    @Benchmark
+    public List<Long> bucketedCounters() {
+        return leaderboard.top(popularityWindow, COUNT);
+    }
+
+    /**
+     * Цена поддержки счётчиков на запись: лайк и его отмена обновляют все рейтинги в памяти.
+     */
+    @Benchmark
+    public void likeAddedAndRemoved() {
+        leaderboard.likeAdded(filmId, userId);
+        leaderboard.likeRemoved(filmId, userId);
+    }
+}
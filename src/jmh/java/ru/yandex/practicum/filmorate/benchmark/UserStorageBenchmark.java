@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение друзей из UserDbStorage на графе, где у «ранних» пользователей больше всего друзей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserStorageBenchmark {
+    @Param({"1000", "10000"})
+    private int users;
+
+    @Param({"20", "200"})
+    private int friendsPerUser;
+
+    private BenchmarkDatabase database;
+    private UserDbStorage storage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase()
+                .seedUsers(users)
+                .seedFriends(friendsPerUser);
+        storage = database.userStorage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Collection<User> getFriends() {
+        return storage.getFriends(database.randomUserId());
+    }
+
+    @Benchmark
+    public Collection<User> getCommonFriends() {
+        return storage.getCommonFriends(database.randomUserId(), database.randomUserId());
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Условный GET: версия ресурса сверяется с If-None-Match/If-Modified-Since до загрузки тела.
+ */
+final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Ответить 304, если у клиента актуальная версия, иначе загрузить тело. ETag и Last-Modified
+     * берутся из версии, прочитанной до загрузки: тело может оказаться только новее версии,
+     * и тогда следующий запрос просто получит 200, а не устаревшие данные.
+     *
+     * @param version версия ресурса; пусто, если ресурса нет — тогда ошибку выбросит loader
+     */
+    static <T> ResponseEntity<T> of(WebRequest request, Optional<EntityVersion> version, Supplier<T> loader) {
+        if (version.isPresent()
+                && request.checkNotModified(version.get().eTag(), version.get().lastModified().toEpochMilli())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok(loader.get());
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.dump.DumpService;
+import ru.yandex.practicum.filmorate.storage.dump.DumpTable;
+
+/**
+ * Выгрузка таблиц в NDJSON для наполнения стендов: GET /dump/{table}. Загрузку обратно принимает
+ * {@link DumpImportController}. Выгрузка отдаёт почту и дни рождения всех пользователей и весь граф
+ * лайков и дружбы без аутентификации, поэтому включается только свойством filmorate.dump.export.enabled.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/dump")
+@ConditionalOnProperty(name = "filmorate.dump.export.enabled", havingValue = "true")
+public class DumpController {
+    private final DumpService dumpService;
+    private final ObjectMapper objectMapper;
+
+    public DumpController(DumpService dumpService, ObjectMapper objectMapper) {
+        this.dumpService = dumpService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping("/{table}")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String table) {
+        log.info("Request to export table {}", table);
+        DumpTable dumpTable = DumpTable.of(table);
+        return NdjsonRows.of(objectMapper.getFactory(), dumpTable, rows -> dumpService.export(dumpTable, rows));
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.service.dump.DumpService;
+import ru.yandex.practicum.filmorate.storage.dump.DumpTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Загрузка таблиц из NDJSON: POST /dump/{table}. Таблицы загружаются в порядке mpa_ratings, genres, users,
+ * films, film_genres, likes, friendships. Предназначена для наполнения стендов, поэтому включается только
+ * свойством filmorate.dump.import.enabled; без него POST /dump/{table} отвечает 405.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/dump")
+@ConditionalOnProperty(name = "filmorate.dump.import.enabled", havingValue = "true")
+public class DumpImportController {
+    private final DumpService dumpService;
+    private final ObjectMapper objectMapper;
+
+    public DumpImportController(DumpService dumpService, ObjectMapper objectMapper) {
+        this.dumpService = dumpService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Тело читается потоком прямо из запроса, без разбора Spring в объекты.
+     */
+    @PostMapping("/{table}")
+    public ImportResult importRows(@PathVariable String table, HttpServletRequest request) throws IOException {
+        log.info("Request to import table {}", table);
+        DumpTable dumpTable = DumpTable.of(table);
+        try (InputStream in = request.getInputStream()) {
+            long rows = dumpService.importRows(dumpTable, NdjsonRows.reader(objectMapper.getFactory(), dumpTable, in));
+            return new ImportResult(dumpTable.table(), rows);
+        }
+    }
+}
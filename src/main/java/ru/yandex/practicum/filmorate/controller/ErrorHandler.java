@@ -4,9 +4,12 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.exceptions.ConflictException;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.PreconditionFailedException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 
 @Slf4j
 @RestControllerAdvice
@@ -26,6 +29,20 @@ public class ErrorHandler {
         return new ErrorResponse(e.getMessage());
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public ErrorResponse handlePreconditionFailed(PreconditionFailedException e) {
+        log.warn("Precondition failed: {}", e.getMessage());
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse handleConflict(ConflictException e) {
+        log.warn("Conflict: {}", e.getMessage());
+        return new ErrorResponse(e.getMessage());
+    }
+
     @ExceptionHandler(DataIntegrityViolationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleDataIntegrityViolation(DataIntegrityViolationException e) {
@@ -33,6 +50,13 @@ public class ErrorHandler {
         return new ErrorResponse("Нарушена ссылочная целостность: " + e.getMessage());
     }
 
+    @ExceptionHandler(CannotGetJdbcConnectionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleConnectionUnavailable(CannotGetJdbcConnectionException e) {
+        log.warn("Database connection unavailable: {}", e.getMessage());
+        return new ErrorResponse("Сервис перегружен, повторите запрос позже");
+    }
+
     @Getter
     public static class ErrorResponse {
         private final String error;
@@ -1,25 +1,39 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.Versioned;
 import ru.yandex.practicum.filmorate.service.film.FilmService;
 
 import jakarta.validation.Valid;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @RestController
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -28,6 +42,19 @@ public class FilmController {
         return filmService.findAll();
     }
 
+    @GetMapping(params = "limit")
+    public List<Film> findPage(@RequestParam(required = false) Long after, @RequestParam int limit) {
+        log.info("Request to get films page: after = {}, limit = {}", after, limit);
+        return filmService.findPage(after, limit);
+    }
+
+    // С limit запрос остаётся постраничным: иначе оба обработчика подходят одинаково и Spring отвечает 500
+    @GetMapping(params = {"stream=true", "!limit"})
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        log.info("Request to stream all films");
+        return JsonArrayStream.of(objectMapper, filmService::streamAll);
+    }
+
     @PostMapping
     public Film create(@Valid @RequestBody Film film) {
         log.info("Request to create film: {}", film);
@@ -45,8 +72,12 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    /**
+     * Ответ несёт ETag и Last-Modified новой версии: следующее обновление с If-Match не требует GET.
+     */
     @PutMapping
-    public Film update(@Valid @RequestBody Film film) {
+    public ResponseEntity<Film> update(@Valid @RequestBody Film film,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("Request to update film: {}", film);
         if (film.getGenres() == null) {
             film.setGenres(new HashSet<>());
@@ -57,13 +88,24 @@ public class FilmController {
             defaultMpa.setName("G");
             film.setMpa(defaultMpa);
         }
-        return filmService.update(film);
+        Versioned<Film> updated = filmService.update(film, ifMatch);
+        return ResponseEntity.ok()
+                .eTag(updated.version().eTag())
+                .lastModified(updated.version().lastModified())
+                .body(updated.value());
+    }
+
+    @GetMapping("/search")
+    public List<Film> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        log.info("Request to search films: q = {}, limit = {}", q, limit);
+        return filmService.search(q, limit);
     }
 
-    @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getFilmById(@PathVariable Long id, WebRequest request) {
         log.info("Request to get film by id: {}", id);
-        return filmService.getFilmById(id);
+        Optional<EntityVersion> version = filmService.findVersion(id);
+        return ConditionalGet.of(request, version, () -> filmService.getFilmJson(id, version.orElse(null)));
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -78,9 +120,31 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
-    @GetMapping("/popular")
-    public Collection<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        log.info("Request to get popular films with count: {}", count);
-        return filmService.getPopularFilms(count);
+    @PostMapping("/likes:batch")
+    public List<LikeOperationResult> applyLikes(@RequestBody List<LikeOperation> operations) {
+        log.info("Request to apply like batch: {} operations", operations.size());
+        return filmService.applyLikes(operations);
+    }
+
+    @GetMapping(value = "/popular", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] getPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                  @RequestParam(required = false) String window,
+                                  @RequestParam(required = false) Long genreId,
+                                  @RequestParam(required = false) Integer year) {
+        log.info("Request to get popular films with count: {}, window: {}, genreId: {}, year: {}",
+                count, window, genreId, year);
+        return filmService.getPopularFilmsJson(count, window, genreId, year);
+    }
+
+    @GetMapping(value = "/hot", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] getHotFilms(@RequestParam(defaultValue = "10") int count) {
+        log.info("Request to get hot films with count: {}", count);
+        return filmService.getHotFilmsJson(count);
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilarFilms(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit) {
+        log.info("Request to get films similar to {}, limit = {}", id, limit);
+        return filmService.getSimilarFilms(id, limit);
     }
 }
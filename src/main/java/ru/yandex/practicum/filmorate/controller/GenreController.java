@@ -1,12 +1,15 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/genres")
@@ -19,13 +22,14 @@ public class GenreController {
     }
 
     @GetMapping
-    public List<Genre> findAll() {
-        return genreStorage.findAll();
+    public ResponseEntity<List<Genre>> findAll(WebRequest request) {
+        return ConditionalGet.of(request, Optional.of(genreStorage.getCache().getVersion()), genreStorage::findAll);
     }
 
     @GetMapping("/{id}")
-    public Genre findById(@PathVariable Long id) {
-        return genreStorage.findById(id)
+    public ResponseEntity<Genre> findById(@PathVariable Long id, WebRequest request) {
+        Genre value = genreStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("Жанр не найден с id=" + id));
+        return ConditionalGet.of(request, Optional.of(genreStorage.getCache().getVersion()), () -> value);
     }
 }
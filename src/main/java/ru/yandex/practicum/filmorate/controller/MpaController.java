@@ -1,12 +1,15 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
 
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/mpa")
@@ -19,13 +22,14 @@ public class MpaController {
     }
 
     @GetMapping
-    public List<MpaRating> findAll() {
-        return mpaStorage.findAll();
+    public ResponseEntity<List<MpaRating>> findAll(WebRequest request) {
+        return ConditionalGet.of(request, Optional.of(mpaStorage.getCache().getVersion()), mpaStorage::findAll);
     }
 
     @GetMapping("/{id}")
-    public MpaRating findById(@PathVariable Long id) {
-        return mpaStorage.findById(id)
+    public ResponseEntity<MpaRating> findById(@PathVariable Long id, WebRequest request) {
+        MpaRating value = mpaStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("MPA рейтинг не найден с id=" + id));
+        return ConditionalGet.of(request, Optional.of(mpaStorage.getCache().getVersion()), () -> value);
     }
 }
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.storage.dump.DumpTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Строки таблицы в NDJSON: один JSON-объект на строку, поля называются как столбцы.
+ * Даты пишутся как 2000-01-31, моменты времени — в ISO-8601 UTC.
+ */
+final class NdjsonRows {
+    static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private NdjsonRows() {
+    }
+
+    /**
+     * Ответ, в который строки пишутся по мере чтения курсора; в памяти держится только текущая строка.
+     */
+    static ResponseEntity<StreamingResponseBody> of(JsonFactory factory, DumpTable table,
+                                                    Consumer<Consumer<Object[]>> source) {
+        List<DumpTable.Column> columns = table.columns();
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = factory.createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                source.accept(row -> {
+                    try {
+                        writeRow(generator, columns, row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(MEDIA_TYPE))
+                .body(body);
+    }
+
+    /**
+     * Ленивое чтение строк из потока: объект разбирается, только когда загрузка просит следующую строку.
+     * Незнакомые поля пропускаются, отсутствующие столбцы приходят как null.
+     */
+    static Iterator<Object[]> reader(JsonFactory factory, DumpTable table, InputStream in) throws IOException {
+        JsonParser parser = factory.createParser(in);
+        List<DumpTable.Column> columns = table.columns();
+        return new Iterator<>() {
+            private long line;
+            private JsonToken next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Object[] next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                line++;
+                try {
+                    if (next != JsonToken.START_OBJECT) {
+                        throw new ValidationException("ожидался JSON-объект");
+                    }
+                    Object[] row = new Object[columns.size()];
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        int index = table.indexOf(parser.currentName());
+                        JsonToken token = parser.nextToken();
+                        if (index < 0) {
+                            parser.skipChildren();
+                        } else if (token != JsonToken.VALUE_NULL) {
+                            row[index] = parse(parser, columns.get(index));
+                        }
+                    }
+                    next = advance();
+                    return row;
+                } catch (IOException | RuntimeException e) {
+                    throw new ValidationException("Строка " + line + ": " + e.getMessage());
+                }
+            }
+
+            private JsonToken advance() {
+                try {
+                    return parser.nextToken();
+                } catch (IOException e) {
+                    throw new ValidationException("Строка " + (line + 1) + ": " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    private static void writeRow(JsonGenerator generator, List<DumpTable.Column> columns, Object[] row)
+            throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < row.length; i++) {
+            generator.writeFieldName(columns.get(i).name());
+            Object value = row[i];
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof Long number) {
+                generator.writeNumber(number);
+            } else if (value instanceof Date date) {
+                generator.writeString(date.toLocalDate().toString());
+            } else if (value instanceof Timestamp timestamp) {
+                generator.writeString(timestamp.toInstant().toString());
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static Object parse(JsonParser parser, DumpTable.Column column) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (column.type() == DumpTable.Type.LONG) {
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw new ValidationException("поле " + column.name() + " должно быть целым числом");
+            }
+            return parser.getLongValue();
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw new ValidationException("поле " + column.name() + " должно быть строкой");
+        }
+        String text = parser.getText();
+        return switch (column.type()) {
+            case DATE -> Date.valueOf(LocalDate.parse(text));
+            case TIMESTAMP -> Timestamp.from(Instant.parse(text));
+            default -> text;
+        };
+    }
+}
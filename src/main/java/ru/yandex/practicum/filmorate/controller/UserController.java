@@ -1,22 +1,33 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
 import ru.yandex.practicum.filmorate.service.user.UserService;
 
 import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 @RestController
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FilmService filmService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -25,6 +36,19 @@ public class UserController {
         return userService.findAll();
     }
 
+    @GetMapping(params = "limit")
+    public List<User> findPage(@RequestParam(required = false) Long after, @RequestParam int limit) {
+        log.info("Request to get users page: after = {}, limit = {}", after, limit);
+        return userService.findPage(after, limit);
+    }
+
+    // С limit запрос остаётся постраничным: иначе оба обработчика подходят одинаково и Spring отвечает 500
+    @GetMapping(params = {"stream=true", "!limit"})
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        log.info("Request to stream all users");
+        return JsonArrayStream.of(objectMapper, userService::streamAll);
+    }
+
     @PostMapping
     public User create(@RequestBody User user) {
         log.info("Request to create user: {}", user);
@@ -38,9 +62,9 @@ public class UserController {
     }
 
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable Long id) {
+    public ResponseEntity<User> getUserById(@PathVariable Long id, WebRequest request) {
         log.info("Request to get user by id: {}", id);
-        return userService.getUserById(id);
+        return ConditionalGet.of(request, userService.findVersion(id), () -> userService.getUserById(id));
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -66,4 +90,16 @@ public class UserController {
         log.info("Request to get common friends: user id = {}, other user id = {}", id, otherId);
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/friends/suggested")
+    public List<User> getSuggestedFriends(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit) {
+        log.info("Request to get friend suggestions: user id = {}, limit = {}", id, limit);
+        return userService.getSuggestedFriends(id, limit);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit) {
+        log.info("Request to get film recommendations for user {}, limit = {}", id, limit);
+        return filmService.getRecommendations(id, limit);
+    }
 }
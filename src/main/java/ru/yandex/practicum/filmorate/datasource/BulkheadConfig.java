@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Оборачивает пул соединений в {@link BulkheadDataSource}. Включается свойством
+ * filmorate.datasource.bulkhead.enabled (по умолчанию вместе с профилем virtual).
+ * Ограничитель оборачивает источник последним, поэтому остаётся внешним и поверх
+ * {@link ReplicaRoutingDataSource}: его очередь ограничивает соединения и к основной базе, и к репликам.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.bulkhead.enabled", havingValue = "true")
+public class BulkheadConfig {
+    static final int ORDER = Ordered.LOWEST_PRECEDENCE;
+
+    @Bean
+    public static BulkheadPostProcessor bulkheadDataSourcePostProcessor(Environment environment) {
+        int maxConcurrent = environment.getProperty("filmorate.datasource.bulkhead.max-concurrent",
+                Integer.class, environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+        Duration acquireTimeout = environment.getProperty("filmorate.datasource.bulkhead.acquire-timeout",
+                Duration.class, Duration.ofSeconds(5));
+        return new BulkheadPostProcessor(maxConcurrent, acquireTimeout);
+    }
+
+    @Bean
+    public MeterBinder bulkheadMetrics(DataSource dataSource) {
+        return registry -> BulkheadDataSource.find(dataSource).ifPresent(bulkhead -> bulkhead.bindTo(registry));
+    }
+
+    /**
+     * Тип объявлен в методе @Bean, а не как BeanPostProcessor: иначе Spring не видит Ordered до создания бина
+     * и применяет постпроцессор вне порядка.
+     */
+    static final class BulkheadPostProcessor implements BeanPostProcessor, Ordered {
+        private final int maxConcurrent;
+        private final Duration acquireTimeout;
+
+        private BulkheadPostProcessor(int maxConcurrent, Duration acquireTimeout) {
+            this.maxConcurrent = maxConcurrent;
+            this.acquireTimeout = acquireTimeout;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && BulkheadDataSource.find(dataSource).isEmpty()) {
+                return new BulkheadDataSource(dataSource, maxConcurrent, acquireTimeout);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return ORDER;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничивает число одновременно выданных соединений справедливым семафором.
+ * С виртуальными потоками запросов может быть на порядки больше, чем соединений в пуле:
+ * лишние ждут здесь в порядке очереди не дольше acquireTimeout, а не отваливаются по таймауту пула.
+ * Разрешение возвращается при закрытии соединения.
+ * <p>
+ * Обёртка заменяет бин dataSource, и Spring при остановке закрывает уже её: {@link #close()} передаёт
+ * закрытие целевому источнику, иначе пул соединений и реплики остались бы открытыми.
+ */
+@Slf4j
+public class BulkheadDataSource extends DelegatingDataSource implements AutoCloseable {
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutNanos;
+    private volatile Timer waitTimer;
+
+    public BulkheadDataSource(DataSource target, int maxConcurrent, Duration acquireTimeout) {
+        super(target);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    /**
+     * Найти ограничитель среди обёрток источника данных.
+     */
+    public static Optional<BulkheadDataSource> find(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(BulkheadDataSource.class)) {
+                return Optional.of(dataSource.unwrap(BulkheadDataSource.class));
+            }
+        } catch (SQLException e) {
+            log.debug("Data source {} cannot be unwrapped", dataSource, e);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        return guarded(() -> super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        return guarded(() -> super.getConnection(username, password));
+    }
+
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.datasource.bulkhead.queue", this, BulkheadDataSource::getQueueLength)
+                .description("Потоки, ожидающие соединения с БД")
+                .register(registry);
+        Gauge.builder("filmorate.datasource.bulkhead.active", this, BulkheadDataSource::getActive)
+                .description("Выданные соединения с БД")
+                .register(registry);
+        waitTimer = Timer.builder("filmorate.datasource.bulkhead.wait")
+                .description("Время ожидания соединения с БД в очереди")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Ожидание соединения с БД прервано", e);
+        }
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            throw new SQLTransientConnectionException("Нет свободного соединения с БД за "
+                    + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " мс, в очереди " + getQueueLength());
+        }
+    }
+
+    private Connection guarded(ConnectionSupplier supplier) throws SQLException {
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    // Методы Object сравнивают и хешируют саму обёртку: иначе proxy.equals(proxy) вернул бы false
+                    switch (method.getName()) {
+                        case "equals" -> {
+                            if (method.getParameterCount() == 1) {
+                                return proxy == args[0];
+                            }
+                        }
+                        case "hashCode" -> {
+                            if (method.getParameterCount() == 0) {
+                                return System.identityHashCode(proxy);
+                            }
+                        }
+                        case "toString" -> {
+                            if (method.getParameterCount() == 0) {
+                                return "Bulkhead[" + connection + "]";
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        try {
+                            connection.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import javax.sql.DataSource;
+import java.util.function.Supplier;
+
+/**
+ * Состояние маршрутизации чтений текущего потока. {@link ReplicaRead} разрешает чтение с реплики,
+ * HTTP-запрос сессии, которая недавно писала, и {@link #onPrimary} его запрещают.
+ * В пределах HTTP-запроса все чтения идут на одну и ту же реплику, чтобы версия и тело сущности,
+ * прочитанные отдельными запросами к БД, не пришли с реплик с разным отставанием.
+ */
+public final class ReadRouting {
+    private static final ThreadLocal<Boolean> READ_ONLY = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<RequestScope> REQUEST = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Начало HTTP-запроса; primaryRequired — сессия недавно писала и должна читать свои записи.
+     */
+    public static void beginRequest(boolean primaryRequired) {
+        REQUEST.set(new RequestScope(primaryRequired));
+    }
+
+    public static void endRequest() {
+        REQUEST.remove();
+    }
+
+    /**
+     * Выполнить action с чтениями только с основной базы, например, загружая значение в кэш,
+     * который не должен запомнить данные отстающей реплики.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(true);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY_FORCED.set(previous);
+        }
+    }
+
+    /**
+     * Отметить, что поток выполняет метод только для чтения; возвращает предыдущее значение для восстановления.
+     */
+    static boolean setReadOnly(boolean readOnly) {
+        boolean previous = READ_ONLY.get();
+        READ_ONLY.set(readOnly);
+        return previous;
+    }
+
+    static boolean isReplicaAllowed() {
+        if (!READ_ONLY.get() || PRIMARY_FORCED.get()) {
+            return false;
+        }
+        RequestScope scope = REQUEST.get();
+        return scope == null || !scope.primaryRequired;
+    }
+
+    /**
+     * Реплика, на которую уже шли чтения этого HTTP-запроса; null вне запроса или до первого чтения.
+     */
+    static DataSource pinnedReplica() {
+        RequestScope scope = REQUEST.get();
+        return scope == null ? null : scope.replica;
+    }
+
+    static void pinReplica(DataSource replica) {
+        RequestScope scope = REQUEST.get();
+        if (scope != null) {
+            scope.replica = replica;
+        }
+    }
+
+    private static final class RequestScope {
+        private final boolean primaryRequired;
+        private DataSource replica;
+
+        private RequestScope(boolean primaryRequired) {
+            this.primaryRequired = primaryRequired;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Чтение с реплик: оборачивает основной источник данных в {@link ReplicaRoutingDataSource} с пулами
+ * к filmorate.datasource.replicas.urls, включает {@link ReplicaRead} и cookie «читать свои записи»
+ * и раз в heartbeat-interval измеряет отставание реплик. Включается свойством filmorate.datasource.replicas.enabled.
+ * Маршрутизатор оборачивает источник раньше {@link BulkheadConfig}, чтобы ограничитель оставался внешним.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaConfig implements WebMvcConfigurer {
+    static final int ORDER = BulkheadConfig.ORDER - 1;
+
+    private final ObjectProvider<DataSource> dataSource;
+    private final Duration stickyWindow;
+
+    public ReplicaConfig(ObjectProvider<DataSource> dataSource,
+                         @Value("${filmorate.datasource.replicas.sticky-window:PT5S}") Duration stickyWindow) {
+        this.dataSource = dataSource;
+        this.stickyWindow = stickyWindow;
+    }
+
+    @Bean
+    public static ReplicaRoutingPostProcessor replicaRoutingPostProcessor(Environment environment) {
+        String[] urls = environment.getProperty("filmorate.datasource.replicas.urls", String[].class, new String[0]);
+        String username = environment.getProperty("filmorate.datasource.replicas.username",
+                environment.getProperty("spring.datasource.username", "sa"));
+        String password = environment.getProperty("filmorate.datasource.replicas.password",
+                environment.getProperty("spring.datasource.password", ""));
+        int poolSize = environment.getProperty("filmorate.datasource.replicas.pool-size", Integer.class, 10);
+        Duration maxLag = environment.getProperty("filmorate.datasource.replicas.max-lag",
+                Duration.class, Duration.ofSeconds(5));
+        return new ReplicaRoutingPostProcessor(urls, username, password, poolSize, maxLag);
+    }
+
+    @Bean
+    public ReplicaReadAspect replicaReadAspect() {
+        return new ReplicaReadAspect();
+    }
+
+    @Bean
+    public MeterBinder replicaMetrics() {
+        return registry -> ReplicaRoutingDataSource.find(dataSource.getObject())
+                .ifPresent(routing -> routing.bindTo(registry));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.datasource.replicas.heartbeat-interval:PT1S}")
+    public void heartbeat() {
+        ReplicaRoutingDataSource.find(dataSource.getObject()).ifPresent(ReplicaRoutingDataSource::heartbeat);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        interceptors.addInterceptor(new ReplicaStickinessInterceptor(stickyWindow));
+    }
+
+    /**
+     * Объявлен в методе @Bean своим типом по той же причине, что и постпроцессор {@link BulkheadConfig}.
+     */
+    static final class ReplicaRoutingPostProcessor implements BeanPostProcessor, Ordered {
+        private final String[] urls;
+        private final String username;
+        private final String password;
+        private final int poolSize;
+        private final Duration maxLag;
+
+        private ReplicaRoutingPostProcessor(String[] urls, String username, String password, int poolSize,
+                                            Duration maxLag) {
+            this.urls = urls;
+            this.username = username;
+            this.password = password;
+            this.poolSize = poolSize;
+            this.maxLag = maxLag;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource primary && ReplicaRoutingDataSource.find(primary).isEmpty()) {
+                Map<String, DataSource> replicas = new LinkedHashMap<>();
+                for (int i = 0; i < urls.length; i++) {
+                    HikariDataSource replica = new HikariDataSource();
+                    replica.setPoolName("replica-" + (i + 1));
+                    replica.setJdbcUrl(urls[i].trim());
+                    replica.setUsername(username);
+                    replica.setPassword(password);
+                    replica.setMaximumPoolSize(poolSize);
+                    replica.setReadOnly(true);
+                    replicas.put(replica.getPoolName(), replica);
+                }
+                return new ReplicaRoutingDataSource(primary, replicas, maxLag);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return ORDER;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод хранилища только читает и может выполняться на реплике, если реплики включены,
+ * не отстают больше допустимого и сессия недавно не писала.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+}
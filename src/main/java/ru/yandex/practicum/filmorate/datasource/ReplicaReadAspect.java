@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Помечает поток как читающий на время методов с {@link ReplicaRead}; вложенные вызовы наследуют пометку.
+ */
+@Aspect
+public class ReplicaReadAspect {
+
+    @Around("@annotation(ru.yandex.practicum.filmorate.datasource.ReplicaRead)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean previous = ReadRouting.setReadOnly(true);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReadRouting.setReadOnly(previous);
+        }
+    }
+}
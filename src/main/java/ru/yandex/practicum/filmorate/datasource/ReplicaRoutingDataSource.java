@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Направляет чтения, разрешённые {@link ReadRouting}, на реплики по кругу, а всё остальное — на основную базу.
+ * Отставание реплики измеряется по строке replication_heartbeat: {@link #heartbeat()} пишет в неё время
+ * на основной базе и сравнивает с тем, что уже видно на реплике. Реплика, отстающая больше maxLag
+ * или недоступная, не используется, пока не догонит; если подходящих реплик нет, читает основная база.
+ * Внутри транзакции соединение уже выбрано, поэтому транзакции целиком идут на основную базу.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends DelegatingDataSource implements AutoCloseable {
+    private static final String WRITE_HEARTBEAT = "UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1";
+    private static final String READ_HEARTBEAT = "SELECT beat_at FROM replication_heartbeat WHERE id = 1";
+
+    private final JdbcTemplate primaryJdbc;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong fallbackReads = new AtomicLong();
+
+    /**
+     * @param replicas реплики по именам для логов и метрик; до первого {@link #heartbeat()} они не используются
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag) {
+        super(primary);
+        this.primaryJdbc = new JdbcTemplate(primary);
+        List<Replica> list = new ArrayList<>();
+        replicas.forEach((name, dataSource) -> list.add(new Replica(name, dataSource)));
+        this.replicas = List.copyOf(list);
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    /**
+     * Найти маршрутизатор среди обёрток источника данных, например, под {@link BulkheadDataSource}.
+     */
+    public static Optional<ReplicaRoutingDataSource> find(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                return Optional.of(dataSource.unwrap(ReplicaRoutingDataSource.class));
+            }
+        } catch (SQLException e) {
+            log.debug("Data source {} cannot be unwrapped", dataSource, e);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!ReadRouting.isReplicaAllowed() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return super.getConnection();
+        }
+        DataSource pinned = ReadRouting.pinnedReplica();
+        for (Replica replica : candidates(pinned)) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                ReadRouting.pinReplica(replica.dataSource);
+                replicaReads.incrementAndGet();
+                return connection;
+            } catch (SQLException e) {
+                replica.markUnavailable(e);
+            }
+        }
+        fallbackReads.incrementAndGet();
+        return super.getConnection();
+    }
+
+    /**
+     * Записать отметку времени на основную базу и пересчитать отставание каждой реплики.
+     * Точность измерения — период вызова: реплика, которая ещё не получила только что записанную
+     * отметку, видит предыдущую.
+     */
+    public void heartbeat() {
+        Instant beat = Instant.now();
+        try {
+            primaryJdbc.update(WRITE_HEARTBEAT, Timestamp.from(beat));
+        } catch (RuntimeException e) {
+            log.warn("Failed to write replication heartbeat, replica state left unchanged", e);
+            return;
+        }
+        for (Replica replica : replicas) {
+            try {
+                Timestamp seen = replica.jdbc.queryForObject(READ_HEARTBEAT, Timestamp.class);
+                long lag = seen == null ? Long.MAX_VALUE : Math.max(0, beat.toEpochMilli() - seen.getTime());
+                replica.update(lag, lag <= maxLagMillis);
+            } catch (RuntimeException e) {
+                replica.markUnavailable(e);
+            }
+        }
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    /**
+     * Чтения, разрешённые на реплике, которые пришлось выполнить на основной базе.
+     */
+    public long getFallbackReads() {
+        return fallbackReads.get();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.datasource.replica.reads", this, ReplicaRoutingDataSource::getReplicaReads)
+                .tag("target", "replica")
+                .register(registry);
+        FunctionCounter.builder("filmorate.datasource.replica.reads", this, ReplicaRoutingDataSource::getFallbackReads)
+                .tag("target", "primary")
+                .register(registry);
+        for (Replica replica : replicas) {
+            Gauge.builder("filmorate.datasource.replica.lag", replica, r -> r.lagMillis)
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("filmorate.datasource.replica.available", replica, r -> r.available ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * Доступные реплики: сначала закреплённая за запросом, затем остальные по кругу.
+     */
+    private List<Replica> candidates(DataSource pinned) {
+        List<Replica> available = new ArrayList<>(replicas.size());
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.available) {
+                continue;
+            }
+            if (replica.dataSource == pinned) {
+                available.add(0, replica);
+            } else {
+                available.add(replica);
+            }
+        }
+        return available;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbc;
+        private volatile boolean available;
+        // -1, пока отставание не измерено или реплика недоступна
+        private volatile long lagMillis = -1;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbc = new JdbcTemplate(dataSource);
+        }
+
+        private void update(long lag, boolean fresh) {
+            if (fresh != available) {
+                if (fresh) {
+                    log.info("Replica {} is in sync (lag {} ms), routing reads to it", name, lag);
+                } else {
+                    log.warn("Replica {} lags {} ms, reading from primary", name, lag);
+                }
+            }
+            lagMillis = lag == Long.MAX_VALUE ? -1 : lag;
+            available = fresh;
+        }
+
+        private void markUnavailable(Exception e) {
+            if (available) {
+                log.warn("Replica {} is unavailable, reading from primary", name, e);
+            }
+            lagMillis = -1;
+            available = false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * Читать свои записи: запрос, изменяющий данные, ставит cookie со временем, до которого сессия
+ * читает только с основной базы. Окно не должно быть меньше допустимого отставания реплик.
+ */
+public class ReplicaStickinessInterceptor implements HandlerInterceptor {
+    static final String COOKIE = "filmorate-primary-until";
+
+    private final Duration window;
+
+    public ReplicaStickinessInterceptor(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long now = System.currentTimeMillis();
+        if (isWrite(request.getMethod())) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(now + window.toMillis()));
+            cookie.setMaxAge((int) Math.max(1, (window.toMillis() + 999) / 1000));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+            ReadRouting.beginRequest(true);
+        } else {
+            ReadRouting.beginRequest(stickyUntil(request) > now);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        ReadRouting.endRequest();
+    }
+
+    private static boolean isWrite(String method) {
+        return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+    }
+
+    private static long stickyUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
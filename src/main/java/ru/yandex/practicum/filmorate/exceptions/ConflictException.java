@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.exceptions;
+
+/**
+ * Операция не может выполняться одновременно с уже идущей такой же операцией.
+ */
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.exceptions;
+
+/**
+ * Версия из If-Match не совпала с текущей: сущность успела измениться после того, как клиент её прочитал.
+ */
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
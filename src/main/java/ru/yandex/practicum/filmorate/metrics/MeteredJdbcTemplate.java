@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * JdbcTemplate, который считает каждый подготовленный JDBC-запрос: общий счётчик в Micrometer
+ * и счётчик текущего потока в {@link QueryCounter}.
+ */
+public class MeteredJdbcTemplate extends JdbcTemplate {
+    private final Counter statements;
+
+    public MeteredJdbcTemplate(DataSource dataSource, MeterRegistry registry) {
+        super(dataSource);
+        this.statements = Counter.builder("filmorate.jdbc.statements")
+                .description("Число JDBC-запросов, выполненных через JdbcTemplate")
+                .register(registry);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        QueryCounter.increment();
+        statements.increment();
+        super.applyStatementSettings(stmt);
+    }
+}
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.Versioned;
+import ru.yandex.practicum.filmorate.service.film.FilmJsonCache;
+import ru.yandex.practicum.filmorate.service.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.NearCache;
+import ru.yandex.practicum.filmorate.storage.ReferenceCache;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+    private final MeterRegistry registry;
+    private final int requestQueryWarnThreshold;
+
+    public MetricsConfig(MeterRegistry registry,
+                         @Value("${filmorate.metrics.request-query-warn-threshold:20}") int requestQueryWarnThreshold) {
+        this.registry = registry;
+        this.requestQueryWarnThreshold = requestQueryWarnThreshold;
+    }
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new MeteredJdbcTemplate(dataSource, registry);
+    }
+
+    @Bean
+    public MeterBinder referenceCacheMetrics(GenreDbStorage genreDbStorage, MpaDbStorage mpaDbStorage) {
+        return meterRegistry -> {
+            bindCache(meterRegistry, "genres", genreDbStorage.getCache());
+            bindCache(meterRegistry, "mpa", mpaDbStorage.getCache());
+        };
+    }
+
+    @Bean
+    public MeterBinder filmJsonCacheMetrics(FilmJsonCache filmJsonCache) {
+        return meterRegistry -> {
+            FunctionCounter.builder("filmorate.film.json.cache.requests", filmJsonCache, FilmJsonCache::getHits)
+                    .tag("result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("filmorate.film.json.cache.requests", filmJsonCache, FilmJsonCache::getMisses)
+                    .tag("result", "miss")
+                    .register(meterRegistry);
+            FunctionCounter.builder("filmorate.film.json.cache.evictions", filmJsonCache,
+                            FilmJsonCache::getEvictions)
+                    .tag("cause", "size")
+                    .register(meterRegistry);
+            FunctionCounter.builder("filmorate.film.json.cache.evictions", filmJsonCache,
+                            FilmJsonCache::getExpirations)
+                    .tag("cause", "expired")
+                    .register(meterRegistry);
+            Gauge.builder("filmorate.film.json.cache.size", filmJsonCache, FilmJsonCache::size)
+                    .register(meterRegistry);
+        };
+    }
+
+    @Bean
+    public MeterBinder nearCacheMetrics(@Qualifier("filmNearCache") NearCache<Versioned<Film>> filmNearCache,
+                                        @Qualifier("userNearCache") NearCache<Versioned<User>> userNearCache) {
+        return meterRegistry -> {
+            bindNearCache(meterRegistry, "films", filmNearCache);
+            bindNearCache(meterRegistry, "users", userNearCache);
+        };
+    }
+
+    @Bean
+    public MeterBinder likeWriteBufferMetrics(LikeWriteBuffer likeWriteBuffer) {
+        return meterRegistry -> {
+            Gauge.builder("filmorate.likes.buffer.pending", likeWriteBuffer, LikeWriteBuffer::size)
+                    .register(meterRegistry);
+            FunctionCounter.builder("filmorate.likes.buffer.flushed", likeWriteBuffer, LikeWriteBuffer::getFlushed)
+                    .register(meterRegistry);
+            FunctionCounter.builder("filmorate.likes.buffer.coalesced", likeWriteBuffer, LikeWriteBuffer::getCoalesced)
+                    .register(meterRegistry);
+        };
+    }
+
+    @Bean
+    public MeterBinder popularityMetrics(PopularityLeaderboard leaderboard) {
+        return meterRegistry -> Gauge.builder("filmorate.popular.recent.likes", leaderboard,
+                        PopularityLeaderboard::recentLikes)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        interceptors.addInterceptor(new QueryCountInterceptor(registry, requestQueryWarnThreshold));
+    }
+
+    private static void bindCache(MeterRegistry meterRegistry, String name, ReferenceCache<?> cache) {
+        FunctionCounter.builder("filmorate.reference.cache.requests", cache, ReferenceCache::getHits)
+                .tags("cache", name, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("filmorate.reference.cache.requests", cache, ReferenceCache::getMisses)
+                .tags("cache", name, "result", "miss")
+                .register(meterRegistry);
+    }
+
+    private static void bindNearCache(MeterRegistry meterRegistry, String name, NearCache<?> cache) {
+        FunctionCounter.builder("filmorate.near.cache.requests", cache, NearCache::getHits)
+                .tags("cache", name, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("filmorate.near.cache.requests", cache, NearCache::getMisses)
+                .tags("cache", name, "result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.near.cache.hit.ratio", cache, NearCache::getHitRatio)
+                .tag("cache", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("filmorate.near.cache.evictions", cache, NearCache::getEvictions)
+                .tags("cache", name, "cause", "size")
+                .register(meterRegistry);
+        FunctionCounter.builder("filmorate.near.cache.evictions", cache, NearCache::getExpirations)
+                .tags("cache", name, "cause", "expired")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.near.cache.size", cache, NearCache::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.near.cache.memory", cache, NearCache::getMemoryEstimate)
+                .tag("cache", name)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Считает JDBC-запросы, выполненные за один HTTP-запрос, и пишет их в гистограмму
+ * filmorate.http.queries с шаблоном URI. Запросы сверх порога логируются как вероятный N+1.
+ * <p>
+ * Счёт ведётся в потоке, обработавшем запрос, от preHandle до afterCompletion. Не учитываются запросы
+ * из других потоков — параллельных стримов, ForkJoinPool, задач по расписанию и сброса LikeWriteBuffer, —
+ * а также из StreamingResponseBody. Тело потоковой выгрузки пишется в потоке исполнителя асинхронных запросов,
+ * а значение в гистограмму записывает завершающая асинхронная диспетчеризация, которая снова проходит
+ * preHandle и начинает счёт с нуля: запросы самой выгрузки в гистограмму не попадают.
+ */
+@Slf4j
+public class QueryCountInterceptor implements HandlerInterceptor {
+    private final MeterRegistry registry;
+    private final int warnThreshold;
+
+    public QueryCountInterceptor(MeterRegistry registry, int warnThreshold) {
+        this.registry = registry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCounter.reset();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        long queries = QueryCounter.current();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder("filmorate.http.queries")
+                .description("Число JDBC-запросов за один HTTP-запрос")
+                .tags("method", request.getMethod(), "uri", uri)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(queries);
+        if (queries > warnThreshold) {
+            log.warn("{} {} issued {} queries", request.getMethod(), uri, queries);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+/**
+ * Счётчик JDBC-запросов текущего потока. Обнуляется в начале HTTP-запроса,
+ * так что разница показаний даёт число запросов к БД за запрос или за операцию хранилища.
+ * Запросы, выполненные в другом потоке, попадают в его собственный счётчик и к запросу не относятся.
+ */
+public final class QueryCounter {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private QueryCounter() {
+    }
+
+    static void increment() {
+        COUNT.get()[0]++;
+    }
+
+    public static long current() {
+        return COUNT.get()[0];
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Замеряет каждую публичную операцию JDBC-хранилищ: гистограмма времени и число строк в ответе
+ * с тегами storage/operation, а операции дольше порога пишутся в лог вместе с числом запросов к БД.
+ */
+@Slf4j
+@Aspect
+@Component
+public class StorageMetricsAspect {
+    private final MeterRegistry registry;
+    private final long slowThresholdNanos;
+
+    public StorageMetricsAspect(MeterRegistry registry,
+                                @Value("${filmorate.metrics.slow-query-threshold:PT0.2S}") Duration slowThreshold) {
+        this.registry = registry;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    @Around("within(ru.yandex.practicum.filmorate.storage..*DbStorage) && execution(public * *(..))"
+            + " && !execution(* getCache())")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        String storage = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String operation = joinPoint.getSignature().getName();
+        long queriesBefore = QueryCounter.current();
+        long start = System.nanoTime();
+        String outcome = "success";
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("filmorate.storage.operation")
+                    .description("Время выполнения операций хранилища")
+                    .tags("storage", storage, "operation", operation, "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(Duration.ofNanos(elapsed));
+            long rows = rowCount(result);
+            if (rows >= 0) {
+                DistributionSummary.builder("filmorate.storage.rows")
+                        .description("Число строк, возвращённых или изменённых операцией хранилища")
+                        .tags("storage", storage, "operation", operation)
+                        .publishPercentileHistogram()
+                        .register(registry)
+                        .record(rows);
+            }
+            if (elapsed >= slowThresholdNanos) {
+                log.warn("Slow storage operation {}.{}: {} ms, {} queries, {} rows", storage, operation,
+                        elapsed / 1_000_000, QueryCounter.current() - queriesBefore, rows);
+            }
+        }
+    }
+
+    /**
+     * Число строк по результату операции; -1, если результат не описывает строки (void, boolean).
+     */
+    private static long rowCount(Object result) {
+        if (result == null || result instanceof Boolean) {
+            return -1;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result instanceof Number number) {
+            return number.longValue();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.Instant;
+import java.util.OptionalLong;
+
+/**
+ * Версия ресурса для условных GET-запросов: значение ETag и время последнего изменения.
+ */
+public record EntityVersion(String eTag, Instant lastModified) {
+
+    /**
+     * Версия строки из БД. Время изменения входит в ETag, чтобы после пересоздания базы
+     * тот же id с той же версией не совпал с закэшированным клиентом значением.
+     */
+    public static EntityVersion of(long version, Instant updatedAt) {
+        return new EntityVersion(version + "-" + Long.toString(updatedAt.toEpochMilli(), 36), updatedAt);
+    }
+
+    /**
+     * Номер версии строки из ETag, выданного {@link #of}, в том числе из заголовка If-Match
+     * (в кавычках, со слабым префиксом W/); пусто, если значение не похоже на такой ETag.
+     */
+    public static OptionalLong parseVersion(String eTag) {
+        String value = eTag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        int dash = value.indexOf('-');
+        try {
+            return OptionalLong.of(Long.parseLong(dash < 0 ? value : value.substring(0, dash)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+}
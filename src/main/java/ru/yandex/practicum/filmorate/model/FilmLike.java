@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.Instant;
+
+/**
+ * Лайк вместе со временем, когда он поставлен.
+ */
+public record FilmLike(long filmId, long userId, Instant createdAt) {
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Итог загрузки таблицы из NDJSON.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResult {
+    private String table;
+    private long rows;
+}
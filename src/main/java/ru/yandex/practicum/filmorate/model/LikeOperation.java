@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Одна операция пакетной синхронизации лайков: поставить или снять лайк.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeOperation {
+    private Long filmId;
+    private Long userId;
+    private Type op;
+
+    public enum Type {
+        ADD,
+        REMOVE
+    }
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат одной операции из пакета лайков.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeOperationResult {
+    private Long filmId;
+    private Long userId;
+    private LikeOperation.Type op;
+    private Status status;
+
+    public enum Status {
+        APPLIED,        // лайк поставлен или снят
+        UNCHANGED,      // лайк уже был в нужном состоянии
+        FILM_NOT_FOUND,
+        USER_NOT_FOUND
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Сущность вместе с версией, прочитанной до неё: тело может быть только новее версии, но не старше.
+ */
+public record Versioned<T>(T value, EntityVersion version) {
+}
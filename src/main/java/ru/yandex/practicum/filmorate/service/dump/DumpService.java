@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.service.dump;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.ConflictException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.Versioned;
+import ru.yandex.practicum.filmorate.service.film.FilmJsonCache;
+import ru.yandex.practicum.filmorate.service.film.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.service.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.film.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.NearCache;
+import ru.yandex.practicum.filmorate.storage.dump.DumpDbStorage;
+import ru.yandex.practicum.filmorate.storage.dump.DumpTable;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Выгрузка и загрузка таблиц целиком. Загрузка идёт мимо хранилищ, поэтому после неё
+ * перестраивается всё, что хранилища и сервисы держат в памяти по этой таблице.
+ * Загрузки выполняются по одной: вторая, начатая во время первой, сразу отклоняется.
+ */
+@Slf4j
+@Service
+public class DumpService {
+    private final DumpDbStorage dumpStorage;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    private final PopularityLeaderboard leaderboard;
+    private final FilmSimilarityIndex similarityIndex;
+    private final FilmJsonCache jsonCache;
+    private final LikeWriteBuffer likeBuffer;
+    private final NearCache<Versioned<Film>> filmCache;
+    private final NearCache<Versioned<User>> userCache;
+    private final ReentrantLock importLock = new ReentrantLock();
+
+    public DumpService(DumpDbStorage dumpStorage,
+                       FilmDbStorage filmStorage,
+                       UserDbStorage userStorage,
+                       GenreDbStorage genreStorage,
+                       MpaDbStorage mpaStorage,
+                       PopularityLeaderboard leaderboard,
+                       FilmSimilarityIndex similarityIndex,
+                       FilmJsonCache jsonCache,
+                       LikeWriteBuffer likeBuffer,
+                       @Qualifier("filmNearCache") NearCache<Versioned<Film>> filmCache,
+                       @Qualifier("userNearCache") NearCache<Versioned<User>> userCache) {
+        this.dumpStorage = dumpStorage;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.leaderboard = leaderboard;
+        this.similarityIndex = similarityIndex;
+        this.jsonCache = jsonCache;
+        this.likeBuffer = likeBuffer;
+        this.filmCache = filmCache;
+        this.userCache = userCache;
+    }
+
+    public void export(DumpTable table, Consumer<Object[]> action) {
+        if (table == DumpTable.LIKES) {
+            // В выгрузку попадают и лайки, ещё ждущие в очереди отложенной записи
+            likeBuffer.flush();
+        }
+        dumpStorage.export(table, action);
+    }
+
+    public long importRows(DumpTable table, Iterator<Object[]> rows) {
+        if (!importLock.tryLock()) {
+            throw new ConflictException("Загрузка другой таблицы ещё не закончилась");
+        }
+        try {
+            if (table == DumpTable.LIKES) {
+                likeBuffer.flush();
+            }
+            long started = System.nanoTime();
+            // Неудачная загрузка таблицу не меняет, поэтому перестраивать нечего
+            long count = dumpStorage.importRows(table, rows);
+            refreshDerivedState(table);
+            long millis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+            log.info("Import of {} finished: {} rows in {} ms ({} rows/s)", table.table(), count, millis,
+                    count * 1000 / millis);
+            return count;
+        } finally {
+            importLock.unlock();
+        }
+    }
+
+    private void refreshDerivedState(DumpTable table) {
+        switch (table) {
+            case MPA_RATINGS -> {
+                mpaStorage.refresh();
+                filmCache.clear();
+                jsonCache.clear();
+            }
+            case GENRES -> {
+                genreStorage.refresh();
+                filmCache.clear();
+                jsonCache.clear();
+            }
+            case USERS -> userCache.clear();
+            case FILMS -> {
+                filmStorage.reloadSearchIndex();
+                filmStorage.reconcileLikeCounts();
+                filmCache.clear();
+                jsonCache.clear();
+                leaderboard.reload();
+                similarityIndex.rebuild();
+            }
+            case FILM_GENRES -> {
+                filmCache.clear();
+                jsonCache.clear();
+                leaderboard.reload();
+            }
+            case LIKES -> {
+                filmStorage.reconcileLikeCounts();
+                leaderboard.reload();
+                similarityIndex.rebuild();
+            }
+            case FRIENDSHIPS -> userStorage.reloadFriendGraph();
+        }
+    }
+}
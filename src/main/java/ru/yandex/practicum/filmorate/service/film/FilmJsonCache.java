@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.NearCache;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Готовый JSON фильмов в UTF-8: фильм сериализуется один раз, а ответы со списками
+ * склеиваются из сохранённых фрагментов без повторного прохода Jackson.
+ * Запись сбрасывается при обновлении и удалении фильма, весь кэш — при изменении справочников
+ * жанров или MPA, чьи названия входят в JSON фильма. Лайки в JSON фильма не входят.
+ * <p>
+ * Фрагменты хранятся в {@link NearCache} с тем же временем жизни, что и ближний кэш фильмов,
+ * поэтому изменения в обход приложения видны не позже, чем через filmorate.near-cache.films.ttl.
+ * Фрагмент для GET /films/{id} помнит ETag версии, с которой загружен, и для другой версии перечитывается:
+ * тело не может оказаться старше ETag, отданного вместе с ним.
+ */
+@Component
+public class FilmJsonCache {
+    private final ObjectWriter writer;
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    private final NearCache<Fragment> cache;
+    private volatile EntityVersion genreVersion;
+    private volatile EntityVersion mpaVersion;
+
+    public FilmJsonCache(ObjectMapper objectMapper,
+                         GenreDbStorage genreStorage,
+                         MpaDbStorage mpaStorage,
+                         @Value("${filmorate.film-json-cache.max-entries:100000}") int maxEntries,
+                         @Value("${filmorate.near-cache.films.ttl:PT5M}") Duration ttl) {
+        this.writer = objectMapper.writerFor(Film.class);
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.cache = new NearCache<>(true, maxEntries, ttl, fragment -> fragment.json().length
+                + (fragment.eTag() == null ? 0 : 40L + 2L * fragment.eTag().length()));
+    }
+
+    /**
+     * JSON одного фильма версии version; при промахе или фрагменте другой версии фильм загружается
+     * через loader и сохраняется. version читается до загрузки, поэтому тело может быть только новее её.
+     */
+    public byte[] get(Long id, EntityVersion version, Function<Long, Film> loader) {
+        checkReferenceData();
+        String eTag = version == null ? null : version.eTag();
+        return cache.get(id, key -> new Fragment(serialize(loader.apply(key)), eTag),
+                fragment -> eTag == null || eTag.equals(fragment.eTag())).json();
+    }
+
+    /**
+     * JSON-массив фильмов в порядке ids. Отсутствующие в кэше фильмы загружаются одним вызовом loader,
+     * фильмы, которых нет и в хранилище, пропускаются.
+     */
+    public byte[] getArray(List<Long> ids, Function<Collection<Long>, List<Film>> loader) {
+        checkReferenceData();
+        List<Fragment> fragments = cache.getAll(ids, missing -> {
+            Map<Long, Fragment> loaded = new HashMap<>();
+            for (Film film : loader.apply(missing)) {
+                loaded.put(film.getId(), new Fragment(serialize(film), null));
+            }
+            return loaded;
+        });
+        byte[][] parts = new byte[fragments.size()][];
+        for (int i = 0; i < parts.length; i++) {
+            Fragment fragment = fragments.get(i);
+            parts[i] = fragment == null ? null : fragment.json();
+        }
+        return joinArray(parts);
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Фрагменты, вытесненные из-за ограничения размера.
+     */
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * Фрагменты, отброшенные по времени жизни или из-за смены версии фильма.
+     */
+    public long getExpirations() {
+        return cache.getExpirations();
+    }
+
+    /**
+     * Справочники в памяти меняют версию только при изменении содержимого, поэтому сравнение дешёвое.
+     */
+    private void checkReferenceData() {
+        EntityVersion genres = genreStorage.getCache().getVersion();
+        EntityVersion mpa = mpaStorage.getCache().getVersion();
+        if (genres == genreVersion && mpa == mpaVersion) {
+            return;
+        }
+        synchronized (this) {
+            if (genres != genreVersion || mpa != mpaVersion) {
+                clear();
+                genreVersion = genres;
+                mpaVersion = mpa;
+            }
+        }
+    }
+
+    private byte[] serialize(Film film) {
+        try {
+            return writer.writeValueAsBytes(film);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать фильм с id = " + film.getId(), e);
+        }
+    }
+
+    private static byte[] joinArray(byte[][] parts) {
+        int length = 2;
+        int count = 0;
+        for (byte[] part : parts) {
+            if (part != null) {
+                length += part.length + (count++ > 0 ? 1 : 0);
+            }
+        }
+        byte[] array = new byte[length];
+        int offset = 0;
+        array[offset++] = '[';
+        boolean first = true;
+        for (byte[] part : parts) {
+            if (part == null) {
+                continue;
+            }
+            if (!first) {
+                array[offset++] = ',';
+            }
+            System.arraycopy(part, 0, array, offset, part.length);
+            offset += part.length;
+            first = false;
+        }
+        array[offset] = ']';
+        return array;
+    }
+
+    /**
+     * JSON фильма и ETag версии, с которой он загружен; null — фрагмент загружен для списка без версии.
+     */
+    private record Fragment(byte[] json, String eTag) {
+    }
+}
@@ -2,87 +2,402 @@ package ru.yandex.practicum.filmorate.service.film;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.datasource.ReadRouting;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.PreconditionFailedException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
+import ru.yandex.practicum.filmorate.model.Versioned;
 import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.NearCache;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
 public class FilmService {
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_LIKE_BATCH_SIZE = 1000;
+    public static final int MAX_RECOMMENDATIONS = 100;
+    public static final int MAX_SEARCH_RESULTS = 100;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final MpaDbStorage mpaDbStorage;
     private final GenreDbStorage genreDbStorage;
     private final UserService userService;
+    private final PopularityLeaderboard leaderboard;
+    private final FilmSimilarityIndex similarityIndex;
+    private final FilmJsonCache jsonCache;
+    private final LikeWriteBuffer likeBuffer;
+    private final NearCache<Versioned<Film>> filmCache;
 
     @Autowired
     public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
                        @Qualifier("userDbStorage") UserStorage userStorage,
                        MpaDbStorage mpaDbStorage,
                        GenreDbStorage genreDbStorage,
-                       UserService userService) {
+                       UserService userService,
+                       PopularityLeaderboard leaderboard,
+                       FilmSimilarityIndex similarityIndex,
+                       FilmJsonCache jsonCache,
+                       LikeWriteBuffer likeBuffer,
+                       @Qualifier("filmNearCache") NearCache<Versioned<Film>> filmCache) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.mpaDbStorage = mpaDbStorage;
         this.genreDbStorage = genreDbStorage;
         this.userService = userService;
+        this.leaderboard = leaderboard;
+        this.similarityIndex = similarityIndex;
+        this.jsonCache = jsonCache;
+        this.likeBuffer = likeBuffer;
+        this.filmCache = filmCache;
     }
 
     public Collection<Film> findAll() {
         return filmStorage.findAll();
     }
 
+    public List<Film> findPage(Long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return filmStorage.findPage(after == null ? 0 : after, limit);
+    }
+
+    public void streamAll(Consumer<Film> action) {
+        filmStorage.streamAll(action);
+    }
+
     public Film create(Film film) {
         validateFilm(film);
-        return filmStorage.create(film);
+        Film created = filmStorage.create(film);
+        leaderboard.filmCreated(created);
+        return created;
     }
 
     public Film update(Film film) {
+        return update(film, null).value();
+    }
+
+    /**
+     * Обновить фильм. ifMatch — значение If-Match: если версия фильма с тех пор изменилась,
+     * обновление отклоняется с PreconditionFailedException, а не затирает чужие изменения.
+     * Вместе с фильмом возвращается его новая версия — ETag для следующего условного обновления.
+     */
+    public Versioned<Film> update(Film film, String ifMatch) {
         validateFilm(film);
-        checkFilmExists(film.getId());
-        return filmStorage.update(film);
+        Long expectedVersion = null;
+        if (ifMatch != null && !ifMatch.isBlank() && !ifMatch.trim().equals("*")) {
+            expectedVersion = EntityVersion.parseVersion(ifMatch).orElseThrow(() ->
+                    new PreconditionFailedException("ETag " + ifMatch + " не совпадает с версией фильма"));
+        }
+        Versioned<Film> versioned = filmStorage.update(film, expectedVersion);
+        Film updated = versioned.value();
+        filmCache.invalidate(updated.getId());
+        jsonCache.invalidate(updated.getId());
+        leaderboard.filmUpdated(updated);
+        fillReferenceNames(updated);
+        return versioned;
     }
 
+    /**
+     * Фильм из ближнего кэша; возвращаемый объект общий и не должен изменяться.
+     * Лайки в фильм не входят, поэтому лайки запись не сбрасывают.
+     */
     public Film getFilmById(Long id) {
-        checkFilmExists(id);
-        return filmStorage.findById(id);
+        if (!filmCache.isEnabled()) {
+            return filmStorage.findById(id);
+        }
+        Versioned<Film> film = cachedFilm(id);
+        if (film == null) {
+            throw new NotFoundException("Фильм с id = " + id + " не найден");
+        }
+        return film.value();
+    }
+
+    /**
+     * Фильм в виде готового JSON из кэша сериализованных фильмов. version — версия, прочитанная до тела
+     * и отданная клиенту как ETag: JSON, сохранённый для другой версии, перечитывается.
+     */
+    public byte[] getFilmJson(Long id, EntityVersion version) {
+        return jsonCache.get(id, version, this::getFilmById);
+    }
+
+    public Optional<EntityVersion> findVersion(Long id) {
+        if (!filmCache.isEnabled()) {
+            return filmStorage.findVersion(id);
+        }
+        return Optional.ofNullable(cachedFilm(id)).map(Versioned::version);
+    }
+
+    /**
+     * Фильм с версией из ближнего кэша, при промахе версия читается до фильма; null, если фильма нет.
+     * Промах читается с основной базы, чтобы кэш не запомнил данные отстающей реплики.
+     */
+    private Versioned<Film> cachedFilm(Long id) {
+        return filmCache.get(id, key -> ReadRouting.onPrimary(() -> filmStorage.findVersion(key)
+                .map(version -> new Versioned<>(filmStorage.findById(key), version))
+                .orElse(null)));
     }
 
     public boolean addLike(Long filmId, Long userId) {
-        checkFilmExists(filmId);
-        userService.validateUserExists(userId);
-        return filmStorage.addLike(filmId, userId);
+        if (likeBuffer.isEnabled()) {
+            return addBufferedLike(filmId, userId);
+        }
+        boolean added;
+        try {
+            added = filmStorage.addLike(filmId, userId);
+        } catch (DataIntegrityViolationException e) {
+            // Существование проверяем только при ошибке вставки, чтобы ответить 404 с понятным сообщением
+            checkFilmExists(filmId);
+            userService.validateUserExists(userId);
+            throw e;
+        }
+        if (added) {
+            likeCommitted(filmId, userId, true);
+        }
+        return added;
     }
 
     public boolean removeLike(Long filmId, Long userId) {
+        boolean removed = likeBuffer.isEnabled()
+                ? likeBuffer.apply(filmId, userId, false)
+                : filmStorage.removeLike(filmId, userId);
+        if (removed) {
+            likeCommitted(filmId, userId, false);
+        } else {
+            checkFilmExists(filmId);
+            userService.validateUserExists(userId);
+        }
+        return removed;
+    }
+
+    /**
+     * Лайк через отложенную запись. Ошибка внешнего ключа проявилась бы только при сбросе очереди,
+     * поэтому фильм и пользователь проверяются сразу, а повторный лайк отклоняется так же, как вставка в БД.
+     */
+    private boolean addBufferedLike(Long filmId, Long userId) {
         checkFilmExists(filmId);
         userService.validateUserExists(userId);
-        return filmStorage.removeLike(filmId, userId);
+        if (!likeBuffer.apply(filmId, userId, true)) {
+            throw new DuplicateKeyException("Пользователь " + userId + " уже поставил лайк фильму " + filmId);
+        }
+        likeCommitted(filmId, userId, true);
+        return true;
+    }
+
+    /**
+     * Учесть лайк в рейтинге и похожих фильмах. Если вызывающий код держит транзакцию, индексы меняются
+     * только после её фиксации: откаченный лайк не должен остаться в рейтинге.
+     */
+    private void likeCommitted(long filmId, long userId, boolean like) {
+        AfterCommit.run(() -> {
+            if (like) {
+                leaderboard.likeAdded(filmId, userId);
+                similarityIndex.likeAdded(filmId, userId);
+            } else {
+                leaderboard.likeRemoved(filmId, userId);
+                similarityIndex.likeRemoved(filmId, userId);
+            }
+        });
+    }
+
+    /**
+     * Применить пакет лайков одной транзакцией. Ссылки на несуществующие фильмы и пользователей
+     * не прерывают пакет, а возвращаются в результате соответствующей операции.
+     * При отложенной записи операции вместо транзакции ставятся в очередь LikeWriteBuffer.
+     */
+    public List<LikeOperationResult> applyLikes(List<LikeOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new ValidationException("Пакет лайков не может быть пустым");
+        }
+        if (operations.size() > MAX_LIKE_BATCH_SIZE) {
+            throw new ValidationException("В пакете не больше " + MAX_LIKE_BATCH_SIZE + " операций");
+        }
+        for (LikeOperation operation : operations) {
+            if (operation == null || operation.getFilmId() == null || operation.getUserId() == null
+                    || operation.getOp() == null) {
+                throw new ValidationException("У операции должны быть заданы filmId, userId и op");
+            }
+        }
+
+        Set<Long> missingFilms = findMissing(operations.stream().map(LikeOperation::getFilmId).toList(),
+                filmStorage::existsAll, filmStorage::existsById);
+        Set<Long> missingUsers = findMissing(operations.stream().map(LikeOperation::getUserId).toList(),
+                userStorage::existsAll, userStorage::existsById);
+
+        List<LikeOperationResult> results = new ArrayList<>(operations.size());
+        List<LikeOperation> valid = new ArrayList<>(operations.size());
+        for (LikeOperation operation : operations) {
+            LikeOperationResult result = new LikeOperationResult(
+                    operation.getFilmId(), operation.getUserId(), operation.getOp(), null);
+            if (missingFilms.contains(operation.getFilmId())) {
+                result.setStatus(LikeOperationResult.Status.FILM_NOT_FOUND);
+            } else if (missingUsers.contains(operation.getUserId())) {
+                result.setStatus(LikeOperationResult.Status.USER_NOT_FOUND);
+            } else {
+                valid.add(operation);
+            }
+            results.add(result);
+        }
+
+        List<Boolean> changed;
+        if (valid.isEmpty()) {
+            changed = List.of();
+        } else {
+            changed = likeBuffer.isEnabled() ? likeBuffer.applyAll(valid) : filmStorage.applyLikes(valid);
+        }
+        int next = 0;
+        for (LikeOperationResult result : results) {
+            if (result.getStatus() != null) {
+                continue;
+            }
+            boolean applied = changed.get(next++);
+            result.setStatus(applied ? LikeOperationResult.Status.APPLIED : LikeOperationResult.Status.UNCHANGED);
+            if (applied) {
+                likeCommitted(result.getFilmId(), result.getUserId(), result.getOp() == LikeOperation.Type.ADD);
+            }
+        }
+        return results;
     }
 
     public Collection<Film> getPopularFilms(int count) {
-        return filmStorage.getPopularFilms(count);
+        // Порядок даёт рейтинг в памяти, из БД читаются только сами фильмы по первичному ключу
+        return filmStorage.findByIds(leaderboard.top(count));
+    }
+
+    /**
+     * То же, что getPopularFilms, но JSON-массивом: из БД читаются только фильмы, которых нет в кэше JSON,
+     * и с основной базы, чтобы кэш не запомнил данные отстающей реплики.
+     * С окном 24h, 7d или 30d фильмы упорядочены по числу лайков за это окно; без окна — за всё время.
+     * genreId и year оставляют только фильмы этого жанра и года выпуска; null — без ограничения.
+     */
+    public byte[] getPopularFilmsJson(int count, String window, Long genreId, Integer year) {
+        if (genreId != null) {
+            genreDbStorage.findById(genreId)
+                    .orElseThrow(() -> new NotFoundException("Жанр не найден с id=" + genreId));
+        }
+        List<Long> ids = leaderboard.top(count, window == null ? null : PopularityWindow.of(window), genreId, year);
+        return jsonCache.getArray(ids, this::loadForJsonCache);
+    }
+
+    /**
+     * Горячие фильмы JSON-массивом: свежие лайки весят больше старых.
+     */
+    public byte[] getHotFilmsJson(int count) {
+        return jsonCache.getArray(leaderboard.hot(count), this::loadForJsonCache);
+    }
+
+    private List<Film> loadForJsonCache(Collection<Long> ids) {
+        return ReadRouting.onPrimary(() -> filmStorage.findByIds(ids));
     }
 
     public void deleteFilm(Long id) {
         checkFilmExists(id);
         filmStorage.delete(id);
+        filmCache.invalidate(id);
+        jsonCache.invalidate(id);
+        leaderboard.filmDeleted(id);
+        similarityIndex.filmDeleted(id);
+    }
+
+    public List<Film> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new ValidationException("Число результатов должно быть от 1 до " + MAX_SEARCH_RESULTS);
+        }
+        return filmStorage.search(query, limit);
+    }
+
+    /**
+     * Фильмы, которые чаще всего лайкают вместе с фильмом id.
+     */
+    public List<Film> getSimilarFilms(Long id, int limit) {
+        validateRecommendationLimit(limit);
+        List<Film> similar = filmStorage.findByIds(similarityIndex.similar(id, limit));
+        if (similar.isEmpty()) {
+            checkFilmExists(id);
+        }
+        return similar;
+    }
+
+    /**
+     * Рекомендации пользователю по похожим фильмам среди тех, что он уже лайкнул.
+     */
+    public List<Film> getRecommendations(Long userId, int limit) {
+        validateRecommendationLimit(limit);
+        List<Film> recommended = filmStorage.findByIds(similarityIndex.recommend(userId, limit));
+        if (recommended.isEmpty()) {
+            userService.validateUserExists(userId);
+        }
+        return recommended;
+    }
+
+    private void validateRecommendationLimit(int limit) {
+        if (limit < 1 || limit > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Число рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS);
+        }
+    }
+
+    /**
+     * Отсутствующие id: одна проверка на весь набор, поштучные — только если что-то не нашлось.
+     */
+    private Set<Long> findMissing(List<Long> ids, Predicate<Collection<Long>> existsAll, Predicate<Long> existsById) {
+        Set<Long> distinct = new HashSet<>(ids);
+        Set<Long> missing = new HashSet<>();
+        if (existsAll.test(distinct)) {
+            return missing;
+        }
+        for (Long id : distinct) {
+            if (!existsById.test(id)) {
+                missing.add(id);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Названия MPA и жанров из справочников в памяти: обновлённый фильм не перечитывается из БД.
+     */
+    private void fillReferenceNames(Film film) {
+        mpaDbStorage.findById(film.getMpa().getId()).ifPresent(mpa -> film.getMpa().setName(mpa.getName()));
+        List<Long> genreIds = film.getGenres().stream().map(Genre::getId).distinct().toList();
+        Set<Genre> genres = new HashSet<>();
+        for (Genre cached : genreDbStorage.findByIds(genreIds)) {
+            Genre genre = new Genre();
+            genre.setId(cached.getId());
+            genre.setName(cached.getName());
+            genres.add(genre);
+        }
+        film.setGenres(genres);
     }
 
     private void checkFilmExists(Long filmId) {
-        if (filmId == null || filmStorage.findById(filmId) == null) {
+        if (filmId == null || !filmStorage.existsById(filmId)) {
             throw new NotFoundException("Фильм с id = " + filmId + " не найден");
         }
     }
@@ -0,0 +1,491 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.LongDoubleAccumulator;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.MutableLongIdSet;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Похожие фильмы по совместным лайкам: для каждого фильма хранится не больше K соседей
+ * с косинусной близостью co(a, b) / sqrt(|a| * |b|), где co — число пользователей, лайкнувших оба фильма.
+ * <p>
+ * В памяти одна копия лайков (пользователь -> его фильмы), число лайков каждого фильма и списки соседей,
+ * в которых хранится co, а близость считается при чтении по текущим числам лайков. Лайк сразу меняет co
+ * в списках соседей лайкнутого фильма и не больше maxFanOut других фильмов того же пользователя: работа
+ * на один лайк ограничена O(maxFanOut * K). Фильм, не вошедший в K лучших, вытесняет худшего соседа, только
+ * если оказался ближе него; пары за пределами выборки maxFanOut и вытесненные соседи возвращаются полным
+ * пересчётом при старте и по расписанию.
+ * <p>
+ * Полный пересчёт читает хранилище без блокировки живых обновлений: изменения, пришедшие за это время,
+ * записываются в журнал и повторяются поверх нового состояния перед его публикацией. Повтор идемпотентен —
+ * добавление уже учтённого лайка и удаление отсутствующего ничего не меняют.
+ */
+@Slf4j
+@Component
+public class FilmSimilarityIndex {
+    private final FilmStorage filmStorage;
+    private final LikeWriteBuffer likeBuffer;
+    private final int neighborsPerFilm;
+    private final int maxFanOut;
+    private final ForkJoinPool pool;
+    // Живые обновления идут под блокировкой чтения, подмена состояния и журнала — под блокировкой записи
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile State state;
+    // Изменения, пришедшие во время полного пересчёта; null, когда пересчёт не идёт
+    private volatile Queue<Change> journal;
+
+    @Autowired
+    public FilmSimilarityIndex(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                               LikeWriteBuffer likeBuffer,
+                               @Value("${filmorate.recommendations.neighbors:20}") int neighborsPerFilm,
+                               @Value("${filmorate.recommendations.fan-out:1000}") int maxFanOut,
+                               @Value("${filmorate.recommendations.parallelism:0}") int parallelism) {
+        this.filmStorage = filmStorage;
+        this.likeBuffer = likeBuffer;
+        this.neighborsPerFilm = neighborsPerFilm;
+        this.maxFanOut = maxFanOut;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.state = new State(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+                neighborsPerFilm);
+    }
+
+    /**
+     * Индекс над хранилищем без отложенной записи лайков.
+     */
+    public FilmSimilarityIndex(FilmStorage filmStorage, int neighborsPerFilm, int maxFanOut, int parallelism) {
+        this(filmStorage, null, neighborsPerFilm, maxFanOut, parallelism);
+    }
+
+    /**
+     * Перечитать лайки из хранилища и пересчитать соседей всех фильмов.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.rebuild-interval:PT6H}",
+            initialDelayString = "${filmorate.recommendations.rebuild-interval:PT6H}")
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            journal = new ConcurrentLinkedQueue<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        State fresh;
+        try {
+            // Лайки из очереди отложенной записи уже учтены в индексе, но в таблице их ещё нет
+            if (likeBuffer != null && likeBuffer.isEnabled()) {
+                likeBuffer.flush();
+            }
+            fresh = build(filmStorage.getLikesByFilm());
+        } catch (RuntimeException e) {
+            journal = null;
+            throw e;
+        }
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            replayed = journal.size();
+            journal.forEach(change -> change.applyTo(fresh, maxFanOut));
+            state = fresh;
+            journal = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Film similarity index built: {} films, {} users, {} changes replayed in {} ms",
+                fresh.likeCounts().size(), fresh.liked().size(), replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void likeAdded(long filmId, long userId) {
+        apply(new Change(Change.Type.ADD, filmId, userId));
+    }
+
+    public void likeRemoved(long filmId, long userId) {
+        apply(new Change(Change.Type.REMOVE, filmId, userId));
+    }
+
+    public void filmDeleted(long filmId) {
+        apply(new Change(Change.Type.DELETE, filmId, 0));
+    }
+
+    /**
+     * До limit самых похожих фильмов по убыванию близости.
+     */
+    public List<Long> similar(long filmId, int limit) {
+        State current = state;
+        NeighborList list = current.neighbors().get(filmId);
+        if (list == null) {
+            return List.of();
+        }
+        Neighbor[] ranked = list.ranked(current.likes(filmId), current);
+        List<Long> result = new ArrayList<>(Math.min(limit, ranked.length));
+        for (int i = 0; i < ranked.length && result.size() < limit; i++) {
+            result.add(ranked[i].filmId());
+        }
+        return result;
+    }
+
+    /**
+     * Рекомендации пользователю: соседи его лайкнутых фильмов с суммарной близостью,
+     * без фильмов, которые он уже лайкнул.
+     */
+    public List<Long> recommend(long userId, int limit) {
+        State current = state;
+        MutableLongIdSet own = current.liked().get(userId);
+        if (own == null) {
+            return List.of();
+        }
+        long[] visits = own.sample(maxFanOut);
+        LongDoubleAccumulator scores = new LongDoubleAccumulator(visits.length * neighborsPerFilm);
+        for (long filmId : visits) {
+            NeighborList list = current.neighbors().get(filmId);
+            if (list == null) {
+                continue;
+            }
+            for (Neighbor neighbor : list.ranked(current.likes(filmId), current)) {
+                if (!own.contains(neighbor.filmId())) {
+                    scores.add(neighbor.filmId(), neighbor.score());
+                }
+            }
+        }
+        long[] top = scores.top(limit);
+        List<Long> result = new ArrayList<>(top.length);
+        for (long filmId : top) {
+            result.add(filmId);
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void apply(Change change) {
+        lock.readLock().lock();
+        try {
+            change.applyTo(state, maxFanOut);
+            Queue<Change> pending = journal;
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Состояние из снимка лайков: пользователи получают массивы инвертированного индекса без копирования,
+     * списки соседей считаются параллельно, после чего снимок по фильмам больше не нужен.
+     */
+    private State build(Map<Long, LongIdSet> byFilm) {
+        Map<Long, LongIdSet> byUser = invert(byFilm);
+        Map<Long, MutableLongIdSet> liked = new ConcurrentHashMap<>(byUser.size() * 2);
+        byUser.forEach((userId, films) -> liked.put(userId, new MutableLongIdSet(films)));
+        Map<Long, Integer> likeCounts = new ConcurrentHashMap<>(byFilm.size() * 2);
+        byFilm.forEach((filmId, users) -> likeCounts.put(filmId, users.size()));
+        Map<Long, NeighborList> neighbors = new ConcurrentHashMap<>(byFilm.size() * 2);
+        pool.submit(() -> byFilm.keySet().parallelStream().forEach(filmId -> {
+            NeighborList list = computeNeighbors(filmId, byFilm, byUser);
+            if (list != null) {
+                neighbors.put(filmId, list);
+            }
+        })).join();
+        return new State(liked, likeCounts, neighbors, neighborsPerFilm);
+    }
+
+    /**
+     * Соседи одного фильма: совместные лайки считаются обходом «фильм -> его пользователи -> их фильмы»
+     * (не больше maxFanOut шагов на каждом уровне), затем из счётчиков отбираются K лучших по близости.
+     */
+    NeighborList computeNeighbors(long filmId, Map<Long, LongIdSet> byFilm, Map<Long, LongIdSet> byUser) {
+        LongIdSet users = byFilm.getOrDefault(filmId, LongIdSet.EMPTY);
+        if (users.isEmpty()) {
+            return null;
+        }
+        int userVisits = Math.min(users.size(), maxFanOut);
+        LongIntCounter coLikes = new LongIntCounter(userVisits * 4);
+        for (int i = 0; i < userVisits; i++) {
+            LongIdSet films = byUser.getOrDefault(users.sample(i, userVisits), LongIdSet.EMPTY);
+            int reach = Math.min(films.size(), maxFanOut);
+            for (int j = 0; j < reach; j++) {
+                long other = films.sample(j, reach);
+                if (other != filmId) {
+                    coLikes.increment(other);
+                }
+            }
+        }
+
+        NeighborList list = new NeighborList(neighborsPerFilm);
+        int filmLikes = users.size();
+        coLikes.forEach((other, count) -> list.offer(other, count, filmLikes,
+                id -> byFilm.getOrDefault(id, LongIdSet.EMPTY).size()));
+        return list.isEmpty() ? null : list;
+    }
+
+    /**
+     * film -> users в user -> films: сначала считаем размеры, затем заполняем массивы нужной длины.
+     */
+    private static Map<Long, LongIdSet> invert(Map<Long, LongIdSet> byFilm) {
+        LongIntCounter sizes = new LongIntCounter(byFilm.size());
+        byFilm.values().forEach(users -> users.forEach(sizes::increment));
+        Map<Long, long[]> arrays = new HashMap<>(sizes.size() * 2);
+        sizes.forEach((userId, count) -> arrays.put(userId, new long[count]));
+        LongIntCounter filled = new LongIntCounter(sizes.size());
+        byFilm.forEach((filmId, users) -> users.forEach(userId ->
+                arrays.get(userId)[filled.increment(userId) - 1] = filmId));
+        Map<Long, LongIdSet> result = new HashMap<>(arrays.size() * 2);
+        arrays.forEach((userId, films) -> result.put(userId, LongIdSet.of(films)));
+        return result;
+    }
+
+    private static double score(int coLikes, int likes, int otherLikes) {
+        return likes == 0 || otherLikes == 0 ? 0 : coLikes / Math.sqrt((double) likes * otherLikes);
+    }
+
+    /**
+     * Лайки пользователей, число лайков фильмов и списки соседей; полный пересчёт строит новое состояние
+     * и подменяет им текущее целиком.
+     */
+    private record State(Map<Long, MutableLongIdSet> liked, Map<Long, Integer> likeCounts,
+                         Map<Long, NeighborList> neighbors, int capacity) implements LikeCounts {
+
+        @Override
+        public int likes(long filmId) {
+            return likeCounts.getOrDefault(filmId, 0);
+        }
+
+        void add(long filmId, long userId, int fanOut) {
+            long[][] others = new long[1][];
+            liked.compute(userId, (id, films) -> {
+                MutableLongIdSet set = films == null ? new MutableLongIdSet() : films;
+                if (!set.contains(filmId)) {
+                    others[0] = set.sample(fanOut);
+                    set.add(filmId);
+                }
+                return set;
+            });
+            if (others[0] == null) {
+                return;
+            }
+            likeCounts.merge(filmId, 1, Integer::sum);
+            for (long other : others[0]) {
+                link(filmId, other, 1);
+                link(other, filmId, 1);
+            }
+        }
+
+        void remove(long filmId, long userId, int fanOut) {
+            long[][] others = new long[1][];
+            liked.computeIfPresent(userId, (id, films) -> {
+                if (films.remove(filmId)) {
+                    others[0] = films.sample(fanOut);
+                }
+                return films.isEmpty() ? null : films;
+            });
+            if (others[0] == null) {
+                return;
+            }
+            likeCounts.computeIfPresent(filmId, (id, count) -> count > 1 ? count - 1 : null);
+            for (long other : others[0]) {
+                link(filmId, other, -1);
+                link(other, filmId, -1);
+            }
+        }
+
+        /**
+         * Удаление фильма редкое, поэтому его лайки вычищаются полным обходом пользователей.
+         */
+        void delete(long filmId) {
+            likeCounts.remove(filmId);
+            NeighborList list = neighbors.remove(filmId);
+            if (list != null) {
+                for (long other : list.ids()) {
+                    neighbors.computeIfPresent(other, (id, otherList) ->
+                            otherList.drop(filmId) && otherList.isEmpty() ? null : otherList);
+                }
+            }
+            liked.keySet().forEach(userId -> liked.computeIfPresent(userId, (id, films) -> {
+                films.remove(filmId);
+                return films.isEmpty() ? null : films;
+            }));
+        }
+
+        private void link(long filmId, long other, int delta) {
+            if (delta > 0) {
+                neighbors.compute(filmId, (id, list) -> {
+                    NeighborList target = list == null ? new NeighborList(capacity) : list;
+                    target.offer(other, delta, likes(filmId), this);
+                    return target;
+                });
+            } else {
+                neighbors.computeIfPresent(filmId, (id, list) -> {
+                    list.adjust(other, delta);
+                    return list.isEmpty() ? null : list;
+                });
+            }
+        }
+    }
+
+    /**
+     * Число лайков фильма; 0 — фильма нет или он удалён.
+     */
+    @FunctionalInterface
+    interface LikeCounts {
+        int likes(long filmId);
+    }
+
+    /**
+     * Не больше capacity соседей одного фильма с числом совместных лайков в параллельных массивах.
+     */
+    static final class NeighborList {
+        private long[] ids;
+        private int[] coLikes;
+        private int size;
+
+        NeighborList(int capacity) {
+            this.ids = new long[capacity];
+            this.coLikes = new int[capacity];
+        }
+
+        /**
+         * Прибавить delta к co соседа other; если его нет в списке, он добавляется при свободном месте
+         * или вытесняет худшего соседа, если ближе него.
+         */
+        synchronized void offer(long other, int delta, int filmLikes, LikeCounts counts) {
+            int index = indexOf(other);
+            if (index >= 0) {
+                coLikes[index] += delta;
+                return;
+            }
+            if (size < ids.length) {
+                ids[size] = other;
+                coLikes[size++] = delta;
+                return;
+            }
+            int weakest = 0;
+            double weakestScore = Double.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                double score = score(coLikes[i], filmLikes, counts.likes(ids[i]));
+                if (score < weakestScore || (score == weakestScore && ids[i] > ids[weakest])) {
+                    weakest = i;
+                    weakestScore = score;
+                }
+            }
+            if (score(delta, filmLikes, counts.likes(other)) > weakestScore) {
+                ids[weakest] = other;
+                coLikes[weakest] = delta;
+            }
+        }
+
+        /**
+         * Прибавить delta к co соседа other, если он в списке; сосед без совместных лайков удаляется.
+         */
+        synchronized void adjust(long other, int delta) {
+            int index = indexOf(other);
+            if (index >= 0) {
+                coLikes[index] += delta;
+                if (coLikes[index] <= 0) {
+                    removeAt(index);
+                }
+            }
+        }
+
+        /**
+         * @return true, если other был в списке
+         */
+        synchronized boolean drop(long other) {
+            int index = indexOf(other);
+            if (index < 0) {
+                return false;
+            }
+            removeAt(index);
+            return true;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        synchronized long[] ids() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        /**
+         * Соседи с близостью по текущим числам лайков, по {@link Neighbor#ORDER}; удалённые фильмы пропускаются.
+         */
+        Neighbor[] ranked(int filmLikes, LikeCounts counts) {
+            long[] snapshotIds;
+            int[] snapshotCoLikes;
+            synchronized (this) {
+                snapshotIds = Arrays.copyOf(ids, size);
+                snapshotCoLikes = Arrays.copyOf(coLikes, size);
+            }
+            Neighbor[] result = new Neighbor[snapshotIds.length];
+            int count = 0;
+            for (int i = 0; i < snapshotIds.length; i++) {
+                int otherLikes = counts.likes(snapshotIds[i]);
+                if (otherLikes > 0) {
+                    result[count++] = new Neighbor(snapshotIds[i], score(snapshotCoLikes[i], filmLikes, otherLikes));
+                }
+            }
+            result = Arrays.copyOf(result, count);
+            Arrays.sort(result, Neighbor.ORDER);
+            return result;
+        }
+
+        private int indexOf(long other) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == other) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void removeAt(int index) {
+            size--;
+            ids[index] = ids[size];
+            coLikes[index] = coLikes[size];
+        }
+    }
+
+    /**
+     * Изменение лайков или каталога; во время полного пересчёта попадает в журнал для повтора.
+     */
+    private record Change(Type type, long filmId, long userId) {
+        enum Type { ADD, REMOVE, DELETE }
+
+        void applyTo(State target, int fanOut) {
+            switch (type) {
+                case ADD -> target.add(filmId, userId, fanOut);
+                case REMOVE -> target.remove(filmId, userId, fanOut);
+                case DELETE -> target.delete(filmId);
+            }
+        }
+    }
+
+    /**
+     * Сосед фильма; ORDER — по убыванию близости, при равенстве по возрастанию id.
+     */
+    record Neighbor(long filmId, double score) {
+        static final Comparator<Neighbor> ORDER = Comparator.comparingDouble(Neighbor::score).reversed()
+                .thenComparingLong(Neighbor::filmId);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+/**
+ * Периодически сверяет денормализованный films.like_count с таблицей likes.
+ * Счётчик обновляется в одной транзакции с лайком, так что расхождения возможны
+ * только после ручных правок БД или загрузки данных в обход приложения.
+ */
+@Slf4j
+@Component
+public class LikeCountReconciler {
+    private final FilmDbStorage filmDbStorage;
+
+    public LikeCountReconciler(FilmDbStorage filmDbStorage) {
+        this.filmDbStorage = filmDbStorage;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.reconcile-interval:PT1H}",
+            initialDelayString = "${filmorate.likes.reconcile-interval:PT1H}")
+    public void reconcile() {
+        int fixed = filmDbStorage.reconcileLikeCounts();
+        if (fixed > 0) {
+            log.warn("Like counters reconciled: {} films had stale like_count", fixed);
+        } else {
+            log.debug("Like counters are consistent");
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Отложенная запись лайков. Лайк сначала дописывается в локальный журнал и попадает в очередь в памяти,
+ * а в таблицу likes очередь сбрасывается пакетами по расписанию или при заполнении.
+ * В очереди хранится одна операция на пару (фильм, пользователь), и каждая из них меняет состояние
+ * относительно БД, поэтому лайк и снятие того же лайка до сброса взаимно уничтожаются.
+ * <p>
+ * Журнал пишется в ОС до ответа клиенту и переживает падение процесса; при старте он проигрывается
+ * в БД до загрузки рейтинга популярности. Повторное проигрывание безопасно: операции задают
+ * итоговое состояние лайка, а не приращение. Полный пересчёт похожих фильмов читает только
+ * сброшенные лайки, как и при синхронной записи лайки во время чтения учтутся следующим пересчётом.
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer {
+    private static final int LOCK_STRIPES = 64;
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final boolean enabled;
+    private final int capacity;
+    private final Path logPath;
+    private final Path flushingLogPath;
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+    // Чтение — запись операции в очередь, запись — подмена очереди при сбросе
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    private final Object logLock = new Object();
+    private volatile Map<LikeKey, LikeOperation.Type> pending = new ConcurrentHashMap<>();
+    // Операции, которые сейчас пишутся в БД: до коммита состояние лайка берётся из них
+    private volatile Map<LikeKey, LikeOperation.Type> flushing = Map.of();
+    private BufferedWriter logWriter;
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public LikeWriteBuffer(FilmDbStorage filmStorage,
+                           UserDbStorage userStorage,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.log:./db/likes.log}") String logPath) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.logPath = Path.of(logPath);
+        this.flushingLogPath = Path.of(logPath + ".flushing");
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Проиграть журнал, оставшийся от прошлого запуска. Выполняется и при выключенной отложенной записи,
+     * чтобы лайки не потерялись после её отключения.
+     */
+    @PostConstruct
+    public void replay() {
+        Map<LikeKey, LikeOperation.Type> operations = new LinkedHashMap<>();
+        int lines = readLog(flushingLogPath, operations) + readLog(logPath, operations);
+        if (lines > 0) {
+            int likes = operations.size();
+            write(operations);
+            log.info("Like log replayed: {} records, {} likes", lines, likes);
+        }
+        deleteLog(flushingLogPath);
+        deleteLog(logPath);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Поставить (like = true) или снять лайк.
+     *
+     * @return false, если лайк уже в нужном состоянии с учётом ещё не сброшенных операций
+     */
+    public boolean apply(long filmId, long userId, boolean like) {
+        LikeKey key = new LikeKey(filmId, userId);
+        LikeOperation.Type op = like ? LikeOperation.Type.ADD : LikeOperation.Type.REMOVE;
+        while (true) {
+            swapLock.readLock().lock();
+            try {
+                Map<LikeKey, LikeOperation.Type> queue = pending;
+                if (queue.size() < capacity || queue.containsKey(key)) {
+                    synchronized (stripes[Math.floorMod(key.hashCode(), LOCK_STRIPES)]) {
+                        if (isLiked(key, queue) == like) {
+                            return false;
+                        }
+                        appendToLog(op, key);
+                        // В очереди может быть только противоположная операция: вместе они ничего не меняют
+                        if (queue.remove(key) == null) {
+                            queue.put(key, op);
+                        } else {
+                            coalesced.incrementAndGet();
+                        }
+                        return true;
+                    }
+                }
+            } finally {
+                swapLock.readLock().unlock();
+            }
+            // Очередь заполнена: сбрасываем её в потоке запроса, это и есть обратное давление.
+            // Если БД недоступна, ошибка уходит клиенту, а не в бесконечный повтор
+            writePending();
+        }
+    }
+
+    /**
+     * Пакет операций по порядку; для каждой — изменила ли она состояние лайка.
+     */
+    public List<Boolean> applyAll(List<LikeOperation> operations) {
+        List<Boolean> changed = new ArrayList<>(operations.size());
+        for (LikeOperation operation : operations) {
+            changed.add(apply(operation.getFilmId(), operation.getUserId(),
+                    operation.getOp() == LikeOperation.Type.ADD));
+        }
+        return changed;
+    }
+
+    /**
+     * Записать накопленные операции в БД. Операции, которые не удалось записать, возвращаются в очередь
+     * и пишутся следующим сбросом.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval:PT1S}")
+    public void flush() {
+        try {
+            writePending();
+        } catch (RuntimeException e) {
+            log.error("Like buffer flush failed, likes returned to the queue", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        synchronized (logLock) {
+            closeLog();
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public long getFlushed() {
+        return flushed.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    private void writePending() {
+        synchronized (flushLock) {
+            Map<LikeKey, LikeOperation.Type> batch;
+            swapLock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ConcurrentHashMap<>();
+                flushing = batch;
+                rotateLog();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            long start = System.nanoTime();
+            Map<LikeKey, LikeOperation.Type> unwritten = new LinkedHashMap<>(batch);
+            try {
+                write(unwritten);
+                deleteLog(flushingLogPath);
+            } catch (RuntimeException e) {
+                requeue(unwritten);
+                throw e;
+            } finally {
+                flushed.addAndGet(batch.size() - unwritten.size());
+                flushing = Map.of();
+            }
+            log.debug("Like buffer flushed: {} likes in {} ms", batch.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private boolean isLiked(LikeKey key, Map<LikeKey, LikeOperation.Type> queue) {
+        LikeOperation.Type op = queue.get(key);
+        if (op == null) {
+            op = flushing.get(key);
+        }
+        if (op != null) {
+            return op == LikeOperation.Type.ADD;
+        }
+        return filmStorage.hasLike(key.filmId(), key.userId());
+    }
+
+    /**
+     * Записать операции транзакциями по MAX_LIKE_BATCH_SIZE. Записанные удаляются из operations.
+     * Операции с удалёнными за это время фильмами и пользователями отбрасываются.
+     */
+    private void write(Map<LikeKey, LikeOperation.Type> operations) {
+        List<LikeOperation> all = new ArrayList<>(operations.size());
+        operations.forEach((key, op) -> all.add(new LikeOperation(key.filmId(), key.userId(), op)));
+        for (int from = 0; from < all.size(); from += FilmService.MAX_LIKE_BATCH_SIZE) {
+            List<LikeOperation> chunk = all.subList(from, Math.min(from + FilmService.MAX_LIKE_BATCH_SIZE,
+                    all.size()));
+            List<LikeOperation> valid = withExistingReferences(chunk);
+            if (valid.size() < chunk.size()) {
+                log.warn("Like buffer dropped {} likes of deleted films or users", chunk.size() - valid.size());
+            }
+            if (!valid.isEmpty()) {
+                filmStorage.applyLikes(valid);
+            }
+            for (LikeOperation operation : chunk) {
+                operations.remove(new LikeKey(operation.getFilmId(), operation.getUserId()));
+            }
+        }
+    }
+
+    private List<LikeOperation> withExistingReferences(List<LikeOperation> chunk) {
+        Set<Long> films = new HashSet<>();
+        Set<Long> users = new HashSet<>();
+        for (LikeOperation operation : chunk) {
+            films.add(operation.getFilmId());
+            users.add(operation.getUserId());
+        }
+        if (!filmStorage.existsAll(films)) {
+            films.removeIf(id -> !filmStorage.existsById(id));
+        }
+        if (!userStorage.existsAll(users)) {
+            users.removeIf(id -> !userStorage.existsById(id));
+        }
+        return chunk.stream()
+                .filter(operation -> films.contains(operation.getFilmId()) && users.contains(operation.getUserId()))
+                .toList();
+    }
+
+    /**
+     * Вернуть незаписанные операции в очередь. Если после них пришла операция по тому же лайку,
+     * она отменяла незаписанную, и в БД по этому лайку писать нечего.
+     */
+    private void requeue(Map<LikeKey, LikeOperation.Type> unwritten) {
+        swapLock.writeLock().lock();
+        try {
+            unwritten.forEach((key, op) -> {
+                if (pending.remove(key) == null) {
+                    pending.put(key, op);
+                }
+            });
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void appendToLog(LikeOperation.Type op, LikeKey key) {
+        synchronized (logLock) {
+            try {
+                if (logWriter == null) {
+                    Path parent = logPath.toAbsolutePath().getParent();
+                    if (parent != null) {
+                        Files.createDirectories(parent);
+                    }
+                    logWriter = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                logWriter.write((op == LikeOperation.Type.ADD ? '+' : '-') + " " + key.filmId() + " " + key.userId());
+                logWriter.newLine();
+                logWriter.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось записать лайк в журнал " + logPath, e);
+            }
+        }
+    }
+
+    /**
+     * Закрыть журнал сбрасываемой очереди и начать новый. Если прошлый сброс не удался, его журнал
+     * ещё не удалён, и текущий дописывается в конец, сохраняя порядок операций.
+     */
+    private void rotateLog() {
+        synchronized (logLock) {
+            closeLog();
+            try {
+                if (!Files.exists(logPath)) {
+                    return;
+                }
+                if (Files.exists(flushingLogPath)) {
+                    Files.write(flushingLogPath, Files.readAllBytes(logPath), StandardOpenOption.APPEND);
+                    Files.delete(logPath);
+                } else {
+                    Files.move(logPath, flushingLogPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось переключить журнал лайков " + logPath, e);
+            }
+        }
+    }
+
+    private void closeLog() {
+        if (logWriter == null) {
+            return;
+        }
+        try {
+            logWriter.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть журнал лайков " + logPath, e);
+        } finally {
+            logWriter = null;
+        }
+    }
+
+    /**
+     * Прочитать журнал в operations: для каждого лайка остаётся последняя операция.
+     */
+    private static int readLog(Path path, Map<LikeKey, LikeOperation.Type> operations) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            int records = 0;
+            for (String line : lines) {
+                String[] parts = line.split(" ");
+                // Последняя строка может быть оборвана падением процесса
+                if (parts.length != 3 || !(parts[0].equals("+") || parts[0].equals("-"))) {
+                    continue;
+                }
+                try {
+                    LikeKey key = new LikeKey(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    operations.remove(key);
+                    operations.put(key, parts[0].equals("+") ? LikeOperation.Type.ADD : LikeOperation.Type.REMOVE);
+                    records++;
+                } catch (NumberFormatException e) {
+                    // Та же оборванная строка
+                }
+            }
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать журнал лайков " + path, e);
+        }
+    }
+
+    private static void deleteLog(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить журнал лайков " + path, e);
+        }
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+}
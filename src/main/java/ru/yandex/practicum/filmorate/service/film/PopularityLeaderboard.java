@@ -0,0 +1,236 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Рейтинг популярности фильмов в памяти процесса. Загружается из таблицы likes при старте,
+ * дальше поддерживается инкрементально из FilmService, поэтому топ фильмов строится без обращения к БД.
+ * Лайки из очереди отложенной записи попадают в рейтинг сразу, до сброса в БД.
+ * Рядом ведутся рейтинги по жанрам и годам выпуска, за скользящие окна и горячий рейтинг —
+ * см. {@link TrendingCounters}.
+ */
+@Slf4j
+@Component
+// Журнал отложенных лайков проигрывается в БД раньше, чем рейтинг читает таблицу likes
+@DependsOn("likeWriteBuffer")
+public class PopularityLeaderboard {
+    private final FilmStorage filmStorage;
+    private final PopularityRanking ranking = new PopularityRanking();
+    // Рейтинги за всё время по жанрам и годам выпуска, с теми же очками, что и общий
+    private final Map<Long, PopularityRanking> byGenre = new ConcurrentHashMap<>();
+    private final Map<Integer, PopularityRanking> byYear = new ConcurrentHashMap<>();
+    // id фильма -> его жанры и год; запись фильма служит и блокировкой, под которой меняются его счётчики
+    private final Map<Long, Facets> facets = new ConcurrentHashMap<>();
+    private final TrendingCounters trending;
+
+    public PopularityLeaderboard(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                                 @Value("${filmorate.popular.hot-half-life:PT24H}") Duration hotHalfLife) {
+        this.filmStorage = filmStorage;
+        this.trending = new TrendingCounters(hotHalfLife, System::currentTimeMillis);
+    }
+
+    @PostConstruct
+    public void reload() {
+        Map<Long, Long> likeCounts = filmStorage.getLikeCounts();
+        ranking.clear();
+        facets.clear();
+        byGenre.clear();
+        byYear.clear();
+        likeCounts.forEach(ranking::put);
+        filmStorage.streamAll(film -> {
+            Facets filmFacets = Facets.of(film);
+            facets.put(film.getId(), filmFacets);
+            place(film.getId(), filmFacets, likeCounts.getOrDefault(film.getId(), 0L));
+        });
+        trending.reload(filmStorage::streamLikesSince);
+        log.info("Popularity leaderboard loaded: {} films, {} genres, {} years, {} likes in time windows",
+                likeCounts.size(), byGenre.size(), byYear.size(), trending.recentLikes());
+    }
+
+    public void filmCreated(Film film) {
+        Facets filmFacets = Facets.of(film);
+        ranking.put(film.getId(), 0);
+        facets.put(film.getId(), filmFacets);
+        place(film.getId(), filmFacets, 0);
+    }
+
+    /**
+     * Перенести фильм между рейтингами жанров и годов, если они изменились; очки сохраняются.
+     */
+    public void filmUpdated(Film film) {
+        Facets updated = Facets.of(film);
+        facets.computeIfPresent(film.getId(), (filmId, current) -> {
+            if (current.equals(updated)) {
+                return current;
+            }
+            displace(filmId, current);
+            place(filmId, updated, ranking.score(filmId));
+            return updated;
+        });
+    }
+
+    public void filmDeleted(long filmId) {
+        ranking.remove(filmId);
+        Facets removed = facets.remove(filmId);
+        if (removed != null) {
+            displace(filmId, removed);
+        }
+        trending.filmDeleted(filmId);
+    }
+
+    public void likeAdded(long filmId, long userId) {
+        adjust(filmId, 1);
+        trending.likeAdded(filmId, userId);
+    }
+
+    public void likeRemoved(long filmId, long userId) {
+        adjust(filmId, -1);
+        trending.likeRemoved(filmId, userId);
+    }
+
+    public List<Long> top(int count) {
+        return ranking.top(count);
+    }
+
+    /**
+     * Первые count фильмов по числу лайков за окно.
+     */
+    public List<Long> top(PopularityWindow window, int count) {
+        return trending.top(window, count);
+    }
+
+    /**
+     * Первые count фильмов жанра genreId и года выпуска year; null в любом из параметров — без этого условия.
+     * За всё время ответ дают рейтинги жанра или года; если заданы оба, просматривается меньший из них.
+     * В окне window фильтр применяется при просмотре оконного рейтинга, в котором только фильмы с лайками в окне.
+     */
+    public List<Long> top(int count, PopularityWindow window, Long genreId, Integer year) {
+        LongPredicate filter = filmId -> matches(filmId, genreId, year);
+        if (window != null) {
+            return genreId == null && year == null ? trending.top(window, count) : trending.top(window, count, filter);
+        }
+        if (genreId == null && year == null) {
+            return ranking.top(count);
+        }
+        PopularityRanking genreRanking = genreId == null ? null : byGenre.get(genreId);
+        PopularityRanking yearRanking = year == null ? null : byYear.get(year);
+        if ((genreId != null && genreRanking == null) || (year != null && yearRanking == null)) {
+            return List.of();
+        }
+        if (yearRanking == null) {
+            return genreRanking.top(count);
+        }
+        if (genreRanking == null) {
+            return yearRanking.top(count);
+        }
+        PopularityRanking smaller = genreRanking.size() <= yearRanking.size() ? genreRanking : yearRanking;
+        return smaller.top(count, Long.MIN_VALUE, filter);
+    }
+
+    /**
+     * Первые count фильмов по горячему счёту.
+     */
+    public List<Long> hot(int count) {
+        return trending.hot(count);
+    }
+
+    public long likeCount(long filmId) {
+        return ranking.score(filmId);
+    }
+
+    public int recentLikes() {
+        return trending.recentLikes();
+    }
+
+    /**
+     * Сдвиг окон по расписанию, чтобы смену часа не оплачивал первый запрос после неё.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.popular.advance-interval:PT1M}")
+    public void advance() {
+        trending.advance();
+    }
+
+    /**
+     * Изменить очки фильма во всех его рейтингах. Обновление фильма переносит его между рейтингами
+     * под той же записью facets, поэтому лайк не теряется и не попадает в рейтинг старого жанра.
+     */
+    private void adjust(long filmId, long delta) {
+        Facets current = facets.computeIfPresent(filmId, (id, filmFacets) -> {
+            ranking.adjust(id, delta);
+            filmFacets.genreIds().forEach(genreId -> byGenre.get(genreId).adjust(id, delta));
+            if (filmFacets.year() != null) {
+                byYear.get(filmFacets.year()).adjust(id, delta);
+            }
+            return filmFacets;
+        });
+        if (current == null) {
+            ranking.adjust(filmId, delta);
+        }
+    }
+
+    private void place(long filmId, Facets filmFacets, long score) {
+        for (Long genreId : filmFacets.genreIds()) {
+            byGenre.computeIfAbsent(genreId, id -> new PopularityRanking()).put(filmId, score);
+        }
+        if (filmFacets.year() != null) {
+            byYear.computeIfAbsent(filmFacets.year(), y -> new PopularityRanking()).put(filmId, score);
+        }
+    }
+
+    private void displace(long filmId, Facets filmFacets) {
+        for (Long genreId : filmFacets.genreIds()) {
+            PopularityRanking genreRanking = byGenre.get(genreId);
+            if (genreRanking != null) {
+                genreRanking.remove(filmId);
+            }
+        }
+        if (filmFacets.year() != null) {
+            PopularityRanking yearRanking = byYear.get(filmFacets.year());
+            if (yearRanking != null) {
+                yearRanking.remove(filmId);
+            }
+        }
+    }
+
+    private boolean matches(long filmId, Long genreId, Integer year) {
+        Facets filmFacets = facets.get(filmId);
+        return filmFacets != null
+                && (genreId == null || filmFacets.genreIds().contains(genreId))
+                && (year == null || year.equals(filmFacets.year()));
+    }
+
+    /**
+     * Атрибуты фильма, по которым строятся отдельные рейтинги.
+     */
+    private record Facets(Integer year, Set<Long> genreIds) {
+        static Facets of(Film film) {
+            Set<Long> genreIds = new HashSet<>();
+            if (film.getGenres() != null) {
+                for (Genre genre : film.getGenres()) {
+                    if (genre.getId() != null) {
+                        genreIds.add(genre.getId());
+                    }
+                }
+            }
+            Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+            return new Facets(year, Set.copyOf(genreIds));
+        }
+    }
+}
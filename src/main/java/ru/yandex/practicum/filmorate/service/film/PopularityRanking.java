@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongPredicate;
+
+/**
+ * Упорядоченный по убыванию очков набор фильмов (при равенстве — по возрастанию id).
+ * <p>
+ * Каждый фильм хранит собственный счётчик, под монитором которого выполняется перестановка
+ * в skip-list: конкурирующие обновления одного фильма выстраиваются в очередь, а обновления
+ * разных фильмов идут параллельно. Перестановка стоит O(log n), выборка топа — O(count).
+ */
+public class PopularityRanking {
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingLong(Entry::score).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+
+    /**
+     * Добавить фильм с заданным количеством очков; если фильм уже есть, его очки заменяются.
+     */
+    public void put(long filmId, long score) {
+        Counter counter = counters.computeIfAbsent(filmId, id -> new Counter());
+        synchronized (counter) {
+            if (counter.removed) {
+                return;
+            }
+            move(filmId, counter, score);
+        }
+    }
+
+    /**
+     * Изменить очки фильма на delta. Фильмы, которых нет в рейтинге, игнорируются.
+     */
+    public void adjust(long filmId, long delta) {
+        Counter counter = counters.get(filmId);
+        if (counter == null) {
+            return;
+        }
+        synchronized (counter) {
+            if (counter.removed) {
+                return;
+            }
+            move(filmId, counter, counter.score + delta);
+        }
+    }
+
+    /**
+     * Изменить очки фильма на delta, добавив фильм с нулём очков, если его ещё нет.
+     */
+    public void add(long filmId, long delta) {
+        while (true) {
+            Counter counter = counters.computeIfAbsent(filmId, id -> new Counter());
+            synchronized (counter) {
+                // Фильм удалили между computeIfAbsent и захватом монитора — берём новый счётчик
+                if (!counter.removed) {
+                    move(filmId, counter, counter.score + delta);
+                    return;
+                }
+            }
+        }
+    }
+
+    public void remove(long filmId) {
+        Counter counter = counters.remove(filmId);
+        if (counter == null) {
+            return;
+        }
+        synchronized (counter) {
+            counter.removed = true;
+            ranking.remove(new Entry(counter.score, filmId));
+        }
+    }
+
+    public long score(long filmId) {
+        Counter counter = counters.get(filmId);
+        if (counter == null) {
+            return 0;
+        }
+        synchronized (counter) {
+            return counter.score;
+        }
+    }
+
+    /**
+     * Идентификаторы первых count фильмов рейтинга.
+     */
+    public List<Long> top(int count) {
+        return top(count, Long.MIN_VALUE);
+    }
+
+    /**
+     * Идентификаторы первых count фильмов рейтинга с не меньше чем minScore очков.
+     */
+    public List<Long> top(int count, long minScore) {
+        return top(count, minScore, filmId -> true);
+    }
+
+    /**
+     * Идентификаторы первых count фильмов рейтинга с не меньше чем minScore очков, подходящих под filter.
+     * Рейтинг просматривается по порядку, пока не наберётся count фильмов, поэтому редкий фильтр стоит
+     * просмотра большей части рейтинга.
+     */
+    public List<Long> top(int count, long minScore, LongPredicate filter) {
+        if (count <= 0) {
+            return List.of();
+        }
+        // Во время перестановки фильм на мгновение присутствует в наборе дважды — оставляем первое вхождение
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Entry entry : ranking) {
+            if (entry.score() < minScore) {
+                break;
+            }
+            if (!filter.test(entry.filmId())) {
+                continue;
+            }
+            ids.add(entry.filmId());
+            if (ids.size() == count) {
+                break;
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    /**
+     * Снимок идентификаторов фильмов рейтинга в произвольном порядке.
+     */
+    public List<Long> filmIds() {
+        return new ArrayList<>(counters.keySet());
+    }
+
+    public void clear() {
+        for (Long filmId : counters.keySet()) {
+            remove(filmId);
+        }
+    }
+
+    private void move(long filmId, Counter counter, long score) {
+        long previous = counter.score;
+        boolean present = counter.present;
+        counter.score = score;
+        counter.present = true;
+        // Итератор skip-list слабо согласован: он гарантированно возвращает фильмы, не менявшие позицию за время
+        // обхода, а переставляемый фильм может встретить дважды (top() оставляет первое вхождение) или
+        // пропустить, если новую позицию уже прошёл, а старая удалена раньше, чем он до неё дошёл.
+        // Вставка до удаления лишь сокращает окно пропуска; следующий запрос увидит фильм на новом месте
+        ranking.add(new Entry(score, filmId));
+        if (present && previous != score) {
+            ranking.remove(new Entry(previous, filmId));
+        }
+    }
+
+    private static final class Counter {
+        private long score;
+        private boolean present;
+        private boolean removed;
+    }
+
+    private record Entry(long score, long filmId) {
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+/**
+ * Скользящие окна рейтинга популярности; в окно входят лайки за последние hours часов, включая текущий.
+ */
+public enum PopularityWindow {
+    DAY("24h", 24),
+    WEEK("7d", 7 * 24),
+    MONTH("30d", 30 * 24);
+
+    private final String name;
+    private final int hours;
+
+    PopularityWindow(String name, int hours) {
+        this.name = name;
+        this.hours = hours;
+    }
+
+    public static PopularityWindow of(String name) {
+        for (PopularityWindow window : values()) {
+            if (window.name.equals(name)) {
+                return window;
+            }
+        }
+        throw new ValidationException("Период популярности должен быть одним из: 24h, 7d, 30d");
+    }
+
+    public int hours() {
+        return hours;
+    }
+
+    /**
+     * Самое длинное окно: лайки старше него ни в один оконный рейтинг не входят.
+     */
+    public static int maxHours() {
+        return MONTH.hours;
+    }
+}
@@ -0,0 +1,272 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+
+/**
+ * Рейтинги популярности за скользящие окна {@link PopularityWindow} и «горячий» рейтинг с экспоненциальным
+ * затуханием. Лайки последних 30 дней разложены по часовым корзинам; счётчики окон меняются на ±1 при каждом
+ * лайке, а при смене часа из окон вычитаются только корзины, которые из них вышли. Горячий счёт фильма —
+ * сумма по лайкам HOT_SCALE * 2^(-возраст / период полураспада), раз в час все счета умножаются на затухание
+ * за прошедшие часы. Точность окон и затухания — час.
+ * <p>
+ * Лайк и его отмена обрабатываются параллельно под блокировкой чтения; смена часа, загрузка
+ * и удаление фильма берут блокировку записи.
+ */
+public class TrendingCounters {
+    static final long HOT_SCALE = 1 << 20;
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final LongSupplier clockMillis;
+    private final double hourlyDecay;
+    // Вклад лайка в горячий счёт по его возрасту в часах, для возрастов внутри самого длинного окна
+    private final long[] hotWeights = new long[PopularityWindow.maxHours()];
+    private final Map<PopularityWindow, PopularityRanking> windows = new EnumMap<>(PopularityWindow.class);
+    private final PopularityRanking hot = new PopularityRanking();
+    // Лайк -> час, в который он поставлен; только лайки, ещё входящие в самое длинное окно
+    private final Map<Like, Long> recent = new ConcurrentHashMap<>();
+    // Час -> лайки этого часа
+    private final Map<Long, Set<Like>> buckets = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long currentHour;
+
+    /**
+     * @param hotHalfLife за это время вклад лайка в горячий рейтинг уменьшается вдвое; не меньше часа
+     */
+    public TrendingCounters(Duration hotHalfLife, LongSupplier clockMillis) {
+        if (hotHalfLife.compareTo(Duration.ofHours(1)) < 0) {
+            throw new IllegalArgumentException("Период полураспада горячего рейтинга не меньше часа: " + hotHalfLife);
+        }
+        this.clockMillis = clockMillis;
+        this.hourlyDecay = Math.pow(0.5, (double) HOUR_MILLIS / hotHalfLife.toMillis());
+        for (int age = 0; age < hotWeights.length; age++) {
+            hotWeights[age] = Math.round(HOT_SCALE * Math.pow(hourlyDecay, age));
+        }
+        for (PopularityWindow window : PopularityWindow.values()) {
+            windows.put(window, new PopularityRanking());
+        }
+        this.currentHour = hourOf(clockMillis.getAsLong());
+    }
+
+    /**
+     * Построить счётчики заново по лайкам, которые source передаёт начиная с указанного момента.
+     * Лайки из будущего (часы базы и приложения расходятся) считаются поставленными в текущий час.
+     */
+    public void reload(BiConsumer<Instant, Consumer<FilmLike>> source) {
+        lock.writeLock().lock();
+        try {
+            recent.clear();
+            buckets.clear();
+            windows.values().forEach(PopularityRanking::clear);
+            hot.clear();
+            long now = hourOf(clockMillis.getAsLong());
+            currentHour = now;
+            Instant since = Instant.ofEpochMilli((now - PopularityWindow.maxHours() + 1) * HOUR_MILLIS);
+            source.accept(since, filmLike -> {
+                long hour = Math.min(hourOf(filmLike.createdAt().toEpochMilli()), now);
+                Like like = new Like(filmLike.filmId(), filmLike.userId());
+                if (hour > now - PopularityWindow.maxHours() && recent.putIfAbsent(like, hour) == null) {
+                    count(like, hour);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void likeAdded(long filmId, long userId) {
+        advance();
+        lock.readLock().lock();
+        try {
+            long hour = currentHour;
+            recent.compute(new Like(filmId, userId), (like, previous) -> {
+                if (previous != null) {
+                    forget(like, previous);
+                }
+                count(like, hour);
+                return hour;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Лайки старше самого длинного окна или с неизвестным временем в окнах уже не учитываются:
+     * их отмена счётчики не меняет.
+     */
+    public void likeRemoved(long filmId, long userId) {
+        advance();
+        lock.readLock().lock();
+        try {
+            recent.computeIfPresent(new Like(filmId, userId), (like, hour) -> {
+                forget(like, hour);
+                return null;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void filmDeleted(long filmId) {
+        lock.writeLock().lock();
+        try {
+            recent.entrySet().removeIf(entry -> {
+                if (entry.getKey().filmId() != filmId) {
+                    return false;
+                }
+                Set<Like> bucket = buckets.get(entry.getValue());
+                if (bucket != null) {
+                    bucket.remove(entry.getKey());
+                }
+                return true;
+            });
+            windows.values().forEach(ranking -> ranking.remove(filmId));
+            hot.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Идентификаторы первых count фильмов по числу лайков в окне; фильмы без лайков в окне не попадают.
+     */
+    public List<Long> top(PopularityWindow window, int count) {
+        return top(window, count, filmId -> true);
+    }
+
+    /**
+     * То же, что {@link #top(PopularityWindow, int)}, но только фильмы, подходящие под filter.
+     */
+    public List<Long> top(PopularityWindow window, int count, LongPredicate filter) {
+        advance();
+        return windows.get(window).top(count, 1, filter);
+    }
+
+    /**
+     * Идентификаторы первых count фильмов по горячему счёту.
+     */
+    public List<Long> hot(int count) {
+        advance();
+        return hot.top(count, 1);
+    }
+
+    long count(PopularityWindow window, long filmId) {
+        advance();
+        return windows.get(window).score(filmId);
+    }
+
+    long hotScore(long filmId) {
+        advance();
+        return hot.score(filmId);
+    }
+
+    /**
+     * Лайки, которые сейчас входят хотя бы в одно окно.
+     */
+    public int recentLikes() {
+        return recent.size();
+    }
+
+    /**
+     * Перейти к текущему часу: вычесть из окон вышедшие из них корзины, выбросить корзины старше самого
+     * длинного окна и применить затухание к горячему рейтингу. Вызывается при каждом обращении и по расписанию;
+     * пока час не сменился, ничего не делает.
+     */
+    public void advance() {
+        long now = hourOf(clockMillis.getAsLong());
+        if (now <= currentHour) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long previous = currentHour;
+            if (now <= previous) {
+                return;
+            }
+            for (PopularityWindow window : PopularityWindow.values()) {
+                // Из окна выходят часы (previous - hours, now - hours]; корзин новее previous ещё нет
+                Map<Long, Long> leaving = new HashMap<>();
+                long last = Math.min(now - window.hours(), previous);
+                for (long hour = previous - window.hours() + 1; hour <= last; hour++) {
+                    Set<Like> bucket = buckets.get(hour);
+                    if (bucket != null) {
+                        bucket.forEach(like -> leaving.merge(like.filmId(), 1L, Long::sum));
+                    }
+                }
+                PopularityRanking ranking = windows.get(window);
+                leaving.forEach((filmId, likes) -> ranking.adjust(filmId, -likes));
+                removeEmpty(ranking);
+            }
+            buckets.entrySet().removeIf(entry -> {
+                if (entry.getKey() > now - PopularityWindow.maxHours()) {
+                    return false;
+                }
+                entry.getValue().forEach(like -> recent.remove(like, entry.getKey()));
+                return true;
+            });
+            double decay = Math.pow(hourlyDecay, now - previous);
+            for (Long filmId : hot.filmIds()) {
+                hot.put(filmId, Math.round(hot.score(filmId) * decay));
+            }
+            removeEmpty(hot);
+            currentHour = now;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void count(Like like, long hour) {
+        buckets.computeIfAbsent(hour, h -> ConcurrentHashMap.newKeySet()).add(like);
+        for (PopularityWindow window : PopularityWindow.values()) {
+            if (hour > currentHour - window.hours()) {
+                windows.get(window).add(like.filmId(), 1);
+            }
+        }
+        hot.add(like.filmId(), hotWeights[(int) (currentHour - hour)]);
+    }
+
+    private void forget(Like like, long hour) {
+        Set<Like> bucket = buckets.get(hour);
+        if (bucket != null) {
+            bucket.remove(like);
+        }
+        for (PopularityWindow window : PopularityWindow.values()) {
+            if (hour > currentHour - window.hours()) {
+                windows.get(window).adjust(like.filmId(), -1);
+            }
+        }
+        // Счёт округлялся при каждом затухании, поэтому вычитаемый вклад может оказаться больше остатка
+        long score = hot.score(like.filmId());
+        hot.adjust(like.filmId(), -Math.min(score, hotWeights[(int) (currentHour - hour)]));
+    }
+
+    /**
+     * Убрать фильмы без очков: отменённые лайки оставляют в рейтинге нулевые счётчики.
+     * Только под блокировкой записи, иначе можно удалить фильм одновременно с новым лайком.
+     */
+    private static void removeEmpty(PopularityRanking ranking) {
+        for (Long filmId : ranking.filmIds()) {
+            if (ranking.score(filmId) <= 0) {
+                ranking.remove(filmId);
+            }
+        }
+    }
+
+    private static long hourOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, HOUR_MILLIS);
+    }
+
+    private record Like(long filmId, long userId) {
+    }
+}
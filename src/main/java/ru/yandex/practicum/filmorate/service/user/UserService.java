@@ -2,28 +2,60 @@ package ru.yandex.practicum.filmorate.service.user;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.datasource.ReadRouting;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.Versioned;
+import ru.yandex.practicum.filmorate.storage.NearCache;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_SUGGESTIONS = 100;
+
+    public static final int DEFAULT_SUGGESTION_FAN_OUT = 200;
+
     private final UserStorage userStorage;
+    private final NearCache<Versioned<User>> userCache;
+    private final int suggestionFanOut;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(@Qualifier("userDbStorage") UserStorage userStorage,
+                       @Qualifier("userNearCache") NearCache<Versioned<User>> userCache,
+                       @Value("${filmorate.friends.suggestion-fan-out:" + DEFAULT_SUGGESTION_FAN_OUT + "}")
+                       int suggestionFanOut) {
         this.userStorage = userStorage;
+        this.userCache = userCache;
+        this.suggestionFanOut = suggestionFanOut;
     }
 
     public Collection<User> findAll() {
         return userStorage.findAll();
     }
 
+    public List<User> findPage(Long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return userStorage.findPage(after == null ? 0 : after, limit);
+    }
+
+    public void streamAll(Consumer<User> action) {
+        userStorage.streamAll(action);
+    }
+
     public User create(User user) {
         validateUser(user);
         return userStorage.create(user);
@@ -31,40 +63,94 @@ public class UserService {
 
     public User update(User user) {
         validateUser(user);
-        validateUserExists(user.getId());
-        return userStorage.update(user);
+        User updated = userStorage.update(user);
+        userCache.invalidate(updated.getId());
+        return updated;
     }
 
+    /**
+     * Пользователь из ближнего кэша; возвращаемый объект общий и не должен изменяться.
+     * Друзья в пользователя не входят, поэтому изменения дружбы запись не сбрасывают.
+     */
     public User getUserById(Long id) {
-        return userStorage.findById(id);
+        if (!userCache.isEnabled()) {
+            return userStorage.findById(id);
+        }
+        Versioned<User> user = cachedUser(id);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с id = " + id + " не найден");
+        }
+        return user.value();
+    }
+
+    public Optional<EntityVersion> findVersion(Long id) {
+        if (!userCache.isEnabled()) {
+            return userStorage.findVersion(id);
+        }
+        return Optional.ofNullable(cachedUser(id)).map(Versioned::version);
+    }
+
+    /**
+     * Пользователь с версией из ближнего кэша, при промахе версия читается до пользователя; null, если его нет.
+     * Промах читается с основной базы, чтобы кэш не запомнил данные отстающей реплики.
+     */
+    private Versioned<User> cachedUser(Long id) {
+        return userCache.get(id, key -> ReadRouting.onPrimary(() -> userStorage.findVersion(key)
+                .map(version -> new Versioned<>(userStorage.findById(key), version))
+                .orElse(null)));
     }
 
     public boolean addFriend(Long userId, Long friendId) {
-        validateUserExists(userId);
-        validateUserExists(friendId);
-        return userStorage.addFriend(userId, friendId);
+        try {
+            return userStorage.addFriend(userId, friendId);
+        } catch (DataIntegrityViolationException e) {
+            // Существование проверяем только при ошибке вставки, чтобы ответить 404 с понятным сообщением
+            validateUserExists(userId);
+            validateUserExists(friendId);
+            throw e;
+        }
     }
 
     public boolean removeFriend(Long userId, Long friendId) {
-        validateUserExists(userId);
-        validateUserExists(friendId);
-        return userStorage.removeFriend(userId, friendId);
+        boolean removed = userStorage.removeFriend(userId, friendId);
+        if (!removed) {
+            validateUserExists(userId);
+            validateUserExists(friendId);
+        }
+        return removed;
     }
 
     public Collection<User> getFriends(Long id) {
-        validateUserExists(id);
-        return userStorage.getFriends(id);
+        Collection<User> friends = userStorage.getFriends(id);
+        if (friends.isEmpty()) {
+            validateUserExists(id);
+        }
+        return friends;
     }
 
     public Collection<User> getCommonFriends(Long id, Long otherId) {
-        validateUserExists(id);
-        validateUserExists(otherId);
-        return userStorage.getCommonFriends(id, otherId);
+        Collection<User> common = userStorage.getCommonFriends(id, otherId);
+        if (common.isEmpty()) {
+            validateUserExists(id);
+            validateUserExists(otherId);
+        }
+        return common;
+    }
+
+    public List<User> getSuggestedFriends(Long id, int limit) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new ValidationException("Число рекомендаций должно быть от 1 до " + MAX_SUGGESTIONS);
+        }
+        List<User> suggested = userStorage.getSuggestedFriends(id, limit, suggestionFanOut);
+        if (suggested.isEmpty()) {
+            validateUserExists(id);
+        }
+        return suggested;
     }
 
     // Новый публичный метод проверки существования пользователя
     public void validateUserExists(Long id) {
-        if (userStorage.findById(id) == null) {
+        if (id == null || !userStorage.existsById(id)) {
             throw new NotFoundException("Пользователь с id = " + id + " не найден");
         }
     }
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Изменения индексов в памяти, которые должны следовать за зафиксированными данными: внутри транзакции
+ * действие откладывается до её фиксации и не выполняется при откате, без транзакции выполняется сразу.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        run(action, () -> {
+        });
+    }
+
+    /**
+     * То же, что {@link #run(Runnable)}, но onCompletion выполняется по завершении транзакции при любом исходе,
+     * после action, — например, чтобы отпустить блокировку, взятую до изменения строки.
+     */
+    public static void run(Runnable action, Runnable onCompletion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                action.run();
+            } finally {
+                onCompletion.run();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                onCompletion.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Суммы double по long-ключам на открытой адресации, как {@link LongIntCounter}: два параллельных массива
+ * вместо HashMap&lt;Long, Double&gt;, без упаковки и узлов на каждый ключ. Ключ 0 зарезервирован
+ * как признак пустой ячейки.
+ */
+public final class LongDoubleAccumulator {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private double[] sums;
+    private int size;
+
+    public LongDoubleAccumulator(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        sums = new double[capacity];
+    }
+
+    public void add(long key, double value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Ключ 0 зарезервирован");
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+            if (size > keys.length * LOAD_FACTOR) {
+                grow();
+                slot = slot(keys, key);
+            }
+        }
+        sums[slot] += value;
+    }
+
+    public double get(long key) {
+        int slot = slot(keys, key);
+        return keys[slot] == key ? sums[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * До limit ключей с наибольшими суммами, по убыванию суммы и возрастанию ключа.
+     * Отбор идёт через min-кучу номеров ячеек размера limit.
+     */
+    public long[] top(int limit) {
+        int[] heap = new int[Math.min(limit, size)];
+        if (heap.length == 0) {
+            return new long[0];
+        }
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == 0) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize++] = slot;
+                siftUp(heap, heapSize - 1);
+            } else if (worse(heap[0], slot)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+        // Извлечение минимума раскладывает кучу с конца: худший последним
+        long[] result = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = keys[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return result;
+    }
+
+    /**
+     * Ячейка a хуже ячейки b: меньше сумма, при равенстве больше ключ.
+     */
+    private boolean worse(int a, int b) {
+        return sums[a] < sums[b] || (sums[a] == sums[b] && keys[a] > keys[b]);
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!worse(heap[index], heap[parent])) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left + 1 < size && worse(heap[left + 1], heap[left]) ? left + 1 : left;
+            if (!worse(heap[worst], heap[index])) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private static int slot(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (table[slot] != 0 && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldSums = sums;
+        keys = new long[oldKeys.length * 2];
+        sums = new double[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sums[slot] = oldSums[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Неизменяемое множество идентификаторов в виде отсортированного массива long.
+ * <p>
+ * Занимает 8 байт на элемент вместо узла HashSet с упакованным Long, поиск — бинарный,
+ * пересечение — линейное слияние. Множество не меняется, поэтому его можно читать из любых потоков
+ * без блокировок; изменяемые списки хранятся в {@link MutableLongIdSet}, который отдаёт их снимки.
+ */
+public final class LongIdSet {
+    public static final LongIdSet EMPTY = new LongIdSet(new long[0]);
+
+    private final long[] ids;
+
+    private LongIdSet(long[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Построить множество из произвольного массива (повторы отбрасываются).
+     */
+    public static LongIdSet of(long... values) {
+        if (values.length == 0) {
+            return EMPTY;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return new LongIdSet(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+    }
+
+    /**
+     * Множество поверх уже отсортированного массива без повторов; массив не копируется.
+     */
+    static LongIdSet ofSorted(long[] sorted) {
+        return sorted.length == 0 ? EMPTY : new LongIdSet(sorted);
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * Пересечение двух множеств слиянием отсортированных массивов за O(n + m).
+     */
+    public LongIdSet intersect(LongIdSet other) {
+        long[] a = ids;
+        long[] b = other.ids;
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        return new LongIdSet(size == result.length ? result : Arrays.copyOf(result, size));
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    public long get(int index) {
+        return ids[index];
+    }
+
+    /**
+     * index-й из count равномерно разнесённых элементов: выборка из длинного списка без перекоса к малым id.
+     */
+    public long sample(int index, int count) {
+        return ids[(int) ((long) index * ids.length / count)];
+    }
+
+    /**
+     * Входит ли id в выборку {@link #sample}(0..count-1) без построения самой выборки: позиция id в массиве
+     * сравнивается с ближайшей выбранной позицией.
+     */
+    public boolean sampleContains(long id, int count) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return false;
+        }
+        if (count >= ids.length) {
+            return true;
+        }
+        long step = ((long) index * count + ids.length - 1) / ids.length;
+        return step < count && step * ids.length / count == index;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (long id : ids) {
+            action.accept(id);
+        }
+    }
+
+    public long[] toArray() {
+        return ids.clone();
+    }
+
+    /**
+     * Внутренний массив без копирования: только для {@link MutableLongIdSet}, который копирует его перед изменением.
+     */
+    long[] array() {
+        return ids;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof LongIdSet other && Arrays.equals(ids, other.ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ids);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(ids);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Собирает строки таблицы связей, упорядоченные по ключевой колонке, в отсортированные массивы:
+ * ключ -> {@link LongIdSet} значений. Подходит для friendships (user_id -> friend_id) и likes (film_id -> user_id).
+ */
+public class LongIdSetCollector implements RowCallbackHandler {
+    private final String keyColumn;
+    private final String valueColumn;
+    private final Map<Long, LongIdSet> result = new HashMap<>();
+    private long currentKey = -1;
+    private long[] buffer = new long[16];
+    private int size;
+
+    public LongIdSetCollector(String keyColumn, String valueColumn) {
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        long key = rs.getLong(keyColumn);
+        if (key != currentKey) {
+            flush();
+            currentKey = key;
+        }
+        if (size == buffer.length) {
+            buffer = Arrays.copyOf(buffer, size * 2);
+        }
+        buffer[size++] = rs.getLong(valueColumn);
+    }
+
+    public Map<Long, LongIdSet> finish() {
+        flush();
+        return result;
+    }
+
+    private void flush() {
+        if (size > 0) {
+            result.put(currentKey, LongIdSet.of(Arrays.copyOf(buffer, size)));
+            size = 0;
+        }
+    }
+}
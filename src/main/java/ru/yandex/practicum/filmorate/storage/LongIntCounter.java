@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+/**
+ * Счётчики по long-ключам на открытой адресации: два параллельных массива вместо
+ * HashMap&lt;Long, Integer&gt;, без упаковки и узлов на каждый ключ. Ключ 0 зарезервирован
+ * как признак пустой ячейки, что подходит для id из БД (они начинаются с 1).
+ */
+public final class LongIntCounter {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    public LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * Увеличить счётчик ключа на единицу и вернуть новое значение.
+     */
+    public int increment(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Ключ 0 зарезервирован");
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+            if (size > keys.length * LOAD_FACTOR) {
+                grow();
+                slot = slot(keys, key);
+            }
+        }
+        return ++counts[slot];
+    }
+
+    public int get(long key) {
+        int slot = slot(keys, key);
+        return keys[slot] == key ? counts[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * До limit ключей с наибольшими счётчиками, по убыванию счётчика и возрастанию ключа.
+     * Отбор идёт через min-кучу размера limit по упакованным значениям (счётчик, ключ).
+     * Упаковка требует ключей меньше 2^32, как у INT-идентификаторов в схеме.
+     */
+    public long[] top(int limit) {
+        long[] heap = new long[Math.min(limit, size)];
+        if (heap.length == 0) {
+            return new long[0];
+        }
+        int heapSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0) {
+                continue;
+            }
+            long packed = pack(counts[i], keys[i]);
+            if (heapSize < heap.length) {
+                heap[heapSize++] = packed;
+                siftUp(heap, heapSize - 1);
+            } else if (packed > heap[0]) {
+                heap[0] = packed;
+                siftDown(heap, heapSize);
+            }
+        }
+        Arrays.sort(heap);
+        long[] result = new long[heap.length];
+        for (int i = 0; i < heap.length; i++) {
+            result[i] = unpackKey(heap[heap.length - 1 - i]);
+        }
+        return result;
+    }
+
+    /**
+     * Счётчик на позиции rank (с нуля) в порядке убывания; 0, если ключей меньше.
+     */
+    public int countAtRank(int rank) {
+        if (rank >= size) {
+            return 0;
+        }
+        int[] heap = new int[rank + 1];
+        int heapSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0) {
+                continue;
+            }
+            int count = counts[i];
+            if (heapSize < heap.length) {
+                heap[heapSize++] = count;
+                if (heapSize == heap.length) {
+                    Arrays.sort(heap);
+                }
+            } else if (count > heap[0]) {
+                // heap отсортирован по возрастанию: вставляем на место, вытесняя минимум
+                int pos = 0;
+                while (pos + 1 < heap.length && heap[pos + 1] < count) {
+                    heap[pos] = heap[pos + 1];
+                    pos++;
+                }
+                heap[pos] = count;
+            }
+        }
+        return heap[0];
+    }
+
+    private static long pack(int count, long key) {
+        // Больший счётчик и меньший ключ дают большее значение
+        return ((long) count << 32) | (0xFFFFFFFFL - key);
+    }
+
+    private static long unpackKey(long packed) {
+        return 0xFFFFFFFFL - (packed & 0xFFFFFFFFL);
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= heap[index]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && heap[left + 1] < heap[left] ? left + 1 : left;
+            if (heap[index] <= heap[smallest]) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(long[] heap, int i, int j) {
+        long tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private static int slot(long[] table, long key) {
+        int mask = table.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (table[slot] != 0 && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int count);
+    }
+}
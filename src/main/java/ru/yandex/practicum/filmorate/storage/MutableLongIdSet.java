@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+/**
+ * Изменяемое множество идентификаторов: отсортированный массив long с запасом ёмкости.
+ * <p>
+ * Добавление и удаление сдвигают хвост внутри массива, не выделяя память: массив растёт в полтора раза
+ * при заполнении и сжимается вдвое, когда заполнен меньше чем на четверть. Все методы синхронизированы
+ * на самом множестве. Читателю, которому нужен устойчивый вид для обхода без блокировки, {@link #snapshot()}
+ * отдаёт неизменяемый {@link LongIdSet}: снимок копируется только при первом запросе после изменения
+ * и переиспользуется до следующего изменения.
+ */
+public final class MutableLongIdSet {
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] ids;
+    private int size;
+    // Массив ids принадлежит снимку и копируется при первом изменении
+    private boolean shared;
+    // null, если множество менялось после последнего снимка
+    private LongIdSet snapshot;
+
+    public MutableLongIdSet() {
+        this.ids = new long[MIN_CAPACITY];
+        this.snapshot = LongIdSet.EMPTY;
+    }
+
+    /**
+     * Множество с содержимым initial; массив initial используется без копирования, пока множество не изменится.
+     */
+    public MutableLongIdSet(LongIdSet initial) {
+        this.ids = initial.array();
+        this.size = ids.length;
+        this.shared = true;
+        this.snapshot = initial;
+    }
+
+    /**
+     * @return false, если id уже был в множестве
+     */
+    public synchronized boolean add(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        if (shared || size == ids.length) {
+            long[] grown = new long[Math.max(MIN_CAPACITY, size + (size >> 1) + 1)];
+            System.arraycopy(ids, 0, grown, 0, insertAt);
+            System.arraycopy(ids, insertAt, grown, insertAt + 1, size - insertAt);
+            ids = grown;
+            shared = false;
+        } else {
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        }
+        ids[insertAt] = id;
+        size++;
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * @return false, если id не было в множестве
+     */
+    public synchronized boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        if (shared || (ids.length > MIN_CAPACITY && size - 1 < ids.length / 4)) {
+            long[] copy = new long[Math.max(MIN_CAPACITY, shared ? size : ids.length / 2)];
+            System.arraycopy(ids, 0, copy, 0, index);
+            System.arraycopy(ids, index + 1, copy, index, size - index - 1);
+            ids = copy;
+            shared = false;
+        } else {
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        }
+        size--;
+        snapshot = null;
+        return true;
+    }
+
+    public synchronized boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * До count равномерно разнесённых элементов, как {@link LongIdSet#sample}, одной копией под блокировкой.
+     */
+    public synchronized long[] sample(int count) {
+        int n = Math.min(size, count);
+        long[] result = new long[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = ids[(int) ((long) i * size / n)];
+        }
+        return result;
+    }
+
+    /**
+     * Неизменяемая копия текущего содержимого.
+     */
+    public synchronized LongIdSet snapshot() {
+        if (snapshot == null) {
+            snapshot = size == 0 ? LongIdSet.EMPTY : LongIdSet.ofSorted(Arrays.copyOf(ids, size));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,263 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ближний кэш сущностей по id перед хранилищем. Размер ограничен: при переполнении сегмента вытесняется
+ * дольше всех не читавшаяся запись. Время жизни записи ограничивает устаревание, когда строку меняют
+ * в обход приложения или другой его экземпляр; изменения через этот экземпляр сбрасывают запись сразу.
+ * Значения общие для всех читателей и не должны изменяться.
+ */
+public class NearCache<V> {
+    private static final int MAX_SEGMENTS = 16;
+    // Маленькому кэшу сегменты не нужны: вытеснение в нём должно быть ближе к точному LRU
+    private static final int MIN_SEGMENT_ENTRIES = 64;
+    // Узел LinkedHashMap, ключ Long и запись со счётчиками — сверх оценки самого значения
+    static final long ENTRY_OVERHEAD_BYTES = 112;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final ToLongFunction<V> weigher;
+    private final LongSupplier ticker;
+    private final List<Segment> segments;
+    // Счётчик сбросов: значение, загруженное до сброса, в кэш не кладётся, даже если сброс пришёл во время загрузки
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * @param ttl     время жизни записи; ноль — без ограничения
+     * @param weigher примерная оценка памяти, занятой значением, в байтах
+     */
+    public NearCache(boolean enabled, int maxEntries, Duration ttl, ToLongFunction<V> weigher) {
+        this(enabled, maxEntries, ttl, weigher, System::nanoTime);
+    }
+
+    NearCache(boolean enabled, int maxEntries, Duration ttl, ToLongFunction<V> weigher, LongSupplier ticker) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным: " + maxEntries);
+        }
+        this.enabled = enabled;
+        this.ttlNanos = ttl.isZero() ? Long.MAX_VALUE : ttl.toNanos();
+        this.weigher = weigher;
+        this.ticker = ticker;
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maxEntries / MIN_SEGMENT_ENTRIES)));
+        List<Segment> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            created.add(new Segment(maxEntries / count + (i < maxEntries % count ? 1 : 0)));
+        }
+        this.segments = List.copyOf(created);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Значение из кэша; при промахе или истёкшей записи загружается через loader и сохраняется.
+     * null от loader (сущности нет) возвращается как есть и не кэшируется.
+     */
+    public V get(Long id, Function<Long, V> loader) {
+        return get(id, loader, value -> true);
+    }
+
+    /**
+     * То же, что {@link #get(Long, Function)}, но запись, для которой fresh вернул false, считается истёкшей:
+     * так вызывающий, знающий текущую версию сущности, отбрасывает значение, сохранённое для прежней.
+     */
+    public V get(Long id, Function<Long, V> loader, Predicate<V> fresh) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        V cached = lookup(id, ticker.getAsLong(), fresh);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = invalidations.get();
+        V value = loader.apply(id);
+        if (value != null) {
+            put(segmentFor(id), id, value, stamp);
+        }
+        return value;
+    }
+
+    /**
+     * Значения в порядке ids: найденные в кэше и загруженные одним вызовом loader для остальных.
+     * На месте сущности, которой нет и в хранилище, — null.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> getAll(List<Long> ids, Function<List<Long>, Map<Long, V>> loader) {
+        Object[] values = new Object[ids.size()];
+        List<Long> missing = null;
+        long now = ticker.getAsLong();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = enabled ? lookup(ids.get(i), now, value -> true) : null;
+            if (values[i] == null) {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(ids.get(i));
+            }
+        }
+        if (missing != null) {
+            long stamp = invalidations.get();
+            Map<Long, V> loaded = loader.apply(missing);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    V value = loaded.get(ids.get(i));
+                    values[i] = value;
+                    if (enabled && value != null) {
+                        put(segmentFor(ids.get(i)), ids.get(i), value, stamp);
+                    }
+                }
+            }
+        }
+        return Arrays.asList((V[]) values);
+    }
+
+    public void invalidate(Long id) {
+        if (!enabled) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            Entry<V> removed = segment.remove(id);
+            if (removed != null) {
+                weight.addAndGet(-removed.weight());
+            }
+        }
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry<V> entry : segment.values()) {
+                    weight.addAndGet(-entry.weight());
+                }
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Доля попаданий среди всех обращений; 0, пока обращений не было.
+     */
+    public double getHitRatio() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Записи, вытесненные из-за ограничения размера.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Записи, удалённые при чтении по истечении времени жизни или как устаревшие для вызывающего.
+     */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Примерный объём памяти, занятой записями, в байтах.
+     */
+    public long getMemoryEstimate() {
+        return weight.get();
+    }
+
+    /**
+     * Живое значение из кэша с учётом попадания; истёкшая запись удаляется, и промах тоже учитывается.
+     */
+    private V lookup(Long id, long now, Predicate<V> fresh) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(id);
+            if (entry != null && now - entry.loadedAt() < ttlNanos && fresh.test(entry.value())) {
+                hits.incrementAndGet();
+                return entry.value();
+            }
+            if (entry != null) {
+                segment.remove(id);
+                weight.addAndGet(-entry.weight());
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void put(Segment segment, Long id, V value, long stamp) {
+        Entry<V> entry = new Entry<>(value, ticker.getAsLong(), ENTRY_OVERHEAD_BYTES + weigher.applyAsLong(value));
+        synchronized (segment) {
+            // Сброс увеличивает счётчик до удаления записи под той же блокировкой, поэтому
+            // проверка здесь не пропустит ни сброс, прошедший во время загрузки, ни идущий следом
+            if (invalidations.get() != stamp) {
+                return;
+            }
+            Entry<V> previous = segment.put(id, entry);
+            weight.addAndGet(entry.weight() - (previous == null ? 0 : previous.weight()));
+        }
+    }
+
+    private Segment segmentFor(Long id) {
+        return segments.get((Long.hashCode(id) ^ (Long.hashCode(id) >>> 16)) & (segments.size() - 1));
+    }
+
+    private record Entry<V>(V value, long loadedAt, long weight) {
+    }
+
+    /**
+     * LinkedHashMap в порядке обращений: первым вытесняется элемент, который дольше всех не читали.
+     */
+    private final class Segment extends LinkedHashMap<Long, Entry<V>> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry<V>> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            weight.addAndGet(-eldest.getValue().weight());
+            evictions.incrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.Versioned;
+
+import java.time.Duration;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ближние кэши фильмов и пользователей по id. Размер, время жизни и включение задаются
+ * свойствами filmorate.near-cache.films.* и filmorate.near-cache.users.*, в том числе в профилях.
+ */
+@Configuration
+public class NearCacheConfig {
+    // Оценки занимаемой памяти для 64-битной JVM со сжатыми указателями
+    private static final long OBJECT_BYTES = 16;
+    private static final long STRING_BYTES = 40;
+    private static final long DATE_BYTES = 24;
+    private static final long SET_ENTRY_BYTES = 40;
+
+    @Bean
+    public NearCache<Versioned<Film>> filmNearCache(Environment environment) {
+        return create(environment, "films", NearCacheConfig::estimateFilm);
+    }
+
+    @Bean
+    public NearCache<Versioned<User>> userNearCache(Environment environment) {
+        return create(environment, "users", NearCacheConfig::estimateUser);
+    }
+
+    private static <T> NearCache<Versioned<T>> create(Environment environment, String name,
+                                                      ToLongFunction<T> estimate) {
+        String prefix = "filmorate.near-cache." + name + ".";
+        boolean enabled = environment.getProperty(prefix + "enabled", Boolean.class, false);
+        int maxEntries = environment.getProperty(prefix + "max-entries", Integer.class, 10_000);
+        Duration ttl = environment.getProperty(prefix + "ttl", Duration.class, Duration.ofMinutes(5));
+        return new NearCache<>(enabled, maxEntries, ttl,
+                versioned -> OBJECT_BYTES + estimate.applyAsLong(versioned.value())
+                        + estimateVersion(versioned.version()));
+    }
+
+    private static long estimateFilm(Film film) {
+        long bytes = OBJECT_BYTES + 40 + estimateString(film.getName()) + estimateString(film.getDescription())
+                + DATE_BYTES;
+        if (film.getMpa() != null) {
+            bytes += OBJECT_BYTES + 8 + estimateString(film.getMpa().getName());
+        }
+        if (film.getGenres() != null) {
+            bytes += 64 + 8L * film.getGenres().size();
+            for (Genre genre : film.getGenres()) {
+                bytes += SET_ENTRY_BYTES + OBJECT_BYTES + 8 + estimateString(genre.getName());
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateUser(User user) {
+        return OBJECT_BYTES + 24 + estimateString(user.getEmail()) + estimateString(user.getLogin())
+                + estimateString(user.getName()) + DATE_BYTES;
+    }
+
+    private static long estimateVersion(EntityVersion version) {
+        return OBJECT_BYTES + 8 + estimateString(version.eTag()) + DATE_BYTES;
+    }
+
+    private static long estimateString(String value) {
+        // Кириллица хранится по два байта на символ, поэтому считаем с запасом
+        return value == null ? 0 : STRING_BYTES + 2L * value.length();
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Справочник, целиком загруженный в память: жанры и рейтинги MPA меняются крайне редко,
+ * поэтому чтение идёт из неизменяемого снимка, а запись в БД приводит к полной перезагрузке снимка.
+ */
+public class ReferenceCache<T> {
+    private final Function<T, Long> idExtractor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Map<Long, T> entries = Collections.emptyMap();
+    private volatile EntityVersion version = new EntityVersion("0", Instant.EPOCH);
+
+    public ReferenceCache(Function<T, Long> idExtractor) {
+        this.idExtractor = idExtractor;
+    }
+
+    /**
+     * Заменить содержимое справочника новым снимком (порядок значений сохраняется).
+     * ETag — хэш содержимого снимка, поэтому перезагрузка тех же данных его не меняет.
+     */
+    public void reload(List<T> values) {
+        Map<Long, T> snapshot = new LinkedHashMap<>();
+        for (T value : values) {
+            snapshot.put(idExtractor.apply(value), value);
+        }
+        entries = Collections.unmodifiableMap(snapshot);
+
+        String eTag = Integer.toHexString(values.hashCode()) + "-" + values.size();
+        if (!eTag.equals(version.eTag())) {
+            version = new EntityVersion(eTag, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Версия текущего снимка для условных GET-запросов к справочнику.
+     */
+    public EntityVersion getVersion() {
+        return version;
+    }
+
+    public List<T> findAll() {
+        hits.incrementAndGet();
+        return new ArrayList<>(entries.values());
+    }
+
+    public Optional<T> findById(Long id) {
+        T value = entries.get(id);
+        (value == null ? misses : hits).incrementAndGet();
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * Вернуть найденные значения; отсутствующие идентификаторы просто пропускаются.
+     */
+    public List<T> findByIds(Collection<Long> ids) {
+        Map<Long, T> snapshot = entries;
+        List<T> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T value = snapshot.get(id);
+            if (value == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
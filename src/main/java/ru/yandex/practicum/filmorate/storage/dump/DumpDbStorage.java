@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.storage.dump;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.sql.*;
+import java.sql.Date;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Построчная выгрузка и загрузка таблиц целиком, в обход сущностей: выгрузка читает курсор
+ * с ограниченным fetch size, загрузка пишет пакетами по IMPORT_BATCH_SIZE строк во временную таблицу
+ * и переносит их в основную одним запросом.
+ */
+@Slf4j
+@Repository("dumpDbStorage")
+public class DumpDbStorage {
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DumpDbStorage(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Передать строки таблицы по одной в порядке первичного ключа; значения идут в порядке columns().
+     */
+    public void export(DumpTable table, Consumer<Object[]> action) {
+        String sql = "SELECT " + columnList(table) + " FROM " + table.table() + " ORDER BY " + table.orderBy();
+        List<DumpTable.Column> columns = table.columns();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = read(rs, i + 1, columns.get(i).type());
+            }
+            action.accept(row);
+        });
+    }
+
+    /**
+     * Загрузить строки в таблицу. Строки сначала пишутся во временную таблицу сеанса, а в основную переносятся
+     * одним INSERT … SELECT (справочники — MERGE … SELECT по id) в одной транзакции: внешние ключи проверяет сама
+     * вставка, и при любой ошибке основная таблица остаётся нетронутой. Обычная таблица должна быть пустой;
+     * это проверяется до загрузки и ещё раз в транзакции переноса.
+     *
+     * @param rows значения в порядке columns(); null на месте столбца заменяется его значением по умолчанию
+     * @return число загруженных строк
+     */
+    public long importRows(DumpTable table, Iterator<Object[]> rows) {
+        String staging = "dump_staging_" + table.table();
+        Long count = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            requireEmpty(connection, table);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE LOCAL TEMPORARY TABLE " + staging + " AS SELECT " + columnList(table) +
+                        " FROM " + table.table() + " WITH NO DATA");
+                try {
+                    long loaded = insertAll(connection, table, rows, "INSERT INTO " + staging +
+                            " (" + columnList(table) + ") VALUES (" + placeholders(table) + ")");
+                    publish(connection, table, staging);
+                    return loaded;
+                } finally {
+                    statement.execute("DROP TABLE IF EXISTS " + staging);
+                }
+            }
+        });
+        restartIdentity(table);
+        log.info("Imported {} rows into {}", count, table.table());
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Пакетная запись во временную таблицу с фиксацией каждые IMPORT_BATCH_SIZE строк: основную таблицу
+     * она не затрагивает, а журнал транзакции не растёт со всем файлом.
+     */
+    private static long insertAll(Connection connection, DumpTable table, Iterator<Object[]> rows, String sql)
+            throws SQLException {
+        List<DumpTable.Column> columns = table.columns();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        long total = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int pending = 0;
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                for (int i = 0; i < columns.size(); i++) {
+                    bind(ps, i + 1, columns.get(i), row[i]);
+                }
+                ps.addBatch();
+                if (++pending == IMPORT_BATCH_SIZE) {
+                    ps.executeBatch();
+                    connection.commit();
+                    total += pending;
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                ps.executeBatch();
+                connection.commit();
+                total += pending;
+            }
+            return total;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void publish(Connection connection, DumpTable table, String staging) throws SQLException {
+        String columns = columnList(table);
+        String sql = table.reference()
+                ? "MERGE INTO " + table.table() + " (" + columns + ") KEY(id) SELECT " + columns + " FROM " + staging
+                : "INSERT INTO " + table.table() + " (" + columns + ") SELECT " + columns + " FROM " + staging;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            requireEmpty(connection, table);
+            statement.executeUpdate(sql);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void requireEmpty(Connection connection, DumpTable table) throws SQLException {
+        if (table.reference()) {
+            return;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM " + table.table() + ")")) {
+            if (rs.next() && rs.getBoolean(1)) {
+                throw new ValidationException("Загрузка возможна только в пустую таблицу " + table.table());
+            }
+        }
+    }
+
+    /**
+     * Строки пришли с явными id, поэтому счётчик автоинкремента сдвигается за максимальный из них.
+     */
+    private void restartIdentity(DumpTable table) {
+        if (!table.identity()) {
+            return;
+        }
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table.table(), Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + table.table() + " ALTER COLUMN id RESTART WITH " + (max + 1));
+    }
+
+    private static void bind(PreparedStatement ps, int index, DumpTable.Column column, Object value)
+            throws SQLException {
+        if (value == null && column.defaultValue() != null) {
+            value = column.defaultValue().get();
+        }
+        if (value == null) {
+            ps.setNull(index, switch (column.type()) {
+                case LONG -> Types.BIGINT;
+                case STRING -> Types.VARCHAR;
+                case DATE -> Types.DATE;
+                case TIMESTAMP -> Types.TIMESTAMP;
+            });
+            return;
+        }
+        switch (column.type()) {
+            case LONG -> ps.setLong(index, (Long) value);
+            case STRING -> ps.setString(index, (String) value);
+            case DATE -> ps.setDate(index, (Date) value);
+            case TIMESTAMP -> ps.setTimestamp(index, (Timestamp) value);
+        }
+    }
+
+    private static Object read(ResultSet rs, int index, DumpTable.Type type) throws SQLException {
+        return switch (type) {
+            case LONG -> {
+                long value = rs.getLong(index);
+                yield rs.wasNull() ? null : value;
+            }
+            case STRING -> rs.getString(index);
+            case DATE -> rs.getDate(index);
+            case TIMESTAMP -> rs.getTimestamp(index);
+        };
+    }
+
+    private static String columnList(DumpTable table) {
+        StringJoiner joiner = new StringJoiner(", ");
+        table.columns().forEach(column -> joiner.add(column.name()));
+        return joiner.toString();
+    }
+
+    private static String placeholders(DumpTable table) {
+        return String.join(", ", Collections.nCopies(table.columns().size(), "?"));
+    }
+}
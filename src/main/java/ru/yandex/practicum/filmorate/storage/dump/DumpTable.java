@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.storage.dump;
+
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Таблицы, которые выгружаются и загружаются построчно: столбцы в порядке записи, первичный ключ для
+ * порядка выгрузки и значения по умолчанию для столбцов, которых может не быть в файле.
+ * Таблицы перечислены в порядке загрузки: сначала те, на которые ссылаются остальные.
+ */
+public enum DumpTable {
+    MPA_RATINGS("mpa_ratings", true, true, "id",
+            column("id", Type.LONG),
+            column("name", Type.STRING)),
+    GENRES("genres", true, true, "id",
+            column("id", Type.LONG),
+            column("name", Type.STRING)),
+    USERS("users", true, false, "id",
+            column("id", Type.LONG),
+            column("email", Type.STRING),
+            column("login", Type.STRING),
+            column("name", Type.STRING),
+            column("birthday", Type.DATE),
+            column("version", Type.LONG, () -> 0L),
+            column("updated_at", Type.TIMESTAMP, DumpTable::now)),
+    FILMS("films", true, false, "id",
+            column("id", Type.LONG),
+            column("name", Type.STRING),
+            column("description", Type.STRING),
+            column("release_date", Type.DATE),
+            column("duration", Type.LONG),
+            column("mpa_id", Type.LONG),
+            column("like_count", Type.LONG, () -> 0L),
+            column("version", Type.LONG, () -> 0L),
+            column("updated_at", Type.TIMESTAMP, DumpTable::now)),
+    FILM_GENRES("film_genres", false, false, "film_id, genre_id",
+            column("film_id", Type.LONG),
+            column("genre_id", Type.LONG)),
+    LIKES("likes", false, false, "film_id, user_id",
+            column("film_id", Type.LONG),
+            column("user_id", Type.LONG),
+            column("created_at", Type.TIMESTAMP)),
+    FRIENDSHIPS("friendships", false, false, "user_id, friend_id",
+            column("user_id", Type.LONG),
+            column("friend_id", Type.LONG),
+            column("status", Type.STRING),
+            column("created_at", Type.TIMESTAMP, DumpTable::now));
+
+    private final String table;
+    private final boolean identity;
+    private final boolean reference;
+    private final String orderBy;
+    private final List<Column> columns;
+
+    DumpTable(String table, boolean identity, boolean reference, String orderBy, Column... columns) {
+        this.table = table;
+        this.identity = identity;
+        this.reference = reference;
+        this.orderBy = orderBy;
+        this.columns = List.of(columns);
+    }
+
+    public static DumpTable of(String name) {
+        for (DumpTable value : values()) {
+            if (value.table.equals(name.toLowerCase(Locale.ROOT))) {
+                return value;
+            }
+        }
+        throw new NotFoundException("Таблица " + name + " не выгружается");
+    }
+
+    public String table() {
+        return table;
+    }
+
+    /**
+     * Есть ли у таблицы автоинкрементный id, счётчик которого нужно сдвинуть после загрузки явных id.
+     */
+    public boolean identity() {
+        return identity;
+    }
+
+    /**
+     * Справочник, заполненный миграциями: строки не добавляются, а сливаются по id.
+     */
+    public boolean reference() {
+        return reference;
+    }
+
+    public String orderBy() {
+        return orderBy;
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    public int indexOf(String columnName) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).name().equals(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Column column(String name, Type type) {
+        return new Column(name, type, null);
+    }
+
+    private static Column column(String name, Type type, Supplier<Object> defaultValue) {
+        return new Column(name, type, defaultValue);
+    }
+
+    private static Object now() {
+        return Timestamp.from(Instant.now());
+    }
+
+    public enum Type {
+        LONG,
+        STRING,
+        DATE,
+        TIMESTAMP
+    }
+
+    /**
+     * @param defaultValue значение для отсутствующего в строке столбца; null — столбец можно опустить только
+     *                     если он допускает NULL
+     */
+    public record Column(String name, Type type, Supplier<Object> defaultValue) {
+    }
+}
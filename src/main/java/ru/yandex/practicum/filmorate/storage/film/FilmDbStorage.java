@@ -1,35 +1,83 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRead;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.Versioned;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.LongIdSetCollector;
 
 import java.sql.*;
 import java.sql.Date;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
+@Slf4j
 @Repository("filmDbStorage")
 public class FilmDbStorage implements FilmStorage {
 
+    private static final int GENRE_BATCH_SIZE = 1000;
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final int LIKE_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
 
     public FilmDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Построить поисковый индекс одним проходом по films в порядке id.
+     */
+    @PostConstruct
+    public void reloadSearchIndex() {
+        String sql = "SELECT id, name, description FROM films ORDER BY id";
+        searchIndex.clear();
+        int[] films = new int[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            searchIndex.add(rs.getLong("id"), rs.getString("name"), rs.getString("description"));
+            films[0]++;
+        });
+        log.info("Film search index built: {} films, {} terms", films[0], searchIndex.termCount());
+    }
+
+    @Override
+    public List<Film> search(String query, int limit) {
+        return findByIds(searchIndex.search(query, limit));
+    }
+
+    @ReplicaRead
     @Override
     public Film findById(Long id) {
         String sql = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
                 "FROM films f " +
                 "JOIN mpa_ratings m ON f.mpa_id = m.id " +
                 "WHERE f.id = ?";
-        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), id);
+        List<Film> films = queryFilms(sql, id);
 
         if (films.isEmpty()) {
             throw new NotFoundException("Фильм с id = " + id + " не найден.");
@@ -37,12 +85,127 @@ public class FilmDbStorage implements FilmStorage {
         return films.get(0);
     }
 
+    @ReplicaRead
+    @Override
+    public Optional<EntityVersion> findVersion(Long id) {
+        String sql = "SELECT version, updated_at FROM films WHERE id = ?";
+        List<EntityVersion> versions = jdbcTemplate.query(sql, (rs, rowNum) ->
+                EntityVersion.of(rs.getLong("version"), rs.getTimestamp("updated_at").toInstant()), id);
+        return versions.stream().findFirst();
+    }
+
+    @ReplicaRead
+    @Override
+    public List<Film> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        Map<Long, Film> found = new HashMap<>();
+        for (int from = 0; from < idList.size(); from += GENRE_BATCH_SIZE) {
+            List<Long> batch = idList.subList(from, Math.min(from + GENRE_BATCH_SIZE, idList.size()));
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            String sql = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
+                    "FROM films f " +
+                    "JOIN mpa_ratings m ON f.mpa_id = m.id " +
+                    "WHERE f.id IN (" + placeholders + ")";
+            for (Film film : queryFilms(sql, batch.toArray())) {
+                found.put(film.getId(), film);
+            }
+        }
+
+        List<Film> films = new ArrayList<>(found.size());
+        for (Long id : idList) {
+            Film film = found.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return films;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinct = new HashSet<>(ids);
+        if (distinct.isEmpty()) {
+            return true;
+        }
+        String placeholders = String.join(",", Collections.nCopies(distinct.size(), "?"));
+        String sql = "SELECT COUNT(*) FROM films WHERE id IN (" + placeholders + ")";
+        Integer found = jdbcTemplate.queryForObject(sql, Integer.class, distinct.toArray());
+        return found != null && found == distinct.size();
+    }
+
+    @ReplicaRead
     @Override
     public Collection<Film> findAll() {
         String sql = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
                 "FROM films f " +
                 "JOIN mpa_ratings m ON f.mpa_id = m.id";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs));
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs));
+
+        // Все фильмы уже в памяти — связи с жанрами читаем целиком, без IN-списка
+        Map<Long, Film> filmsById = indexById(films);
+        String genresSql = "SELECT fg.film_id, g.id, g.name " +
+                "FROM film_genres fg " +
+                "JOIN genres g ON fg.genre_id = g.id";
+        jdbcTemplate.query(genresSql, genreCollector(filmsById));
+        return films;
+    }
+
+    @ReplicaRead
+    @Override
+    public List<Film> findPage(long after, int limit) {
+        String sql = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
+                "FROM films f " +
+                "JOIN mpa_ratings m ON f.mpa_id = m.id " +
+                "WHERE f.id > ? " +
+                "ORDER BY f.id " +
+                "LIMIT ?";
+        return queryFilms(sql, after, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> action) {
+        // Один курсор с жанрами: строки одного фильма идут подряд, в памяти держим только текущий фильм
+        String sql = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name, g.id AS genre_id, g.name AS genre_name " +
+                "FROM films f " +
+                "JOIN mpa_ratings m ON f.mpa_id = m.id " +
+                "LEFT JOIN film_genres fg ON f.id = fg.film_id " +
+                "LEFT JOIN genres g ON fg.genre_id = g.id " +
+                "ORDER BY f.id";
+        Film[] current = new Film[1];
+        Map<Long, Genre> genres = new HashMap<>();
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            long filmId = rs.getLong("id");
+            if (current[0] == null || current[0].getId() != filmId) {
+                if (current[0] != null) {
+                    action.accept(current[0]);
+                }
+                current[0] = makeFilm(rs);
+                current[0].setGenres(new HashSet<>());
+            }
+            long genreId = rs.getLong("genre_id");
+            if (!rs.wasNull()) {
+                current[0].getGenres().add(sharedGenre(genres, genreId, rs.getString("genre_name")));
+            }
+        });
+
+        if (current[0] != null) {
+            action.accept(current[0]);
+        }
     }
 
     @Override
@@ -52,7 +215,7 @@ public class FilmDbStorage implements FilmStorage {
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
             ps.setString(1, film.getName());
             ps.setString(2, film.getDescription());
             ps.setDate(3, Date.valueOf(film.getReleaseDate()));
@@ -64,65 +227,295 @@ public class FilmDbStorage implements FilmStorage {
         long generatedId = Objects.requireNonNull(keyHolder.getKey()).longValue();
         film.setId(generatedId);
 
-        updateFilmGenres(film);
+        syncFilmGenres(generatedId, Set.of(), film.getGenres());
+        String name = film.getName();
+        String description = film.getDescription();
+        Lock lock = searchIndex.lockFor(generatedId);
+        lock.lock();
+        reindexAfterCommit(lock, () -> searchIndex.add(generatedId, name, description));
 
         return film;
     }
 
     @Override
-    public Film update(Film film) {
-        String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? " +
-                "WHERE id = ?";
-        int rows = jdbcTemplate.update(sql,
-                film.getName(),
-                film.getDescription(),
-                Date.valueOf(film.getReleaseDate()),
-                film.getDuration(),
-                film.getMpa().getId(),
-                film.getId()
-        );
-
-        if (rows == 0) {
-            throw new NotFoundException("Фильм с id = " + film.getId() + " не найден");
+    @Transactional
+    public Versioned<Film> update(Film film, Long expectedVersion) {
+        // Версия меняется в одной транзакции с жанрами: новая версия не видна раньше нового тела фильма.
+        // OLD TABLE возвращает строку до изменения: старый текст для индекса и номер версии читаются
+        // тем же запросом, а LOCALTIMESTAMP в пределах одной команды совпадает с записанным updated_at
+        String sql = "SELECT name, description, version, LOCALTIMESTAMP AS updated_at FROM OLD TABLE (" +
+                "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ?, " +
+                "version = version + 1, updated_at = LOCALTIMESTAMP " +
+                "WHERE id = ?" + (expectedVersion == null ? "" : " AND version = ?") + ")";
+        List<Object> args = new ArrayList<>(Arrays.asList(film.getName(), film.getDescription(),
+                Date.valueOf(film.getReleaseDate()), film.getDuration(), film.getMpa().getId(), film.getId()));
+        if (expectedVersion != null) {
+            args.add(expectedVersion);
         }
+        // Блокировка не даёт двум обновлениям перемешать изменения индекса
+        long id = film.getId();
+        Lock lock = searchIndex.lockFor(id);
+        lock.lock();
+        String[] before;
+        EntityVersion version;
+        try {
+            EntityVersion[] updated = new EntityVersion[1];
+            List<String[]> old = jdbcTemplate.query(sql, (rs, rowNum) -> {
+                updated[0] = EntityVersion.of(rs.getLong("version") + 1,
+                        rs.getTimestamp("updated_at").toInstant());
+                return new String[]{rs.getString("name"), rs.getString("description")};
+            }, args.toArray());
+            if (old.isEmpty()) {
+                if (expectedVersion != null && existsById(id)) {
+                    throw new PreconditionFailedException("Фильм с id = " + id + " уже изменён");
+                }
+                throw new NotFoundException("Фильм с id = " + id + " не найден");
+            }
+            before = old.get(0);
+            version = updated[0];
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+        String name = film.getName();
+        String description = film.getDescription();
+        reindexAfterCommit(lock, () -> {
+            searchIndex.remove(id, before[0], before[1]);
+            searchIndex.add(id, name, description);
+        });
 
-        updateFilmGenres(film);
-
-        return findById(film.getId());
+        // Строка фильма уже заблокирована обновлением, поэтому параллельное обновление не изменит жанры
+        // между чтением и записью разницы
+        syncFilmGenres(film.getId(), findGenreIds(film.getId()), film.getGenres());
+        return new Versioned<>(film, version);
     }
 
     @Override
     public void delete(Long id) {
         String sql = "DELETE FROM films WHERE id = ?";
-        jdbcTemplate.update(sql, id);
+        Lock lock = searchIndex.lockFor(id);
+        lock.lock();
+        String[] old;
+        try {
+            old = findText(id);
+            jdbcTemplate.update(sql, id);
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+        reindexAfterCommit(lock, () -> {
+            if (old != null) {
+                searchIndex.remove(id, old[0], old[1]);
+            }
+        });
+    }
+
+    /**
+     * Изменить поисковый индекс после фиксации транзакции: откаченная запись не должна остаться в поиске,
+     * а новые слова — стать видны раньше строки. Блокировка фильма, взятая вызывающим до записи, отпускается
+     * только по завершении транзакции: следующая запись того же фильма читает старый текст, когда индекс
+     * уже соответствует зафиксированному.
+     */
+    private void reindexAfterCommit(Lock lock, Runnable change) {
+        AfterCommit.run(change, lock::unlock);
+    }
+
+    /**
+     * Название и описание фильма для переиндексации; null, если фильма нет.
+     */
+    private String[] findText(Long id) {
+        String sql = "SELECT name, description FROM films WHERE id = ?";
+        List<String[]> rows = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new String[]{rs.getString("name"), rs.getString("description")}, id);
+        return rows.isEmpty() ? null : rows.get(0);
     }
 
+    @ReplicaRead
     @Override
     public List<Film> getPopularFilms(int count) {
-        String sql = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name, COUNT(l.user_id) AS like_count " +
+        // Порядок берётся из индекса idx_films_like_count, таблица likes не агрегируется
+        String sql = "SELECT f.*, m.id AS mpa_id, m.name AS mpa_name " +
                 "FROM films f " +
                 "JOIN mpa_ratings m ON f.mpa_id = m.id " +
-                "LEFT JOIN likes l ON f.id = l.film_id " +
-                "GROUP BY f.id " +
-                "ORDER BY like_count DESC " +
+                "ORDER BY f.like_count DESC, f.id " +
                 "LIMIT ?";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), count);
+        return queryFilms(sql, count);
     }
 
     @Override
+    @Transactional
     public boolean addLike(Long filmId, Long userId) {
         String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
         jdbcTemplate.update(sql, filmId, userId);
+        adjustLikeCount(filmId, 1);
         return true;
     }
 
     @Override
+    @Transactional
     public boolean removeLike(Long filmId, Long userId) {
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+        int rows = jdbcTemplate.update(sql, filmId, userId);
+        if (rows == 0) {
+            return false;
+        }
+        adjustLikeCount(filmId, -1);
         return true;
     }
 
+    @Override
+    @Transactional
+    public List<Boolean> applyLikes(List<LikeOperation> operations) {
+        if (operations.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<LikeKey> initial = findExistingLikes(operations);
+
+        // Проигрываем операции по порядку в памяти, в БД пишем только итоговую разницу
+        Set<LikeKey> current = new HashSet<>(initial);
+        List<Boolean> changed = new ArrayList<>(operations.size());
+        for (LikeOperation operation : operations) {
+            LikeKey key = new LikeKey(operation.getFilmId(), operation.getUserId());
+            changed.add(operation.getOp() == LikeOperation.Type.ADD ? current.add(key) : current.remove(key));
+        }
+
+        List<LikeKey> inserts = new ArrayList<>();
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (LikeKey key : current) {
+            if (!initial.contains(key)) {
+                inserts.add(key);
+                deltas.merge(key.filmId(), 1, Integer::sum);
+            }
+        }
+        List<LikeKey> deletes = new ArrayList<>();
+        for (LikeKey key : initial) {
+            if (!current.contains(key)) {
+                deletes.add(key);
+                deltas.merge(key.filmId(), -1, Integer::sum);
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", inserts, LIKE_BATCH_SIZE,
+                    (ps, key) -> {
+                        ps.setLong(1, key.filmId());
+                        ps.setLong(2, key.userId());
+                    });
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?", deletes, LIKE_BATCH_SIZE,
+                    (ps, key) -> {
+                        ps.setLong(1, key.filmId());
+                        ps.setLong(2, key.userId());
+                    });
+        }
+        if (!deltas.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE films SET like_count = like_count + ? WHERE id = ?",
+                    new ArrayList<>(deltas.entrySet()), LIKE_BATCH_SIZE,
+                    (ps, delta) -> {
+                        ps.setInt(1, delta.getValue());
+                        ps.setLong(2, delta.getKey());
+                    });
+        }
+        return changed;
+    }
+
+    /**
+     * Есть ли лайк в таблице likes: чтение по первичному ключу.
+     */
+    public boolean hasLike(long filmId, long userId) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, filmId, userId));
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts() {
+        String sql = "SELECT f.id, COUNT(l.user_id) AS like_count " +
+                "FROM films f " +
+                "LEFT JOIN likes l ON f.id = l.film_id " +
+                "GROUP BY f.id";
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> counts.put(rs.getLong("id"), rs.getLong("like_count")));
+        return counts;
+    }
+
+    @Override
+    public Map<Long, LongIdSet> getLikesByFilm() {
+        String sql = "SELECT film_id, user_id FROM likes ORDER BY film_id, user_id";
+        LongIdSetCollector collector = new LongIdSetCollector("film_id", "user_id");
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, collector);
+        return collector.finish();
+    }
+
+    @Override
+    public void streamLikesSince(Instant since, Consumer<FilmLike> action) {
+        // Не с реплики: рейтинги строятся при старте и после загрузки дампа и должны видеть все лайки
+        String sql = "SELECT film_id, user_id, created_at FROM likes WHERE created_at >= ?";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setTimestamp(1, Timestamp.from(since));
+            return ps;
+        }, (RowCallbackHandler) rs -> action.accept(new FilmLike(
+                rs.getLong("film_id"), rs.getLong("user_id"), rs.getTimestamp("created_at").toInstant())));
+    }
+
+    /**
+     * Пересчитать films.like_count по таблице likes.
+     *
+     * @return количество фильмов, у которых счётчик разошёлся с фактическим числом лайков
+     */
+    @Transactional
+    public int reconcileLikeCounts() {
+        String sql = "UPDATE films f SET like_count = " +
+                "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id) " +
+                "WHERE like_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)";
+        return jdbcTemplate.update(sql);
+    }
+
+    /**
+     * Какие из затронутых пакетом лайков уже есть в БД: по одному запросу на GENRE_BATCH_SIZE фильмов.
+     */
+    private Set<LikeKey> findExistingLikes(List<LikeOperation> operations) {
+        Map<Long, Set<Long>> usersByFilm = new HashMap<>();
+        for (LikeOperation operation : operations) {
+            usersByFilm.computeIfAbsent(operation.getFilmId(), id -> new HashSet<>()).add(operation.getUserId());
+        }
+        Set<Long> userIds = new HashSet<>();
+        usersByFilm.values().forEach(userIds::addAll);
+        String userPlaceholders = String.join(",", Collections.nCopies(userIds.size(), "?"));
+
+        Set<LikeKey> existing = new HashSet<>();
+        List<Long> filmIds = new ArrayList<>(usersByFilm.keySet());
+        for (int from = 0; from < filmIds.size(); from += GENRE_BATCH_SIZE) {
+            List<Long> batch = filmIds.subList(from, Math.min(from + GENRE_BATCH_SIZE, filmIds.size()));
+            String sql = "SELECT film_id, user_id FROM likes " +
+                    "WHERE film_id IN (" + String.join(",", Collections.nCopies(batch.size(), "?")) + ") " +
+                    "AND user_id IN (" + userPlaceholders + ")";
+            List<Object> args = new ArrayList<>(batch);
+            args.addAll(userIds);
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                LikeKey key = new LikeKey(rs.getLong("film_id"), rs.getLong("user_id"));
+                if (usersByFilm.get(key.filmId()).contains(key.userId())) {
+                    existing.add(key);
+                }
+            }, args.toArray());
+        }
+        return existing;
+    }
+
+    private void adjustLikeCount(Long filmId, int delta) {
+        String sql = "UPDATE films SET like_count = like_count + ? WHERE id = ?";
+        jdbcTemplate.update(sql, delta, filmId);
+    }
+
     private Film makeFilm(ResultSet rs) throws SQLException {
         Film film = new Film();
         film.setId(rs.getLong("id"));
@@ -136,46 +529,112 @@ public class FilmDbStorage implements FilmStorage {
         mpa.setName(rs.getString("mpa_name"));
         film.setMpa(mpa);
 
-        film.setGenres(getFilmGenres(film.getId()));
-
         return film;
     }
 
-    private Set<Genre> getFilmGenres(Long filmId) {
-        String sql = "SELECT g.id, g.name " +
-                "FROM film_genres fg " +
-                "JOIN genres g ON fg.genre_id = g.id " +
-                "WHERE fg.film_id = ?";
-        return new HashSet<>(jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getLong("id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        }, filmId));
-    }
-
-    private void updateFilmGenres(Film film) {
-        // Удаляем старые связи
-        String deleteSql = "DELETE FROM film_genres WHERE film_id = ?";
-        jdbcTemplate.update(deleteSql, film.getId());
-
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            String insertSql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-            // Преобразуем набор жанров в список
-            final ArrayList<Genre> genreList = new ArrayList<>(film.getGenres());
-
-            jdbcTemplate.batchUpdate(insertSql, new BatchPreparedStatementSetter() {
-                @Override
-                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                    ps.setLong(1, film.getId());
-                    ps.setLong(2, genreList.get(i).getId());
-                }
+    /**
+     * Выполняет запрос по фильмам и догружает жанры для всей выборки разом:
+     * один запрос на фильмы и по одному запросу к film_genres на каждые GENRE_BATCH_SIZE фильмов.
+     */
+    private List<Film> queryFilms(String sql, Object... args) {
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), args);
+        loadGenres(films);
+        return films;
+    }
 
-                @Override
-                public int getBatchSize() {
-                    return genreList.size();
-                }
-            });
+    private void loadGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
         }
+        Map<Long, Film> filmsById = indexById(films);
+        List<Long> ids = new ArrayList<>(filmsById.keySet());
+
+        for (int from = 0; from < ids.size(); from += GENRE_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + GENRE_BATCH_SIZE, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            String sql = "SELECT fg.film_id, g.id, g.name " +
+                    "FROM film_genres fg " +
+                    "JOIN genres g ON fg.genre_id = g.id " +
+                    "WHERE fg.film_id IN (" + placeholders + ")";
+            jdbcTemplate.query(sql, genreCollector(filmsById), batch.toArray());
+        }
+    }
+
+    private Map<Long, Film> indexById(List<Film> films) {
+        Map<Long, Film> filmsById = new LinkedHashMap<>();
+        for (Film film : films) {
+            film.setGenres(new HashSet<>());
+            filmsById.put(film.getId(), film);
+        }
+        return filmsById;
+    }
+
+    /**
+     * Раскладывает строки film_genres по фильмам; одинаковые жанры переиспользуются, а не создаются заново.
+     */
+    private RowCallbackHandler genreCollector(Map<Long, Film> filmsById) {
+        Map<Long, Genre> genres = new HashMap<>();
+        return rs -> {
+            Film film = filmsById.get(rs.getLong("film_id"));
+            if (film == null) {
+                return;
+            }
+            film.getGenres().add(sharedGenre(genres, rs.getLong("id"), rs.getString("name")));
+        };
+    }
+
+    private Genre sharedGenre(Map<Long, Genre> genres, long id, String name) {
+        Genre genre = genres.get(id);
+        if (genre == null) {
+            genre = new Genre();
+            genre.setId(id);
+            genre.setName(name);
+            genres.put(id, genre);
+        }
+        return genre;
+    }
+
+    private Set<Long> findGenreIds(Long filmId) {
+        String sql = "SELECT genre_id FROM film_genres WHERE film_id = ?";
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Long.class, filmId));
+    }
+
+    /**
+     * Привести связи фильма с жанрами от current к genres: удаляются и вставляются только различающиеся.
+     */
+    private void syncFilmGenres(Long filmId, Set<Long> current, Collection<Genre> genres) {
+        Set<Long> target = new LinkedHashSet<>();
+        if (genres != null) {
+            genres.forEach(genre -> target.add(genre.getId()));
+        }
+        List<Long> removed = current.stream().filter(id -> !target.contains(id)).toList();
+        List<Long> added = target.stream().filter(id -> !current.contains(id)).toList();
+
+        if (!removed.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM film_genres WHERE film_id = ? AND genre_id = ?",
+                    genreLinks(filmId, removed));
+        }
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)",
+                    genreLinks(filmId, added));
+        }
+    }
+
+    private BatchPreparedStatementSetter genreLinks(Long filmId, List<Long> genreIds) {
+        return new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, filmId);
+                ps.setLong(2, genreIds.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return genreIds.size();
+            }
+        };
+    }
+
+    private record LikeKey(long filmId, long userId) {
     }
 }
@@ -0,0 +1,287 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по названиям и описаниям фильмов.
+ * <p>
+ * Слова нормализуются (нижний регистр, ё -> е) и хранятся в трёх словарях с отсортированными
+ * массивами id: точные слова названия, точные слова названия и описания, префиксы слов названия
+ * длиной от {@value #MIN_PREFIX} до {@value #MAX_PREFIX} символов для автодополнения.
+ * Все слова запроса, кроме последнего, ищутся целиком, последнее — как префикс.
+ * Сначала выдаются фильмы, у которых совпало название, затем остальные, внутри группы — по id;
+ * пересечение идёт от самого короткого списка и останавливается, набрав limit результатов.
+ */
+public class FilmSearchIndex {
+    static final int MIN_PREFIX = 2;
+    static final int MAX_PREFIX = 15;
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<String, Postings> nameTerms = new HashMap<>();
+    private final Map<String, Postings> allTerms = new HashMap<>();
+    private final Map<String, Postings> namePrefixes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock[] filmLocks = new Lock[LOCK_STRIPES];
+
+    public FilmSearchIndex() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            filmLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Блокировка для последовательности «прочитать старый текст — записать — переиндексировать» одного фильма.
+     */
+    public Lock lockFor(long filmId) {
+        return filmLocks[(int) Math.floorMod(filmId, LOCK_STRIPES)];
+    }
+
+    public void add(long id, String name, String description) {
+        List<String> nameTokens = tokenize(name);
+        List<String> descriptionTokens = tokenize(description);
+        lock.writeLock().lock();
+        try {
+            for (String token : nameTokens) {
+                postings(nameTerms, token).add(id);
+                postings(allTerms, token).add(id);
+                for (int length = MIN_PREFIX; length <= Math.min(token.length(), MAX_PREFIX); length++) {
+                    postings(namePrefixes, token.substring(0, length)).add(id);
+                }
+            }
+            for (String token : descriptionTokens) {
+                postings(allTerms, token).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id, String name, String description) {
+        List<String> nameTokens = tokenize(name);
+        List<String> descriptionTokens = tokenize(description);
+        lock.writeLock().lock();
+        try {
+            for (String token : nameTokens) {
+                removePosting(nameTerms, token, id);
+                removePosting(allTerms, token, id);
+                for (int length = MIN_PREFIX; length <= Math.min(token.length(), MAX_PREFIX); length++) {
+                    removePosting(namePrefixes, token.substring(0, length), id);
+                }
+            }
+            for (String token : descriptionTokens) {
+                removePosting(allTerms, token, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            nameTerms.clear();
+            allTerms.clear();
+            namePrefixes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * До limit id фильмов, подходящих под запрос: сначала совпадения в названии, затем в описании.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        List<String> exact = tokens.subList(0, tokens.size() - 1);
+        String last = tokens.get(tokens.size() - 1);
+        List<Long> result = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            List<IdList> nameLists = new ArrayList<>();
+            for (String token : exact) {
+                nameLists.add(new IdList(nameTerms.get(token), null));
+            }
+            nameLists.add(new IdList(prefixPostings(last), null));
+            Set<Long> fromNames = new HashSet<>();
+            intersect(nameLists, limit, id -> {
+                result.add(id);
+                fromNames.add(id);
+            });
+
+            if (result.size() < limit) {
+                List<IdList> allLists = new ArrayList<>();
+                for (String token : exact) {
+                    allLists.add(new IdList(allTerms.get(token), null));
+                }
+                allLists.add(new IdList(prefixPostings(last), allTerms.get(last)));
+                intersect(allLists, limit - result.size() + fromNames.size(), id -> {
+                    if (!fromNames.contains(id) && result.size() < limit) {
+                        result.add(id);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return allTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Слова текста в нижнем регистре: последовательности букв и цифр, ё заменяется на е.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                current.append(lower == 'ё' ? 'е' : lower);
+            } else if (!current.isEmpty()) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * Фильмы, у которых слово названия начинается с prefix. Короткие префиксы не индексируются —
+     * для них ищется точное слово; длинные слова префиксами не покрыты и тоже ищутся целиком.
+     */
+    private Postings prefixPostings(String prefix) {
+        if (prefix.length() < MIN_PREFIX || prefix.length() > MAX_PREFIX) {
+            return nameTerms.get(prefix);
+        }
+        return namePrefixes.get(prefix);
+    }
+
+    private static Postings postings(Map<String, Postings> dictionary, String term) {
+        return dictionary.computeIfAbsent(term, t -> new Postings());
+    }
+
+    private static void removePosting(Map<String, Postings> dictionary, String term, long id) {
+        Postings postings = dictionary.get(term);
+        if (postings != null && postings.remove(id) && postings.size == 0) {
+            dictionary.remove(term);
+        }
+    }
+
+    /**
+     * Пересечение списков без копирования: обходим самый короткий по возрастанию id и проверяем
+     * его элементы в остальных бинарным поиском. Останавливаемся после limit совпадений.
+     */
+    private static void intersect(List<IdList> lists, int limit, LongConsumer action) {
+        lists.sort(Comparator.comparingInt(IdList::size));
+        int[] found = new int[1];
+        lists.get(0).forEachWhile(candidate -> {
+            for (int l = 1; l < lists.size(); l++) {
+                if (!lists.get(l).contains(candidate)) {
+                    return true;
+                }
+            }
+            action.accept(candidate);
+            return ++found[0] < limit;
+        });
+    }
+
+    /**
+     * Объединение одного или двух списков id, читаемое под read-блокировкой без копирования.
+     */
+    private record IdList(Postings first, Postings second) {
+        int size() {
+            return sizeOf(first) + sizeOf(second);
+        }
+
+        boolean contains(long id) {
+            return containsIn(first, id) || containsIn(second, id);
+        }
+
+        /**
+         * Обход по возрастанию id слиянием двух списков; прекращается, когда action вернёт false.
+         */
+        void forEachWhile(LongPredicate action) {
+            int i = 0;
+            int j = 0;
+            int sizeA = sizeOf(first);
+            int sizeB = sizeOf(second);
+            while (i < sizeA || j < sizeB) {
+                long next;
+                if (j >= sizeB || (i < sizeA && first.ids[i] < second.ids[j])) {
+                    next = first.ids[i++];
+                } else if (i >= sizeA || second.ids[j] < first.ids[i]) {
+                    next = second.ids[j++];
+                } else {
+                    next = first.ids[i++];
+                    j++;
+                }
+                if (!action.test(next)) {
+                    return;
+                }
+            }
+        }
+
+        private static int sizeOf(Postings postings) {
+            return postings == null ? 0 : postings.size;
+        }
+
+        private static boolean containsIn(Postings postings, long id) {
+            return postings != null && Arrays.binarySearch(postings.ids, 0, postings.size, id) >= 0;
+        }
+    }
+
+    /**
+     * Отсортированный растущий массив id. Новые фильмы получают возрастающие id,
+     * поэтому добавление почти всегда — запись в конец. Id хранятся как long, как и в таблице films:
+     * сужение до int сломало бы индексацию фильмов с id больше Integer.MAX_VALUE.
+     */
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            int index = size > 0 && ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
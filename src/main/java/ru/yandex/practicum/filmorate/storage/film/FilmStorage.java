@@ -1,22 +1,102 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Versioned;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+
+import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    /**
+     * Страница фильмов с id строго больше after, упорядоченная по id.
+     */
+    List<Film> findPage(long after, int limit);
+
+    /**
+     * Передаёт фильмы по одному, упорядоченными по id, не собирая всю таблицу в памяти.
+     */
+    void streamAll(Consumer<Film> action);
+
     Film create(Film film);
 
-    Film update(Film film);
+    default Film update(Film film) {
+        return update(film, null).value();
+    }
+
+    /**
+     * Обновить фильм; если задана expectedVersion, то только пока его версия не изменилась,
+     * иначе PreconditionFailedException. Возвращается переданный фильм без повторного чтения
+     * вместе с версией, которую строка получила при этом обновлении.
+     */
+    Versioned<Film> update(Film film, Long expectedVersion);
 
     void delete(Long id);
 
     Film findById(Long id); // ✅ Добавьте этот метод!
 
+    /**
+     * Версия фильма для условного GET без загрузки самой сущности; пусто, если фильма нет.
+     */
+    Optional<EntityVersion> findVersion(Long id);
+
+    /**
+     * Фильмы с указанными id в порядке следования ids; отсутствующие id пропускаются.
+     */
+    List<Film> findByIds(Collection<Long> ids);
+
+    /**
+     * Проверка существования без загрузки фильма, MPA и жанров.
+     */
+    boolean existsById(Long id);
+
+    /**
+     * true, если существуют все фильмы из ids.
+     */
+    boolean existsAll(Collection<Long> ids);
+
     boolean addLike(Long filmId, Long userId);
 
     boolean removeLike(Long filmId, Long userId);
 
+    /**
+     * Применить пакет операций с лайками по порядку, с той же семантикой, что addLike/removeLike,
+     * но без ошибки на уже существующий лайк. Фильмы и пользователи должны существовать.
+     *
+     * @return для каждой операции — изменила ли она состояние лайков
+     */
+    List<Boolean> applyLikes(List<LikeOperation> operations);
+
     Collection<Film> getPopularFilms(int count);
+
+    /**
+     * Количество лайков каждого фильма, включая фильмы без лайков.
+     */
+    Map<Long, Long> getLikeCounts();
+
+    /**
+     * Все лайки, сгруппированные по фильмам: id фильма -> отсортированные id пользователей.
+     * Фильмы без лайков в результат не попадают.
+     */
+    Map<Long, LongIdSet> getLikesByFilm();
+
+    /**
+     * Передаёт по одному лайки, поставленные не раньше since. Лайки с неизвестным временем не передаются.
+     */
+    void streamLikesSince(Instant since, Consumer<FilmLike> action);
+
+    /**
+     * Поиск по словам названия и описания; последнее слово запроса ищется как префикс.
+     * Фильмы с совпадением в названии идут первыми.
+     */
+    List<Film> search(String query, int limit);
 }
@@ -2,22 +2,54 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.Versioned;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.MutableLongIdSet;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    private final Map<Long, Film> films = new ConcurrentHashMap<>();
     private final AtomicLong idGenerator = new AtomicLong(0);
-    private final Map<Long, Set<Long>> filmLikes = new HashMap<>();
+    // Версия — номер записи в общем счётчике изменений, поэтому никогда не повторяется для одного id
+    private final Map<Long, EntityVersion> versions = new ConcurrentHashMap<>();
+    private final AtomicLong revisions = new AtomicLong(0);
+    // id фильма -> отсортированные id лайкнувших пользователей; пустые списки удаляются через compute
+    private final Map<Long, MutableLongIdSet> filmLikes = new ConcurrentHashMap<>();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
 
     @Override
     public Collection<Film> findAll() {
-        return films.values();
+        return new ArrayList<>(films.values());
+    }
+
+    @Override
+    public List<Film> findPage(long after, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > after)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> action) {
+        films.values().stream()
+                .sorted(Comparator.comparing(Film::getId))
+                .forEach(action);
     }
 
     @Override
@@ -31,52 +63,184 @@ public class InMemoryFilmStorage implements FilmStorage {
             film.setMpa(defaultMpa);
         }
         films.put(film.getId(), film);
+        touch(film.getId());
+        searchIndex.add(film.getId(), film.getName(), film.getDescription());
         return film;
     }
 
     @Override
-    public Film update(Film film) {
-        if (!films.containsKey(film.getId())) {
-            throw new NotFoundException("Фильм с id = " + film.getId() + " не найден.");
+    public Versioned<Film> update(Film film, Long expectedVersion) {
+        Lock lock = searchIndex.lockFor(film.getId());
+        lock.lock();
+        try {
+            EntityVersion current = versions.get(film.getId());
+            if (expectedVersion != null && current != null
+                    && EntityVersion.parseVersion(current.eTag()).orElse(-1) != expectedVersion) {
+                throw new PreconditionFailedException("Фильм с id = " + film.getId() + " уже изменён");
+            }
+            Film old = films.replace(film.getId(), film);
+            if (old == null) {
+                throw new NotFoundException("Фильм с id = " + film.getId() + " не найден.");
+            }
+            touch(film.getId());
+            searchIndex.remove(old.getId(), old.getName(), old.getDescription());
+            searchIndex.add(film.getId(), film.getName(), film.getDescription());
+            return new Versioned<>(film, versions.get(film.getId()));
+        } finally {
+            lock.unlock();
         }
-        films.put(film.getId(), film);
-        return film;
     }
 
     @Override
     public void delete(Long id) {
-        if (!films.containsKey(id)) {
-            throw new NotFoundException("Фильм с id = " + id + " не найден.");
+        Lock lock = searchIndex.lockFor(id);
+        lock.lock();
+        try {
+            Film old = films.remove(id);
+            if (old == null) {
+                throw new NotFoundException("Фильм с id = " + id + " не найден.");
+            }
+            filmLikes.remove(id);
+            versions.remove(id);
+            searchIndex.remove(id, old.getName(), old.getDescription());
+        } finally {
+            lock.unlock();
         }
-        films.remove(id);
     }
 
     @Override
     public Film findById(Long id) {
-        if (!films.containsKey(id)) {
+        Film film = films.get(id);
+        if (film == null) {
             throw new NotFoundException("Фильм с id = " + id + " не найден.");
         }
-        return films.get(id);
+        return film;
+    }
+
+    @Override
+    public Optional<EntityVersion> findVersion(Long id) {
+        return Optional.ofNullable(versions.get(id));
+    }
+
+    private void touch(Long id) {
+        versions.put(id, EntityVersion.of(revisions.incrementAndGet(), Instant.now()));
+    }
+
+    @Override
+    public List<Film> findByIds(Collection<Long> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && films.containsKey(id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return ids.stream().allMatch(this::existsById);
     }
 
     @Override
     public boolean addLike(Long filmId, Long userId) {
-        filmLikes.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
-        return true;
+        boolean[] changed = new boolean[1];
+        filmLikes.compute(filmId, (id, likes) -> {
+            MutableLongIdSet current = likes == null ? new MutableLongIdSet() : likes;
+            changed[0] = current.add(userId);
+            return current;
+        });
+        return changed[0];
     }
 
     @Override
     public boolean removeLike(Long filmId, Long userId) {
-        filmLikes.computeIfAbsent(filmId, k -> new HashSet<>()).remove(userId);
-        return true;
+        boolean[] changed = new boolean[1];
+        filmLikes.computeIfPresent(filmId, (id, likes) -> {
+            changed[0] = likes.remove(userId);
+            return likes.isEmpty() ? null : likes;
+        });
+        return changed[0];
+    }
+
+    @Override
+    public List<Boolean> applyLikes(List<LikeOperation> operations) {
+        List<Boolean> changed = new ArrayList<>(operations.size());
+        for (LikeOperation operation : operations) {
+            changed.add(operation.getOp() == LikeOperation.Type.ADD
+                    ? addLike(operation.getFilmId(), operation.getUserId())
+                    : removeLike(operation.getFilmId(), operation.getUserId()));
+        }
+        return changed;
     }
 
+    /**
+     * Частичная сортировка: куча из count лучших фильмов, O(n log count) без сортировки всего каталога.
+     */
     @Override
     public Collection<Film> getPopularFilms(int count) {
-        return films.values().stream()
-                .sorted((f1, f2) -> filmLikes.getOrDefault(f2.getId(), new HashSet<>()).size()
-                        - filmLikes.getOrDefault(f1.getId(), new HashSet<>()).size())
-                .limit(count)
-                .collect(Collectors.toList());
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        // В вершине кучи — худший из отобранных: меньше лайков, при равенстве больший id
+        PriorityQueue<Scored> heap = new PriorityQueue<>(count + 1, Scored.WORST_FIRST);
+        for (Film film : films.values()) {
+            long likes = likeCount(film.getId());
+            if (heap.size() < count) {
+                heap.add(new Scored(likes, film));
+            } else if (Scored.isBetter(likes, film.getId(), heap.peek())) {
+                heap.poll();
+                heap.add(new Scored(likes, film));
+            }
+        }
+
+        Film[] result = new Film[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll().film();
+        }
+        return Arrays.asList(result);
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts() {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Long filmId : films.keySet()) {
+            counts.put(filmId, likeCount(filmId));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<Long, LongIdSet> getLikesByFilm() {
+        Map<Long, LongIdSet> snapshot = new HashMap<>(filmLikes.size() * 2);
+        filmLikes.forEach((filmId, likes) -> snapshot.put(filmId, likes.snapshot()));
+        return snapshot;
+    }
+
+    @Override
+    public void streamLikesSince(Instant since, Consumer<FilmLike> action) {
+        // Время лайков в памяти не хранится: для этого хранилища все лайки — с неизвестным временем
+    }
+
+    @Override
+    public List<Film> search(String query, int limit) {
+        return findByIds(searchIndex.search(query, limit));
+    }
+
+    private long likeCount(Long filmId) {
+        MutableLongIdSet likes = filmLikes.get(filmId);
+        return likes == null ? 0 : likes.size();
+    }
+
+    private record Scored(long likes, Film film) {
+        static final Comparator<Scored> WORST_FIRST = Comparator
+                .comparingLong(Scored::likes)
+                .thenComparing(scored -> scored.film().getId(), Comparator.reverseOrder());
+
+        static boolean isBetter(long likes, long filmId, Scored worst) {
+            return likes > worst.likes() || (likes == worst.likes() && filmId < worst.film().getId());
+        }
     }
 }
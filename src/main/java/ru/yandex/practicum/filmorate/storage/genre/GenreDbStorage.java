@@ -1,40 +1,48 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.ReferenceCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Repository("genreDbStorage")
 public class GenreDbStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceCache<Genre> cache = new ReferenceCache<>(Genre::getId);
 
     public GenreDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Загрузить справочник жанров из БД в память (при старте и после изменений).
+     */
+    @PostConstruct
+    public void refresh() {
+        String sql = "SELECT * FROM genres ORDER BY id";
+        cache.reload(jdbcTemplate.query(sql, (rs, rowNum) -> makeGenre(rs)));
+    }
+
     /**
      * Получить список всех жанров.
      */
     public List<Genre> findAll() {
-        String sql = "SELECT * FROM genres";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeGenre(rs));
+        return cache.findAll();
     }
 
     /**
      * Получить жанр по идентификатору.
      */
     public Optional<Genre> findById(Long id) {
-        String sql = "SELECT * FROM genres WHERE id = ?";
-        List<Genre> list = jdbcTemplate.query(sql, (rs, rowNum) -> makeGenre(rs), id);
-        return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+        return cache.findById(id);
     }
 
     /**
@@ -44,11 +52,7 @@ public class GenreDbStorage {
         if (ids == null || ids.isEmpty()) {
             return Collections.emptyList();
         }
-        String placeholders = ids.stream()
-                .map(id -> "?")
-                .collect(Collectors.joining(","));
-        String sql = "SELECT * FROM genres WHERE id IN (" + placeholders + ")";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeGenre(rs), ids.toArray());
+        return cache.findByIds(ids);
     }
 
     /**
@@ -57,9 +61,17 @@ public class GenreDbStorage {
     public Genre create(Genre genre) {
         String sql = "INSERT INTO genres (name) VALUES (?)";
         jdbcTemplate.update(sql, genre.getName());
+        refresh();
         return genre;
     }
 
+    /**
+     * Счётчики обращений к справочнику, обслуженных из памяти, и обращений к несуществующим жанрам.
+     */
+    public ReferenceCache<Genre> getCache() {
+        return cache;
+    }
+
     /**
      * Преобразование ResultSet в объект Genre.
      */
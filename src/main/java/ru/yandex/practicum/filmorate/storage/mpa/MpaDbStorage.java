@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.ReferenceCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -13,20 +15,28 @@ import java.util.Optional;
 public class MpaDbStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceCache<MpaRating> cache = new ReferenceCache<>(MpaRating::getId);
 
     public MpaDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @PostConstruct
+    public void refresh() {
+        String sql = "SELECT * FROM mpa_ratings ORDER BY id";
+        cache.reload(jdbcTemplate.query(sql, (rs, rowNum) -> makeMpa(rs)));
+    }
+
     public List<MpaRating> findAll() {
-        String sql = "SELECT * FROM mpa_ratings";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeMpa(rs));
+        return cache.findAll();
     }
 
     public Optional<MpaRating> findById(Long id) {
-        String sql = "SELECT * FROM mpa_ratings WHERE id = ?";
-        List<MpaRating> list = jdbcTemplate.query(sql, (rs, rowNum) -> makeMpa(rs), id);
-        return list.isEmpty() ? Optional.empty() : Optional.of(list.getFirst());
+        return cache.findById(id);
+    }
+
+    public ReferenceCache<MpaRating> getCache() {
+        return cache;
     }
 
     private MpaRating makeMpa(ResultSet rs) throws SQLException {
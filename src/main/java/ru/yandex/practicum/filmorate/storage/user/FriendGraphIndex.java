@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.LongIntCounter;
+import ru.yandex.practicum.filmorate.storage.MutableLongIdSet;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Граф дружбы в памяти: id пользователя -> отсортированные id его друзей (дружба односторонняя,
+ * как в таблице friendships). Списки меняются на месте; читатели получают их неизменяемые снимки,
+ * которые копируются только после изменения списка, а общие друзья считаются слиянием двух массивов.
+ * <p>
+ * Перезагрузка не блокирует изменения на время чтения таблицы: они записываются в журнал
+ * и повторяются поверх загруженного графа перед его публикацией.
+ */
+public class FriendGraphIndex {
+    // Первая проверка, что лидеры уже не могут смениться; дальше интервал удваивается
+    private static final int EARLY_STOP_FIRST_CHECK = 16;
+
+    private volatile Map<Long, MutableLongIdSet> friends = new ConcurrentHashMap<>();
+    // Изменения идут под блокировкой чтения, начало журнала и подмена графа — под блокировкой записи
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Изменения, пришедшие во время перезагрузки; null, когда перезагрузка не идёт
+    private volatile Queue<Change> journal;
+
+    /**
+     * Заменить граф целиком снимком из loader. Изменения, внесённые во время его работы, не теряются:
+     * add, remove и removeUser идемпотентны, поэтому повтор уже попавших в снимок ничего не меняет.
+     */
+    public synchronized void reload(Supplier<Map<Long, LongIdSet>> loader) {
+        lock.writeLock().lock();
+        try {
+            journal = new ConcurrentLinkedQueue<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Long, MutableLongIdSet> graph;
+        try {
+            Map<Long, LongIdSet> snapshot = loader.get();
+            graph = new ConcurrentHashMap<>(snapshot.size() * 2);
+            for (Map.Entry<Long, LongIdSet> entry : snapshot.entrySet()) {
+                graph.put(entry.getKey(), new MutableLongIdSet(entry.getValue()));
+            }
+        } catch (RuntimeException e) {
+            journal = null;
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Change change : journal) {
+                change.applyTo(graph);
+            }
+            friends = graph;
+            journal = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void reload(Map<Long, LongIdSet> snapshot) {
+        reload(() -> snapshot);
+    }
+
+    public LongIdSet friendsOf(long userId) {
+        MutableLongIdSet ids = friends.get(userId);
+        return ids == null ? LongIdSet.EMPTY : ids.snapshot();
+    }
+
+    public LongIdSet commonFriends(long userId, long otherId) {
+        return friendsOf(userId).intersect(friendsOf(otherId));
+    }
+
+    /**
+     * Кандидаты в друзья: пользователи, которых чаще всего добавили в друзья друзья userId,
+     * по убыванию числа таких общих друзей. Обход ограничен maxFanOut друзьями и maxFanOut их
+     * друзьями (у «хабов» берётся равномерная выборка), то есть не больше maxFanOut² шагов.
+     * Обход заканчивается раньше, когда оставшиеся друзья уже не могут изменить состав топа; порядок внутри
+     * топа при этом ещё может измениться, поэтому счётчики его участников досчитываются по оставшимся друзьям
+     * проверкой вхождения, без обхода их списков. Результат совпадает с полным обходом и по составу, и по порядку.
+     */
+    public long[] suggest(long userId, int limit, int maxFanOut) {
+        LongIdSet direct = friendsOf(userId);
+        if (direct.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        int visits = Math.min(direct.size(), maxFanOut);
+        LongIntCounter mutual = new LongIntCounter(visits * 8);
+        int nextCheck = EARLY_STOP_FIRST_CHECK;
+        for (int i = 0; i < visits; i++) {
+            LongIdSet candidates = friendsOf(direct.sample(i, visits));
+            int reach = Math.min(candidates.size(), maxFanOut);
+            for (int j = 0; j < reach; j++) {
+                long candidate = candidates.sample(j, reach);
+                if (candidate != userId && !direct.contains(candidate)) {
+                    mutual.increment(candidate);
+                }
+            }
+            int visited = i + 1;
+            int remaining = visits - visited;
+            if (visited == nextCheck && remaining > 0) {
+                // Счётчик лидера не больше visited, поэтому до середины обхода остановка невозможна
+                if (visited > remaining && mutual.size() > limit
+                        && mutual.countAtRank(limit - 1) > mutual.countAtRank(limit) + remaining) {
+                    return rankExactly(mutual.top(limit), mutual, direct, visited, visits, maxFanOut);
+                }
+                // Проверки всё реже: до середины — с удвоением, после — через половину оставшегося пути
+                nextCheck = visited > remaining ? visited + Math.max(1, remaining / 2) : visited * 2;
+            }
+        }
+        return mutual.top(limit);
+    }
+
+    /**
+     * Досчитать счётчики кандидатов top по друзьям direct с номерами выборки [from, visits)
+     * и упорядочить их по убыванию счётчика и возрастанию id, как {@link LongIntCounter#top}.
+     */
+    private long[] rankExactly(long[] top, LongIntCounter mutual, LongIdSet direct, int from, int visits,
+                               int maxFanOut) {
+        long[] packed = new long[top.length];
+        int[] counts = new int[top.length];
+        for (int k = 0; k < top.length; k++) {
+            counts[k] = mutual.get(top[k]);
+        }
+        for (int i = from; i < visits; i++) {
+            LongIdSet candidates = friendsOf(direct.sample(i, visits));
+            int reach = Math.min(candidates.size(), maxFanOut);
+            for (int k = 0; k < top.length; k++) {
+                if (candidates.sampleContains(top[k], reach)) {
+                    counts[k]++;
+                }
+            }
+        }
+        // Больший счётчик и меньший id дают большее значение, как в LongIntCounter
+        for (int k = 0; k < top.length; k++) {
+            packed[k] = ((long) counts[k] << 32) | (0xFFFFFFFFL - top[k]);
+        }
+        Arrays.sort(packed);
+        long[] result = new long[packed.length];
+        for (int k = 0; k < packed.length; k++) {
+            result[k] = 0xFFFFFFFFL - (packed[packed.length - 1 - k] & 0xFFFFFFFFL);
+        }
+        return result;
+    }
+
+    public boolean add(long userId, long friendId) {
+        return apply(new Change(Change.Type.ADD, userId, friendId));
+    }
+
+    public boolean remove(long userId, long friendId) {
+        return apply(new Change(Change.Type.REMOVE, userId, friendId));
+    }
+
+    /**
+     * Аналог ON DELETE CASCADE: убрать пользователя и из чужих списков друзей.
+     */
+    public void removeUser(long userId) {
+        apply(new Change(Change.Type.REMOVE_USER, userId, 0));
+    }
+
+    public int size() {
+        return friends.size();
+    }
+
+    private boolean apply(Change change) {
+        lock.readLock().lock();
+        try {
+            boolean changed = change.applyTo(friends);
+            Queue<Change> pending = journal;
+            if (pending != null) {
+                pending.add(change);
+            }
+            return changed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean add(Map<Long, MutableLongIdSet> graph, long userId, long friendId) {
+        boolean[] changed = new boolean[1];
+        graph.compute(userId, (id, current) -> {
+            MutableLongIdSet set = current == null ? new MutableLongIdSet() : current;
+            changed[0] = set.add(friendId);
+            return set;
+        });
+        return changed[0];
+    }
+
+    private static boolean remove(Map<Long, MutableLongIdSet> graph, long userId, long friendId) {
+        boolean[] changed = new boolean[1];
+        graph.computeIfPresent(userId, (id, current) -> {
+            changed[0] = current.remove(friendId);
+            return current.isEmpty() ? null : current;
+        });
+        return changed[0];
+    }
+
+    private static boolean removeUser(Map<Long, MutableLongIdSet> graph, long userId) {
+        boolean changed = graph.remove(userId) != null;
+        for (Long id : graph.keySet()) {
+            graph.computeIfPresent(id, (key, current) -> {
+                current.remove(userId);
+                return current.isEmpty() ? null : current;
+            });
+        }
+        return changed;
+    }
+
+    /**
+     * Изменение графа; во время перезагрузки попадает в журнал для повтора.
+     */
+    private record Change(Type type, long userId, long friendId) {
+        enum Type { ADD, REMOVE, REMOVE_USER }
+
+        boolean applyTo(Map<Long, MutableLongIdSet> graph) {
+            return switch (type) {
+                case ADD -> add(graph, userId, friendId);
+                case REMOVE -> remove(graph, userId, friendId);
+                case REMOVE_USER -> removeUser(graph, userId);
+            };
+        }
+    }
+}
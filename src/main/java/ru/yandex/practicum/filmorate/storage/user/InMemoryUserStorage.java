@@ -2,81 +2,153 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
     private final AtomicLong idGenerator = new AtomicLong(0);
-    private final Map<Long, Set<Long>> friendships = new HashMap<>();
+    // Версия — номер записи в общем счётчике изменений, поэтому никогда не повторяется для одного id
+    private final Map<Long, EntityVersion> versions = new ConcurrentHashMap<>();
+    private final AtomicLong revisions = new AtomicLong(0);
+    private final FriendGraphIndex friendships = new FriendGraphIndex();
 
     @Override
     public Collection<User> findAll() {
-        return users.values();
+        return new ArrayList<>(users.values());
+    }
+
+    @Override
+    public List<User> findPage(long after, int limit) {
+        return users.values().stream()
+                .filter(user -> user.getId() > after)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<User> action) {
+        users.values().stream()
+                .sorted(Comparator.comparing(User::getId))
+                .forEach(action);
     }
 
     @Override
     public User findById(Long id) {
-        return users.get(id);
+        User user = users.get(id);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с id=" + id + " не найден.");
+        }
+        return user;
+    }
+
+    @Override
+    public Optional<EntityVersion> findVersion(Long id) {
+        return Optional.ofNullable(versions.get(id));
+    }
+
+    private void touch(Long id) {
+        versions.put(id, EntityVersion.of(revisions.incrementAndGet(), Instant.now()));
+    }
+
+    @Override
+    public List<User> findByIds(Collection<Long> ids) {
+        List<User> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return id != null && users.containsKey(id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return ids.stream().allMatch(this::existsById);
     }
 
     @Override
     public User create(User user) {
         user.setId(idGenerator.incrementAndGet());
         users.put(user.getId(), user);
+        touch(user.getId());
         return user;
     }
 
     @Override
     public User update(User user) {
-        if (!users.containsKey(user.getId())) {
+        if (users.replace(user.getId(), user) == null) {
             throw new NotFoundException("Пользователь с id = " + user.getId() + " не найден.");
         }
-        users.put(user.getId(), user);
+        touch(user.getId());
         return user;
     }
 
     @Override
     public void delete(Long id) {
-        if (!users.containsKey(id)) {
+        if (users.remove(id) == null) {
             throw new NotFoundException("Пользователь с id = " + id + " не найден.");
         }
-        users.remove(id);
+        versions.remove(id);
+        friendships.removeUser(id);
     }
 
     @Override
     public boolean addFriend(Long userId, Long friendId) {
-        friendships.computeIfAbsent(userId, k -> new HashSet<>()).add(friendId);
-        friendships.computeIfAbsent(friendId, k -> new HashSet<>()).add(userId);
-        return true;
+        return friendships.add(userId, friendId);
     }
 
     @Override
     public boolean removeFriend(Long userId, Long friendId) {
-        friendships.getOrDefault(userId, new HashSet<>()).remove(friendId);
-        friendships.getOrDefault(friendId, new HashSet<>()).remove(userId);
-        return true;
+        return friendships.remove(userId, friendId);
     }
 
     @Override
     public Collection<User> getFriends(Long id) {
-        return friendships.getOrDefault(id, new HashSet<>()).stream()
-                .map(users::get)
-                .collect(Collectors.toList());
+        return toUsers(friendships.friendsOf(id));
     }
 
     @Override
     public Collection<User> getCommonFriends(Long id, Long otherId) {
-        Set<Long> friends1 = friendships.getOrDefault(id, new HashSet<>());
-        Set<Long> friends2 = friendships.getOrDefault(otherId, new HashSet<>());
-        Set<Long> common = new HashSet<>(friends1);
-        common.retainAll(friends2);
-        return common.stream()
-                .map(users::get)
-                .collect(Collectors.toList());
+        return toUsers(friendships.commonFriends(id, otherId));
+    }
+
+    @Override
+    public List<User> getSuggestedFriends(Long id, int limit, int maxFanOut) {
+        List<User> result = new ArrayList<>(limit);
+        for (long suggestedId : friendships.suggest(id, limit, maxFanOut)) {
+            User user = users.get(suggestedId);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    private List<User> toUsers(LongIdSet ids) {
+        List<User> result = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            User user = users.get(ids.get(i));
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
     }
 }
@@ -1,30 +1,85 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRead;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.LongIdSetCollector;
 
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 
+@Slf4j
 @Repository("userDbStorage")
 public class UserDbStorage implements UserStorage {
 
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final int ID_BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    // Друзья читаются из памяти; таблица friendships остаётся источником истины, граф меняется после фиксации
+    private final FriendGraphIndex friendGraph = new FriendGraphIndex();
 
     public UserDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Загрузить граф дружбы из friendships одним проходом по первичному ключу.
+     * Дружба, добавленная или удалённая во время чтения, повторяется поверх загруженного графа.
+     */
+    @PostConstruct
+    public void reloadFriendGraph() {
+        String sql = "SELECT user_id, friend_id FROM friendships ORDER BY user_id, friend_id";
+        friendGraph.reload(() -> {
+            LongIdSetCollector collector = new LongIdSetCollector("user_id", "friend_id");
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(STREAM_FETCH_SIZE);
+                return ps;
+            }, collector);
+            return collector.finish();
+        });
+        log.info("Friend graph loaded: {} users with friends", friendGraph.size());
+    }
+
+    @ReplicaRead
     @Override
     public Collection<User> findAll() {
         String sql = "SELECT * FROM users";
         return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs));
     }
 
+    @ReplicaRead
+    @Override
+    public List<User> findPage(long after, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), after, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> action) {
+        String sql = "SELECT * FROM users ORDER BY id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> action.accept(makeUser(rs)));
+    }
+
+    @ReplicaRead
     @Override
     public User findById(Long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
@@ -35,13 +90,68 @@ public class UserDbStorage implements UserStorage {
         return users.getFirst();
     }
 
+    @ReplicaRead
+    @Override
+    public Optional<EntityVersion> findVersion(Long id) {
+        String sql = "SELECT version, updated_at FROM users WHERE id = ?";
+        List<EntityVersion> versions = jdbcTemplate.query(sql, (rs, rowNum) ->
+                EntityVersion.of(rs.getLong("version"), rs.getTimestamp("updated_at").toInstant()), id);
+        return versions.stream().findFirst();
+    }
+
+    @ReplicaRead
+    @Override
+    public List<User> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        Map<Long, User> found = new HashMap<>();
+        for (int from = 0; from < idList.size(); from += ID_BATCH_SIZE) {
+            List<Long> batch = idList.subList(from, Math.min(from + ID_BATCH_SIZE, idList.size()));
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            String sql = "SELECT * FROM users WHERE id IN (" + placeholders + ")";
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                User user = makeUser(rs);
+                found.put(user.getId(), user);
+            }, batch.toArray());
+        }
+
+        List<User> users = new ArrayList<>(found.size());
+        for (Long id : idList) {
+            User user = found.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinct = new HashSet<>(ids);
+        if (distinct.isEmpty()) {
+            return true;
+        }
+        String placeholders = String.join(",", Collections.nCopies(distinct.size(), "?"));
+        String sql = "SELECT COUNT(*) FROM users WHERE id IN (" + placeholders + ")";
+        Integer found = jdbcTemplate.queryForObject(sql, Integer.class, distinct.toArray());
+        return found != null && found == distinct.size();
+    }
+
     @Override
     public User create(User user) {
         String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
             ps.setString(1, user.getEmail());
             ps.setString(2, user.getLogin());
             ps.setString(3, user.getName());
@@ -56,7 +166,8 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User update(User user) {
-        String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
+        String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ?, " +
+                "version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
         int rows = jdbcTemplate.update(sql,
                 user.getEmail(),
                 user.getLogin(),
@@ -74,37 +185,54 @@ public class UserDbStorage implements UserStorage {
     public void delete(Long userId) {
         String sql = "DELETE FROM users WHERE id = ?";
         jdbcTemplate.update(sql, userId);
+        AfterCommit.run(() -> friendGraph.removeUser(userId));
     }
 
     @Override
     public boolean addFriend(Long userId, Long friendId) {
         String sql = "INSERT INTO friendships (user_id, friend_id) VALUES (?, ?)";
         jdbcTemplate.update(sql, userId, friendId);
+        AfterCommit.run(() -> friendGraph.add(userId, friendId));
         return true;
     }
 
     @Override
     public boolean removeFriend(Long userId, Long friendId) {
         String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
-        return true;
+        boolean removed = jdbcTemplate.update(sql, userId, friendId) > 0;
+        AfterCommit.run(() -> friendGraph.remove(userId, friendId));
+        return removed;
     }
 
+    @ReplicaRead
     @Override
     public Collection<User> getFriends(Long id) {
-        String sql = "SELECT u.* FROM friendships f " +
-                "JOIN users u ON f.friend_id = u.id " +
-                "WHERE f.user_id = ?";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), id);
+        return findByIds(toList(friendGraph.friendsOf(id)));
     }
 
+    /**
+     * Пересечение отсортированных списков друзей из памяти и одна пакетная загрузка найденных пользователей.
+     */
+    @ReplicaRead
     @Override
     public Collection<User> getCommonFriends(Long id, Long otherId) {
-        String sql = "SELECT u.* FROM friendships f1 " +
-                "JOIN friendships f2 ON f1.friend_id = f2.friend_id " +
-                "JOIN users u ON f1.friend_id = u.id " +
-                "WHERE f1.user_id = ? AND f2.user_id = ?";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), id, otherId);
+        return findByIds(toList(friendGraph.commonFriends(id, otherId)));
+    }
+
+    @Override
+    public List<User> getSuggestedFriends(Long id, int limit, int maxFanOut) {
+        long[] suggested = friendGraph.suggest(id, limit, maxFanOut);
+        List<Long> ids = new ArrayList<>(suggested.length);
+        for (long suggestedId : suggested) {
+            ids.add(suggestedId);
+        }
+        return findByIds(ids);
+    }
+
+    private static List<Long> toList(LongIdSet ids) {
+        List<Long> result = new ArrayList<>(ids.size());
+        ids.forEach(result::add);
+        return result;
     }
 
     private User makeUser(ResultSet rs) throws SQLException {
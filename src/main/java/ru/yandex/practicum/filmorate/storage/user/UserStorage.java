@@ -1,13 +1,47 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Collection<User> findAll();
 
+    /**
+     * Страница пользователей с id строго больше after, упорядоченная по id.
+     */
+    List<User> findPage(long after, int limit);
+
+    /**
+     * Передаёт пользователей по одному, упорядоченными по id, не собирая всю таблицу в памяти.
+     */
+    void streamAll(Consumer<User> action);
+
     User findById(Long id);
 
+    /**
+     * Версия пользователя для условного GET без загрузки самой сущности; пусто, если пользователя нет.
+     */
+    Optional<EntityVersion> findVersion(Long id);
+
+    /**
+     * Пользователи с указанными id в порядке следования ids; отсутствующие id пропускаются.
+     */
+    List<User> findByIds(Collection<Long> ids);
+
+    /**
+     * Проверка существования без загрузки пользователя.
+     */
+    boolean existsById(Long id);
+
+    /**
+     * true, если существуют все пользователи из ids.
+     */
+    boolean existsAll(Collection<Long> ids);
+
     User create(User user);
 
     User update(User user);
@@ -21,4 +55,10 @@ public interface UserStorage {
     Collection<User> getFriends(Long id);
 
     Collection<User> getCommonFriends(Long id, Long otherId);
+
+    /**
+     * До limit пользователей, которых чаще всего добавили в друзья друзья пользователя id;
+     * maxFanOut ограничивает число просматриваемых друзей и друзей друзей.
+     */
+    List<User> getSuggestedFriends(Long id, int limit, int maxFanOut);
 }
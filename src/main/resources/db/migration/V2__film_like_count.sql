@@ -0,0 +1,6 @@
+-- Денормализованный счётчик лайков для популярных фильмов; дальше его поддерживает FilmDbStorage
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INT NOT NULL DEFAULT 0;
+
+UPDATE films f SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id);
+
+CREATE INDEX IF NOT EXISTS idx_films_like_count ON films (like_count DESC, id);
@@ -0,0 +1,7 @@
+-- Индексы по второму столбцу составных ключей. Первичные ключи likes, friendships и film_genres
+-- покрывают поиск только по первому столбцу; обратные направления (лайки пользователя, кто добавил
+-- пользователя в друзья, фильмы жанра) и каскадное удаление пользователей и жанров без них читают
+-- таблицу целиком. Индексы составные, чтобы запрос по ним не обращался к самой таблице.
+CREATE INDEX IF NOT EXISTS idx_likes_user ON likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_friendships_friend ON friendships (friend_id, user_id);
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre ON film_genres (genre_id, film_id);
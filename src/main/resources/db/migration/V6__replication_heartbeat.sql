@@ -0,0 +1,8 @@
+-- Отметка времени, которую приложение периодически пишет на основную базу: по её значению на реплике
+-- видно, насколько реплика отстаёт
+CREATE TABLE IF NOT EXISTS replication_heartbeat (
+    id      INT PRIMARY KEY,
+    beat_at TIMESTAMP NOT NULL
+);
+
+INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, CURRENT_TIMESTAMP);
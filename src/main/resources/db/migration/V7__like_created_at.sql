@@ -0,0 +1,6 @@
+-- Время лайка для оконных рейтингов популярности. Лайки, поставленные до миграции, остаются с NULL:
+-- их время неизвестно, и они учитываются только в рейтинге за всё время.
+ALTER TABLE likes ADD COLUMN IF NOT EXISTS created_at TIMESTAMP;
+ALTER TABLE likes ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+-- Загрузка лайков последних 30 дней при старте читает только индекс
+CREATE INDEX IF NOT EXISTS idx_likes_created_at ON likes (created_at, film_id, user_id);
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.Versioned;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.NearCache;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Условный GET через MockMvc: актуальный ETag в If-None-Match даёт 304 без тела, изменённая сущность — 200.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:conditional_get;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private GenreDbStorage genreStorage;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    @Qualifier("filmNearCache")
+    private NearCache<Versioned<Film>> filmNearCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("Справочник жанров: 304 по актуальному ETag, 200 с новым ETag после добавления жанра")
+    void testGenresNotModifiedUntilChanged() throws Exception {
+        String eTag = mockMvc.perform(get("/genres"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+
+        Genre genre = new Genre();
+        genre.setName("Нуар");
+        genreStorage.create(genre);
+        String changed = mockMvc.perform(get("/genres").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'Нуар')]").exists())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changed).isNotEqualTo(eTag);
+    }
+
+    @Test
+    @DisplayName("Пользователь: 304 по актуальному ETag, 200 с новыми данными после обновления")
+    void testUserNotModifiedUntilUpdated() throws Exception {
+        User user = new User();
+        user.setEmail("etag@example.com");
+        user.setLogin("etag");
+        user.setName("Before");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user = userService.create(user);
+
+        String eTag = mockMvc.perform(get("/users/{id}", user.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).isNotBlank();
+
+        mockMvc.perform(get("/users/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        user.setName("After");
+        userService.update(user);
+        mockMvc.perform(get("/users/{id}", user.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+                .andExpect(jsonPath("$.name").value("After"));
+    }
+
+    @Test
+    @DisplayName("Фильм, изменённый в обход приложения, после истечения ближнего кэша отдаётся с новым ETag и новым телом")
+    void testFilmChangedOutsideApplication() throws Exception {
+        Film film = new Film();
+        film.setName("Original");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        film = filmService.create(film);
+
+        String eTag = mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Original"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        jdbcTemplate.update("UPDATE films SET name = 'Outside', version = version + 1 WHERE id = ?", film.getId());
+        // Запись ближнего кэша истекла, кэш JSON ни о чём не знает
+        filmNearCache.invalidate(film.getId());
+        mockMvc.perform(get("/films/{id}", film.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+                .andExpect(jsonPath("$.name").value("Outside"));
+    }
+
+    @Test
+    @DisplayName("PUT /films отдаёт ETag новой версии, и следующий PUT с If-Match проходит без GET")
+    void testUpdateReturnsNewETag() throws Exception {
+        Film film = new Film();
+        film.setName("Draft");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        film = filmService.create(film);
+        String eTag = mockMvc.perform(get("/films/{id}", film.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        film.setName("First edit");
+        String first = mockMvc.perform(put("/films").header(HttpHeaders.IF_MATCH, eTag)
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        film.setName("Second edit");
+        String second = mockMvc.perform(put("/films").header(HttpHeaders.IF_MATCH, first)
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/films/{id}", film.getId()))
+                .andExpect(header().string(HttpHeaders.ETAG, second))
+                .andExpect(jsonPath("$.name").value("Second edit"));
+
+        mockMvc.perform(put("/films").header(HttpHeaders.IF_MATCH, first)
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isPreconditionFailed());
+    }
+}
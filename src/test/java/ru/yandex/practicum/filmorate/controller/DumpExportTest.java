@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.NestedTestConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.context.NestedTestConfiguration.EnclosingConfiguration.OVERRIDE;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /dump/{table} отдаёт данные пользователей, поэтому по умолчанию выключен.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:dump_export_off;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class DumpExportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Без filmorate.dump.export.enabled выгрузки нет")
+    void testDisabledByDefault() throws Exception {
+        mockMvc.perform(get("/dump/users")).andExpect(status().isNotFound());
+    }
+
+    @Nested
+    @NestedTestConfiguration(OVERRIDE)
+    @SpringBootTest(properties = {
+            "spring.datasource.url=jdbc:h2:mem:dump_export_on;DB_CLOSE_DELAY=-1",
+            "filmorate.dump.export.enabled=true"
+    })
+    @AutoConfigureMockMvc
+    class Enabled {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Test
+        @DisplayName("Со свойством таблица выгружается в NDJSON")
+        void testExport() throws Exception {
+            MvcResult started = mockMvc.perform(get("/dump/mpa_ratings")).andReturn();
+            String body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertThat(body.lines()).hasSize(5).first().asString().contains("\"id\":1");
+        }
+    }
+}
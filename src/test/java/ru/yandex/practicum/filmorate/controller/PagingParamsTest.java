@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Выбор обработчика списка по параметрам: limit вместе со stream=true даёт страницу, а не 500.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:paging_params;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class PagingParamsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/films", "/users"})
+    @DisplayName("limit и stream=true вместе обрабатываются как постраничный запрос")
+    void testLimitWithStream(String path) throws Exception {
+        mockMvc.perform(get(path).param("limit", "10").param("stream", "true"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncNotStarted());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/films", "/users"})
+    @DisplayName("stream=true без limit отдаётся потоком")
+    void testStreamWithoutLimit(String path) throws Exception {
+        mockMvc.perform(get(path).param("stream", "true"))
+                .andExpect(request().asyncStarted());
+    }
+}
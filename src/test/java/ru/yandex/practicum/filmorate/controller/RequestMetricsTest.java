@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Метрики хранилищ и HTTP-запросов через MockMvc: запрос обрабатывается в потоке теста,
+ * поэтому счётчик запросов к БД за HTTP-запрос совпадает с приростом общего счётчика JDBC.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:request_metrics;DB_CLOSE_DELAY=-1",
+        "filmorate.metrics.request-query-warn-threshold=1"
+})
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+class RequestMetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    @DisplayName("Операция хранилища попадает в таймер с тегами storage/operation, а запросы к БД — в гистограмму URI")
+    void testStorageTimerAndRequestQueries(CapturedOutput output) throws Exception {
+        createUser("metrics1");
+        createUser("metrics2");
+        long statementsBefore = statements();
+        long pagesBefore = operations("findPage");
+
+        mockMvc.perform(get("/users").param("limit", "10")).andExpect(status().isOk());
+
+        assertThat(operations("findPage")).isEqualTo(pagesBefore + 1);
+        DistributionSummary rows = registry.find("filmorate.storage.rows")
+                .tags("storage", "UserDbStorage", "operation", "findPage").summary();
+        assertThat(rows).isNotNull();
+        assertThat(rows.max()).isEqualTo(2);
+
+        DistributionSummary queries = requestQueries("/users");
+        assertThat(queries.count()).isEqualTo(1);
+        assertThat((long) queries.totalAmount()).isEqualTo(statements() - statementsBefore).isEqualTo(1);
+        // Один запрос к БД не превышает порога
+        assertThat(output).doesNotContain("GET /users issued");
+    }
+
+    @Test
+    @DisplayName("HTTP-запрос, выполнивший запросов к БД больше порога, пишется в лог")
+    void testQueryThresholdWarning(CapturedOutput output) throws Exception {
+        User user = createUser("metrics3");
+        long versionsBefore = operations("findVersion");
+        long statementsBefore = statements();
+
+        // Версия для ETag и сама строка пользователя — два запроса при пороге в один
+        mockMvc.perform(get("/users/{id}", user.getId())).andExpect(status().isOk());
+
+        assertThat(operations("findVersion")).isEqualTo(versionsBefore + 1);
+        long issued = statements() - statementsBefore;
+        assertThat(issued).isEqualTo(2);
+        assertThat((long) requestQueries("/users/{id}").totalAmount()).isEqualTo(issued);
+        assertThat(output).contains("GET /users/{id} issued 2 queries");
+    }
+
+    private long operations(String operation) {
+        Timer timer = registry.find("filmorate.storage.operation")
+                .tags("storage", "UserDbStorage", "operation", operation, "outcome", "success").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private DistributionSummary requestQueries(String uri) {
+        DistributionSummary summary = registry.find("filmorate.http.queries").tag("uri", uri).summary();
+        assertThat(summary).isNotNull();
+        return summary;
+    }
+
+    private long statements() {
+        Counter counter = registry.find("filmorate.jdbc.statements").counter();
+        return counter == null ? 0 : (long) counter.count();
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userService.create(user);
+    }
+}
@@ -5,8 +5,6 @@ import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.user.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
-import org.mockito.MockitoAnnotations;
 
 import java.time.LocalDate;
 
@@ -15,12 +13,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class UserValidationTest {
 
-    @InjectMocks
     private UserService userService;
 
     @BeforeEach
     public void setUp() {
-        MockitoAnnotations.openMocks(this);
+        // Проверка полей не обращается к хранилищу и кэшу
+        userService = new UserService(null, null, UserService.DEFAULT_SUGGESTION_FAN_OUT);
     }
 
     @Test
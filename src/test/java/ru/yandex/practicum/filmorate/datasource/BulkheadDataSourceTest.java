@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadDataSourceTest {
+    private static final Duration TIMEOUT = Duration.ofMillis(200);
+
+    @Test
+    @DisplayName("Разрешение берётся при выдаче соединения и возвращается один раз при закрытии")
+    void testPermitReleasedOnClose() throws SQLException {
+        BulkheadDataSource bulkhead = new BulkheadDataSource(database(), 2, TIMEOUT);
+
+        Connection first = bulkhead.getConnection();
+        Connection second = bulkhead.getConnection();
+        assertThat(bulkhead.getActive()).isEqualTo(2);
+        // Обёртка равна только самой себе и может служить ключом, как обычное соединение
+        assertThat(first).isEqualTo(first).isNotEqualTo(second);
+        assertThat(first.hashCode()).isEqualTo(first.hashCode());
+        Set<Connection> open = new HashSet<>(Set.of(first, second));
+        assertThat(open.remove(first)).isTrue();
+
+        first.close();
+        first.close();
+        assertThat(bulkhead.getActive()).isEqualTo(1);
+        assertThat(first.isClosed()).isTrue();
+        second.close();
+        assertThat(bulkhead.getActive()).isZero();
+    }
+
+    @Test
+    @DisplayName("Без свободного разрешения getConnection ждёт не дольше таймаута")
+    void testAcquireTimeout() throws SQLException {
+        BulkheadDataSource bulkhead = new BulkheadDataSource(database(), 1, TIMEOUT);
+
+        try (Connection held = bulkhead.getConnection()) {
+            long start = System.nanoTime();
+            assertThatThrownBy(bulkhead::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(TIMEOUT);
+            assertThat(held.isValid(1)).isTrue();
+        }
+        try (Connection connection = bulkhead.getConnection()) {
+            assertThat(bulkhead.getActive()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Разрешение возвращается, если целевой источник не выдал соединение")
+    void testPermitReturnedWhenTargetFails() {
+        BulkheadDataSource bulkhead = new BulkheadDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE", "sa", ""), 1, TIMEOUT);
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(bulkhead::getConnection)
+                    .isInstanceOf(SQLException.class)
+                    .isNotInstanceOf(SQLTransientConnectionException.class);
+            assertThat(bulkhead.getActive()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("Закрытие ограничителя закрывает пул, который он оборачивает")
+    void testCloseClosesTarget() throws Exception {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:bulkhead" + UUID.randomUUID());
+        BulkheadDataSource bulkhead = new BulkheadDataSource(pool, 1, TIMEOUT);
+        try (Connection connection = bulkhead.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+
+        bulkhead.close();
+        assertThat(pool.isClosed()).isTrue();
+        // Источник без close закрывать нечего
+        new BulkheadDataSource(database(), 1, TIMEOUT).close();
+    }
+
+    @Test
+    @DisplayName("При остановке приложения бин-обёртка закрывает пул Hikari")
+    void testContextCloseClosesPool() throws SQLException {
+        HikariDataSource pool;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bulkhead_shutdown;DB_CLOSE_DELAY=-1",
+                        "--filmorate.datasource.bulkhead.enabled=true")) {
+            DataSource dataSource = context.getBean(DataSource.class);
+            assertThat(dataSource).isInstanceOf(BulkheadDataSource.class);
+            pool = dataSource.unwrap(HikariDataSource.class);
+            assertThat(pool.isClosed()).isFalse();
+        }
+        assertThat(pool.isClosed()).isTrue();
+    }
+
+    private static DriverManagerDataSource database() {
+        return new DriverManagerDataSource("jdbc:h2:mem:bulkhead" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "sa", "");
+    }
+}
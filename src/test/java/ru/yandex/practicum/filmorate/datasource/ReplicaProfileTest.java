@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Контекст с профилем replica и очередью за соединениями, в котором реплика — отдельная база H2.
+ * Фильм копируется на неё под другим названием, и по названию в ответе видно, с какой базы он прочитан.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica_profile_primary;DB_CLOSE_DELAY=-1",
+        "filmorate.datasource.replicas.urls=" + ReplicaProfileTest.REPLICA_URL,
+        "filmorate.datasource.replicas.password=",
+        "filmorate.datasource.bulkhead.enabled=true"
+})
+@ActiveProfiles("replica")
+class ReplicaProfileTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:replica_profile_replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(dataSource);
+        replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы из кэша JSON загружаются с основной базы, даже когда реплика доступна")
+    void testPopularJsonLoadedFromPrimary() throws Exception {
+        Film film = createLikedFilm();
+        replicate(film);
+
+        // Обычное чтение популярных идёт на реплику
+        assertThat(filmService.getPopularFilms(1)).extracting(Film::getName).containsExactly("REPLICA");
+
+        JsonNode popular = objectMapper.readTree(filmService.getPopularFilmsJson(1, null, null, null));
+        assertThat(popular.get(0).get("name").asText()).isEqualTo("PRIMARY");
+        JsonNode hot = objectMapper.readTree(filmService.getHotFilmsJson(1));
+        assertThat(hot.get(0).get("name").asText()).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Очередь за соединениями оборачивает маршрутизатор, а @ReplicaRead через аспект читает с реплики")
+    void testReplicaReadThroughBulkhead() {
+        assertThat(dataSource).isInstanceOf(BulkheadDataSource.class);
+        ReplicaRoutingDataSource routing = ReplicaRoutingDataSource.find(dataSource).orElseThrow();
+        assertThat(meterRegistry.find("filmorate.datasource.bulkhead.active").gauge()).isNotNull();
+        assertThat(meterRegistry.find("filmorate.datasource.replica.lag").gauge()).isNotNull();
+        catchUp();
+
+        long replicaReads = routing.getReplicaReads();
+        long fallbackReads = routing.getFallbackReads();
+        filmService.findPage(null, 10);
+        assertThat(routing.getReplicaReads()).isGreaterThan(replicaReads);
+        assertThat(routing.getFallbackReads()).isEqualTo(fallbackReads);
+
+        // Запрос без @ReplicaRead идёт на основную базу и в счётчики маршрутизации не попадает
+        replicaReads = routing.getReplicaReads();
+        primary.queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+        assertThat(routing.getReplicaReads()).isEqualTo(replicaReads);
+        assertThat(routing.getFallbackReads()).isEqualTo(fallbackReads);
+    }
+
+    private Film createLikedFilm() {
+        User user = new User();
+        user.setEmail("replica@example.com");
+        user.setLogin("replica");
+        user.setName("replica");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user = userService.create(user);
+
+        Film film = new Film();
+        film.setName("PRIMARY");
+        film.setDescription("Replica routing");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        film = filmService.create(film);
+        filmService.addLike(film.getId(), user.getId());
+        return film;
+    }
+
+    /**
+     * Скопировать фильм на реплику под названием REPLICA.
+     */
+    private void replicate(Film film) {
+        replica.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id) " +
+                        "VALUES (?, 'REPLICA', ?, ?, ?, ?)", film.getId(), film.getDescription(),
+                film.getReleaseDate(), film.getDuration(), film.getMpa().getId());
+        catchUp();
+    }
+
+    /**
+     * Догнать отметку времени на реплике, чтобы маршрутизатор считал её не отстающей.
+     */
+    private void catchUp() {
+        ReplicaRoutingDataSource routing = ReplicaRoutingDataSource.find(dataSource).orElseThrow();
+        routing.heartbeat();
+        Timestamp beat = primary.queryForObject("SELECT beat_at FROM replication_heartbeat WHERE id = 1",
+                Timestamp.class);
+        replica.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", beat);
+        routing.heartbeat();
+    }
+}
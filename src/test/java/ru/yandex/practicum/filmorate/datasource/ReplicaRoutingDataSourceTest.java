@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Две отдельные базы H2: основная и реплика, которую тест «догоняет» вручную, копируя отметку времени.
+ */
+class ReplicaRoutingDataSourceTest {
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void createDatabases() {
+        primary = database("PRIMARY");
+        replica = database("REPLICA");
+        routing = new ReplicaRoutingDataSource(primary, Map.of("replica-1", replica), Duration.ofSeconds(5));
+        jdbc = new JdbcTemplate(routing);
+    }
+
+    @AfterEach
+    void closeDatabases() throws Exception {
+        ReadRouting.endRequest();
+        routing.close();
+    }
+
+    @Test
+    @DisplayName("Чтения идут на догнавшую реплику, запись и обычные запросы — на основную базу")
+    void testRoutesReadsToFreshReplica() {
+        assertThat(read()).isEqualTo("PRIMARY");
+
+        routing.heartbeat();
+        assertThat(read()).isEqualTo("REPLICA");
+        assertThat(jdbc.queryForObject("SELECT name FROM mpa_ratings WHERE id = 1", String.class))
+                .isEqualTo("PRIMARY");
+        assertThat(routing.getReplicaReads()).isEqualTo(1);
+        assertThat(routing.getFallbackReads()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Реплика, отстающая больше допустимого, не используется, пока не догонит")
+    void testLaggingReplicaFallsBackToPrimary() {
+        new JdbcTemplate(replica).update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1",
+                Timestamp.from(Instant.now().minusSeconds(60)));
+        routing.heartbeat();
+        assertThat(read()).isEqualTo("PRIMARY");
+
+        replicate();
+        routing.heartbeat();
+        assertThat(read()).isEqualTo("REPLICA");
+    }
+
+    @Test
+    @DisplayName("Недоступная реплика сразу заменяется основной базой")
+    void testUnavailableReplicaFallsBackToPrimary() {
+        routing.heartbeat();
+        replica.close();
+
+        assertThat(read()).isEqualTo("PRIMARY");
+        routing.heartbeat();
+        assertThat(read()).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Сессия, которая только что писала, читает с основной базы, пока не истечёт окно")
+    void testStickySessionReadsFromPrimary() {
+        routing.heartbeat();
+        ReplicaStickinessInterceptor interceptor = new ReplicaStickinessInterceptor(Duration.ofSeconds(5));
+
+        MockHttpServletRequest write = new MockHttpServletRequest("PUT", "/users");
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        interceptor.preHandle(write, written, null);
+        assertThat(read()).isEqualTo("PRIMARY");
+        interceptor.afterCompletion(write, written, null, null);
+        Cookie cookie = written.getCookie(ReplicaStickinessInterceptor.COOKIE);
+        assertThat(cookie).isNotNull();
+
+        MockHttpServletRequest sticky = new MockHttpServletRequest("GET", "/users/1");
+        sticky.setCookies(cookie);
+        interceptor.preHandle(sticky, new MockHttpServletResponse(), null);
+        assertThat(read()).isEqualTo("PRIMARY");
+        interceptor.afterCompletion(sticky, new MockHttpServletResponse(), null, null);
+
+        MockHttpServletRequest expired = new MockHttpServletRequest("GET", "/users/1");
+        expired.setCookies(new Cookie(ReplicaStickinessInterceptor.COOKIE,
+                Long.toString(System.currentTimeMillis() - 1)));
+        interceptor.preHandle(expired, new MockHttpServletResponse(), null);
+        assertThat(read()).isEqualTo("REPLICA");
+
+        // Внутри onPrimary реплика не используется даже для чтений
+        assertThat(ReadRouting.onPrimary(this::read)).isEqualTo("PRIMARY");
+    }
+
+    /**
+     * Чтение так, как его выполняет метод с {@link ReplicaRead}: название MPA с id = 1 показывает, куда оно ушло.
+     */
+    private String read() {
+        boolean previous = ReadRouting.setReadOnly(true);
+        try {
+            return jdbc.queryForObject("SELECT name FROM mpa_ratings WHERE id = 1", String.class);
+        } finally {
+            ReadRouting.setReadOnly(previous);
+        }
+    }
+
+    private void replicate() {
+        Timestamp beat = new JdbcTemplate(primary).queryForObject(
+                "SELECT beat_at FROM replication_heartbeat WHERE id = 1", Timestamp.class);
+        new JdbcTemplate(replica).update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", beat);
+    }
+
+    private static HikariDataSource database(String marker) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + marker.toLowerCase() + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(2);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        new JdbcTemplate(dataSource).update("UPDATE mpa_ratings SET name = ? WHERE id = 1", marker);
+        return dataSource;
+    }
+}
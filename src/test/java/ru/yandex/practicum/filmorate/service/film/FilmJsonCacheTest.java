@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmJsonCacheTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    private InMemoryFilmStorage storage;
+    private GenreDbStorage genreStorage;
+    private FilmJsonCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        storage = new InMemoryFilmStorage();
+        for (int i = 1; i <= 3; i++) {
+            storage.create(film(i));
+        }
+        // Справочники не загружаются из БД: кэшу нужны только их версии
+        genreStorage = new GenreDbStorage(null);
+        cache = new FilmJsonCache(objectMapper, genreStorage, new MpaDbStorage(null), 100, Duration.ZERO);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Фильм сериализуется один раз и пересериализуется после сброса")
+    void testSingleFilmCachedUntilInvalidated() throws Exception {
+        byte[] first = cache.get(1L, null, this::load);
+        assertThat(cache.get(1L, null, this::load)).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        assertThat(objectMapper.readTree(first).get("releaseDate").asText()).isEqualTo("2000-01-01");
+
+        Film film = storage.findById(1L);
+        film.setName("Renamed");
+        storage.update(film);
+        cache.invalidate(1L);
+        assertThat(objectMapper.readTree(cache.get(1L, null, this::load)).get("name").asText()).isEqualTo("Renamed");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Массив склеивается в порядке id, недостающие фильмы догружаются одним вызовом")
+    void testArraySplicesCachedFragments() throws Exception {
+        cache.get(2L, null, this::load);
+        AtomicInteger batchLoads = new AtomicInteger();
+        byte[] json = cache.getArray(List.of(3L, 2L, 99L, 1L), ids -> {
+            batchLoads.incrementAndGet();
+            assertThat(ids).containsExactly(3L, 99L, 1L);
+            return storage.findByIds(ids);
+        });
+
+        JsonNode array = objectMapper.readTree(json);
+        assertThat(array).extracting(node -> node.get("id").asLong()).containsExactly(3L, 2L, 1L);
+        assertThat(batchLoads).hasValue(1);
+        assertThat(cache.getArray(List.of(), storage::findByIds)).isEqualTo("[]".getBytes());
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Изменение справочника жанров сбрасывает весь кэш")
+    void testReferenceDataChangeClearsCache() {
+        cache.get(1L, null, this::load);
+        assertThat(cache.size()).isEqualTo(1);
+
+        Genre genre = new Genre();
+        genre.setId(1L);
+        genre.setName("Комедия");
+        genreStorage.getCache().reload(List.of(genre));
+        cache.get(2L, null, this::load);
+        assertThat(cache.size()).isEqualTo(1);
+        cache.get(1L, null, this::load);
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Переполненный кэш вытесняет фрагмент, который дольше всех не читали")
+    void testEvictsLeastRecentlyUsed() {
+        for (int i = 4; i <= 10; i++) {
+            storage.create(film(i));
+        }
+        FilmJsonCache small = new FilmJsonCache(objectMapper, genreStorage, new MpaDbStorage(null), 3, Duration.ZERO);
+        small.get(1L, null, this::load);
+        small.get(2L, null, this::load);
+        small.get(3L, null, this::load);
+        // Обращение к фильму 1 делает самым давним фильм 2
+        small.get(1L, null, this::load);
+        small.get(4L, null, this::load);
+        assertThat(small.size()).isEqualTo(3);
+        assertThat(small.getEvictions()).isEqualTo(1);
+        assertThat(loads).hasValue(4);
+
+        small.get(1L, null, this::load);
+        small.get(3L, null, this::load);
+        assertThat(loads).hasValue(4);
+        small.get(2L, null, this::load);
+        assertThat(loads).hasValue(5);
+
+        // Новые фильмы продолжают попадать в кэш и после заполнения: последний прочитанный всегда в нём
+        for (long id = 5; id <= 10; id++) {
+            small.get(id, null, this::load);
+            small.get(id, null, this::load);
+        }
+        assertThat(small.size()).isEqualTo(3);
+        assertThat(loads).hasValue(11);
+        assertThat(small.getHits()).isEqualTo(9);
+        assertThat(small.getEvictions()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("JSON другой версии фильма перечитывается, даже если запись не сбрасывали")
+    void testReloadsForNewVersion() throws Exception {
+        EntityVersion first = EntityVersion.of(1, Instant.EPOCH);
+        byte[] json = cache.get(1L, first, this::load);
+        assertThat(cache.get(1L, first, this::load)).isSameAs(json);
+        assertThat(loads).hasValue(1);
+
+        // Фильм изменён в обход приложения: версия новая, а invalidate никто не вызывал
+        Film film = storage.findById(1L);
+        film.setName("Changed outside");
+        storage.update(film);
+        byte[] changed = cache.get(1L, EntityVersion.of(2, Instant.EPOCH), this::load);
+        assertThat(objectMapper.readTree(changed).get("name").asText()).isEqualTo("Changed outside");
+        assertThat(loads).hasValue(2);
+        assertThat(cache.getExpirations()).isEqualTo(1);
+
+        // Фрагмент, загруженный для списка, версии не знает и для GET по id перечитывается один раз
+        cache.getArray(List.of(2L), storage::findByIds);
+        cache.get(2L, first, this::load);
+        cache.get(2L, first, this::load);
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Фрагмент живёт не дольше времени жизни ближнего кэша фильмов")
+    void testExpiresAfterTtl() throws Exception {
+        FilmJsonCache expiring = new FilmJsonCache(objectMapper, genreStorage, new MpaDbStorage(null), 100,
+                Duration.ofMillis(1));
+        expiring.get(1L, null, this::load);
+        Thread.sleep(5);
+        expiring.get(1L, null, this::load);
+        assertThat(loads).hasValue(2);
+        assertThat(expiring.getExpirations()).isEqualTo(1);
+    }
+
+    private static Film film(int i) {
+        Film film = new Film();
+        film.setName("Film " + i);
+        film.setReleaseDate(LocalDate.of(2000, 1, i));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        return film;
+    }
+
+    private Film load(Long id) {
+        loads.incrementAndGet();
+        return storage.findById(id);
+    }
+}
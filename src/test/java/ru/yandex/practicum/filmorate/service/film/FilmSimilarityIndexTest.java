@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSimilarityIndexTest {
+    private InMemoryFilmStorage storage;
+    private FilmSimilarityIndex index;
+    private FilmSimilarityIndex racingIndex;
+
+    @BeforeEach
+    void setUp() {
+        storage = new InMemoryFilmStorage();
+        for (int i = 0; i < 5; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            MpaRating mpa = new MpaRating();
+            mpa.setId(1L);
+            film.setMpa(mpa);
+            storage.create(film);
+        }
+        // Фильм 1 лайкают вместе с 2 трое, вместе с 3 — один; фильм 4 — отдельно от всех
+        like(1, 10, 11, 12, 13);
+        like(2, 10, 11, 12);
+        like(3, 13, 14);
+        like(4, 20);
+        index = new FilmSimilarityIndex(storage, 2, 100, 2);
+        index.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    @DisplayName("Похожие фильмы упорядочены по косинусной близости совместных лайков, соседей не больше K")
+    void testSimilarOrder() {
+        assertThat(index.similar(1, 10)).containsExactly(2L, 3L);
+        assertThat(index.similar(2, 10)).containsExactly(1L);
+        assertThat(index.similar(4, 10)).isEmpty();
+        assertThat(index.similar(1, 1)).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Лайки сразу меняют соседей обоих фильмов, удалённый фильм пропадает из списков")
+    void testIncrementalUpdate() {
+        for (long user = 30; user < 35; user++) {
+            storage.addLike(4L, user);
+            index.likeAdded(4, user);
+            storage.addLike(5L, user);
+            index.likeAdded(5, user);
+        }
+        assertThat(index.similar(4, 10)).containsExactly(5L);
+        assertThat(index.similar(5, 10)).containsExactly(4L);
+
+        // Повторный лайк не увеличивает число совместных лайков
+        index.likeAdded(5, 30);
+        index.likeRemoved(5, 30);
+        index.likeRemoved(4, 30);
+        index.likeRemoved(4, 20);
+        for (long user = 31; user < 35; user++) {
+            index.likeRemoved(5, user);
+        }
+        assertThat(index.similar(4, 10)).isEmpty();
+
+        index.likeAdded(5, 31);
+        assertThat(index.similar(4, 10)).containsExactly(5L);
+        index.filmDeleted(5);
+        assertThat(index.similar(4, 10)).isEmpty();
+        assertThat(index.similar(5, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Фильм вытесняет худшего соседа из полного списка, только если он ближе")
+    void testEvictsWeakestNeighbor() {
+        // У фильма 1 уже два соседа: 2 (близость 0.87) и 3 (0.35). Первый лайк фильма 5 от поклонника фильма 1
+        // даёт близость 0.5 и вытесняет фильм 3, второй поднимает её до 0.71
+        index.likeAdded(5, 10);
+        assertThat(index.similar(1, 10)).containsExactly(2L, 5L);
+        index.likeAdded(5, 11);
+        assertThat(index.similar(1, 10)).containsExactly(2L, 5L);
+        // Фильм 4 с близостью 0.35 дальше обоих и в список не попадает
+        index.likeAdded(4, 12);
+        assertThat(index.similar(1, 10)).containsExactly(2L, 5L);
+        assertThat(index.similar(4, 10)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    @DisplayName("Лайк, пришедший во время полного пересчёта, не теряется")
+    void testRebuildReplaysConcurrentLikes() {
+        InMemoryFilmStorage racing = new InMemoryFilmStorage() {
+            @Override
+            public Map<Long, LongIdSet> getLikesByFilm() {
+                Map<Long, LongIdSet> snapshot = storage.getLikesByFilm();
+                // Лайк записан уже после того, как пересчёт прочитал таблицу
+                storage.addLike(4L, 10L);
+                racingIndex.likeAdded(4, 10);
+                return snapshot;
+            }
+        };
+        racingIndex = new FilmSimilarityIndex(racing, 2, 100, 2);
+        try {
+            racingIndex.rebuild();
+            assertThat(racingIndex.similar(4, 10)).containsExactly(2L, 1L);
+            assertThat(racingIndex.recommend(20, 10)).containsExactly(2L, 1L);
+        } finally {
+            racingIndex.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Рекомендации пользователю не содержат уже лайкнутых фильмов")
+    void testRecommend() {
+        assertThat(index.recommend(13, 10)).containsExactly(2L);
+        assertThat(index.recommend(14, 10)).containsExactly(1L);
+        assertThat(index.recommend(99, 10)).isEmpty();
+    }
+
+    private void like(long filmId, long... users) {
+        for (long user : users) {
+            storage.addLike(filmId, user);
+        }
+    }
+}
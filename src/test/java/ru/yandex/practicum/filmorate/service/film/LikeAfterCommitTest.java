@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Рейтинг популярности учитывает лайк, поставленный внутри внешней транзакции, только после её фиксации.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:like_after_commit;DB_CLOSE_DELAY=-1")
+class LikeAfterCommitTest {
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PopularityLeaderboard leaderboard;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Откаченный лайк не попадает в рейтинг")
+    void testRolledBackLikeIgnored() {
+        Film film = createFilm("rollback");
+        User user = createUser("rollback");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertThat(filmService.addLike(film.getId(), user.getId())).isTrue();
+            status.setRollbackOnly();
+        });
+
+        assertThat(leaderboard.likeCount(film.getId())).isZero();
+        assertThat(filmService.getFilmById(film.getId())).isNotNull();
+        // Лайк действительно откатился: повторная вставка проходит
+        assertThat(filmService.addLike(film.getId(), user.getId())).isTrue();
+        assertThat(leaderboard.likeCount(film.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Лайк и его снятие видны в рейтинге только после фиксации транзакции")
+    void testLikeAppliedAfterCommit() {
+        Film film = createFilm("commit");
+        User user = createUser("commit");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            filmService.addLike(film.getId(), user.getId());
+            assertThat(leaderboard.likeCount(film.getId())).isZero();
+        });
+        assertThat(leaderboard.likeCount(film.getId())).isEqualTo(1);
+
+        transaction.executeWithoutResult(status -> {
+            filmService.removeLike(film.getId(), user.getId());
+            assertThat(leaderboard.likeCount(film.getId())).isEqualTo(1);
+        });
+        assertThat(leaderboard.likeCount(film.getId())).isZero();
+    }
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("After commit");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        return filmService.create(film);
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userService.create(user);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, UserDbStorage.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikeWriteBufferTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    @TempDir
+    Path dir;
+
+    private Long filmId;
+    private Long userId;
+
+    @BeforeEach
+    void createFilmAndUser() {
+        Film film = new Film();
+        film.setName("Buffered");
+        film.setDescription("Фильм для отложенных лайков");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        filmId = filmStorage.create(film).getId();
+
+        User user = new User();
+        user.setEmail("buffer@example.com");
+        user.setLogin("buffer");
+        user.setName("Buffer");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        userId = userStorage.create(user).getId();
+    }
+
+    @Test
+    @DisplayName("Лайк виден буферу сразу, в БД и счётчик попадает только при сбросе")
+    void testFlushWritesLikes() {
+        LikeWriteBuffer buffer = newBuffer();
+
+        assertThat(buffer.apply(filmId, userId, true)).isTrue();
+        assertThat(buffer.apply(filmId, userId, true)).isFalse();
+        assertThat(buffer.size()).isEqualTo(1);
+        assertThat(filmStorage.hasLike(filmId, userId)).isFalse();
+
+        buffer.flush();
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.getFlushed()).isEqualTo(1);
+        assertThat(filmStorage.hasLike(filmId, userId)).isTrue();
+        assertThat(filmStorage.getLikeCounts()).containsEntry(filmId, 1L);
+        assertThat(filmStorage.reconcileLikeCounts()).isZero();
+        assertThat(dir.resolve("likes.log")).doesNotExist();
+
+        // Уже сброшенный лайк буфер берёт из БД
+        assertThat(buffer.apply(filmId, userId, true)).isFalse();
+        assertThat(buffer.apply(filmId, userId, false)).isTrue();
+        buffer.flush();
+        assertThat(filmStorage.hasLike(filmId, userId)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Лайк и его снятие до сброса сокращаются и не доходят до БД")
+    void testCoalescing() {
+        LikeWriteBuffer buffer = newBuffer();
+
+        assertThat(buffer.apply(filmId, userId, true)).isTrue();
+        assertThat(buffer.apply(filmId, userId, false)).isTrue();
+        assertThat(buffer.apply(filmId, userId, false)).isFalse();
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.getCoalesced()).isEqualTo(1);
+
+        assertThat(buffer.applyAll(List.of(
+                new LikeOperation(filmId, userId, LikeOperation.Type.ADD),
+                new LikeOperation(filmId, userId, LikeOperation.Type.ADD))))
+                .containsExactly(true, false);
+        buffer.flush();
+        assertThat(filmStorage.hasLike(filmId, userId)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Несброшенные лайки восстанавливаются из журнала при следующем запуске")
+    void testReplay() throws Exception {
+        LikeWriteBuffer crashed = newBuffer();
+        crashed.apply(filmId, userId, true);
+        crashed.apply(filmId, -1L, true);
+        assertThat(filmStorage.hasLike(filmId, userId)).isFalse();
+        // Оборванная падением последняя строка пропускается
+        Files.writeString(dir.resolve("likes.log"), "+ " + filmId, StandardOpenOption.APPEND);
+
+        LikeWriteBuffer restarted = newBuffer();
+        restarted.replay();
+        assertThat(filmStorage.hasLike(filmId, userId)).isTrue();
+        assertThat(filmStorage.reconcileLikeCounts()).isZero();
+        assertThat(dir.resolve("likes.log")).doesNotExist();
+
+        // Повторное проигрывание того же журнала ничего не меняет
+        Files.writeString(dir.resolve("likes.log"), "+ " + filmId + " " + userId + "\n");
+        restarted.replay();
+        assertThat(filmStorage.getLikeCounts()).containsEntry(filmId, 1L);
+    }
+
+    @Test
+    @DisplayName("Заполненная очередь сбрасывается в потоке записи")
+    void testFlushWhenFull() {
+        User other = new User();
+        other.setEmail("other@example.com");
+        other.setLogin("other");
+        other.setName("Other");
+        other.setBirthday(LocalDate.of(1990, 1, 1));
+        Long otherId = userStorage.create(other).getId();
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmStorage, userStorage, true, 1,
+                dir.resolve("likes.log").toString());
+
+        buffer.apply(filmId, userId, true);
+        buffer.apply(filmId, otherId, true);
+        assertThat(buffer.size()).isEqualTo(1);
+        assertThat(filmStorage.hasLike(filmId, userId)).isTrue();
+        assertThat(filmStorage.hasLike(filmId, otherId)).isFalse();
+    }
+
+    private LikeWriteBuffer newBuffer() {
+        return new LikeWriteBuffer(filmStorage, userStorage, true, 100, dir.resolve("likes.log").toString());
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityLeaderboardTest {
+    private InMemoryFilmStorage storage;
+    private PopularityLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        storage = new InMemoryFilmStorage();
+        // Фильмы 1-4: жанры {1}, {1, 2}, {2}, {1}; годы 2000, 2000, 2010, 2010
+        storage.create(film(2000, 1L));
+        storage.create(film(2000, 1L, 2L));
+        storage.create(film(2010, 2L));
+        storage.create(film(2010, 1L));
+        like(2, 3);
+        like(3, 2);
+        like(4, 1);
+        leaderboard = new PopularityLeaderboard(storage, Duration.ofHours(24));
+        leaderboard.reload();
+    }
+
+    @Test
+    @DisplayName("Топ фильтруется по жанру, году и по обоим сразу")
+    void testFilteredTop() {
+        assertThat(leaderboard.top(10, null, null, null)).containsExactly(2L, 3L, 4L, 1L);
+        assertThat(leaderboard.top(10, null, 1L, null)).containsExactly(2L, 4L, 1L);
+        assertThat(leaderboard.top(10, null, null, 2010)).containsExactly(3L, 4L);
+        assertThat(leaderboard.top(10, null, 1L, 2010)).containsExactly(4L);
+        assertThat(leaderboard.top(1, null, 2L, null)).containsExactly(2L);
+        assertThat(leaderboard.top(10, null, 6L, null)).isEmpty();
+        assertThat(leaderboard.top(10, null, 1L, 1999)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Лайки, создание, изменение жанров и года и удаление фильма сразу видны в отфильтрованном топе")
+    void testFilteredTopFollowsChanges() {
+        leaderboard.likeAdded(1, 1);
+        leaderboard.likeAdded(1, 2);
+        leaderboard.likeAdded(1, 3);
+        leaderboard.likeAdded(1, 4);
+        assertThat(leaderboard.top(10, null, 1L, 2000)).containsExactly(1L, 2L);
+
+        Film created = storage.create(film(2010, 2L));
+        leaderboard.filmCreated(created);
+        assertThat(leaderboard.top(10, null, 2L, 2010)).containsExactly(3L, created.getId());
+
+        // Фильм 1 переходит в жанр 2 и 2010 год вместе со своими четырьмя лайками
+        Film moved = film(2010, 2L);
+        moved.setId(1L);
+        leaderboard.filmUpdated(moved);
+        assertThat(leaderboard.top(10, null, 1L, null)).containsExactly(2L, 4L);
+        assertThat(leaderboard.top(10, null, 2L, 2010)).containsExactly(1L, 3L, created.getId());
+        leaderboard.likeRemoved(1, 1);
+        leaderboard.likeRemoved(1, 2);
+        assertThat(leaderboard.top(10, null, 2L, null)).containsExactly(2L, 1L, 3L, created.getId());
+
+        leaderboard.filmDeleted(2);
+        assertThat(leaderboard.top(10, null, 2L, null)).containsExactly(1L, 3L, created.getId());
+    }
+
+    @Test
+    @DisplayName("Фильтры применяются и к окнам популярности")
+    void testFilteredWindow() {
+        leaderboard.likeAdded(3, 1);
+        leaderboard.likeAdded(4, 1);
+        leaderboard.likeAdded(4, 2);
+
+        assertThat(leaderboard.top(10, PopularityWindow.DAY, null, null)).containsExactly(4L, 3L);
+        assertThat(leaderboard.top(10, PopularityWindow.DAY, 2L, null)).containsExactly(3L);
+        assertThat(leaderboard.top(10, PopularityWindow.WEEK, 1L, 2010)).containsExactly(4L);
+        assertThat(leaderboard.top(10, PopularityWindow.MONTH, null, 2000)).isEmpty();
+    }
+
+    private void like(long filmId, int users) {
+        for (long userId = 1; userId <= users; userId++) {
+            storage.addLike(filmId, userId);
+        }
+    }
+
+    private static Film film(int year, Long... genreIds) {
+        Film film = new Film();
+        film.setName("Film " + year);
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Set<Genre> genres = new HashSet<>();
+        for (Long genreId : genreIds) {
+            Genre genre = new Genre();
+            genre.setId(genreId);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+        return film;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityRankingTest {
+
+    @Test
+    @DisplayName("Топ упорядочен по очкам, при равенстве — по id")
+    void testTopOrder() {
+        PopularityRanking ranking = new PopularityRanking();
+        ranking.put(1, 0);
+        ranking.put(2, 5);
+        ranking.put(3, 5);
+        ranking.put(4, 1);
+
+        assertThat(ranking.top(3)).containsExactly(2L, 3L, 4L);
+
+        ranking.adjust(4, 10);
+        ranking.adjust(2, -1);
+        ranking.remove(3);
+        ranking.adjust(99, 1);
+
+        assertThat(ranking.top(10)).containsExactly(4L, 2L, 1L);
+        assertThat(ranking.score(4)).isEqualTo(11);
+        assertThat(ranking.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Параллельные лайки горячего и остальных фильмов не теряются")
+    void testConcurrentAdjustments() throws Exception {
+        PopularityRanking ranking = new PopularityRanking();
+        int films = 50;
+        for (long id = 1; id <= films; id++) {
+            ranking.put(id, 0);
+        }
+
+        int threads = 8;
+        int iterations = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    ranking.adjust(1, 1);
+                    ranking.adjust(2 + (thread + i) % (films - 1), 1);
+                    ranking.top(5);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(ranking.score(1)).isEqualTo((long) threads * iterations);
+        long total = 0;
+        for (long id = 2; id <= films; id++) {
+            total += ranking.score(id);
+        }
+        assertThat(total).isEqualTo((long) threads * iterations);
+        assertThat(ranking.top(films)).hasSize(films).startsWith(1L).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrendingCountersTest {
+    // Середина часа, чтобы сдвиг на несколько минут не менял час
+    private final AtomicLong clock = new AtomicLong(Instant.parse("2024-03-01T12:30:00Z").toEpochMilli());
+    private final TrendingCounters counters = new TrendingCounters(Duration.ofHours(24), clock::get);
+
+    @Test
+    @DisplayName("Лайк уходит из окна 24h через сутки, из 7d — через неделю, из 30d — через месяц")
+    void testLikesLeaveWindows() {
+        counters.likeAdded(1, 1);
+        counters.likeAdded(1, 2);
+        advance(Duration.ofHours(23));
+        counters.likeAdded(2, 1);
+
+        assertThat(counters.top(PopularityWindow.DAY, 10)).containsExactly(1L, 2L);
+
+        advance(Duration.ofHours(1));
+        assertThat(counters.top(PopularityWindow.DAY, 10)).containsExactly(2L);
+        assertThat(counters.count(PopularityWindow.WEEK, 1)).isEqualTo(2);
+
+        advance(Duration.ofDays(6));
+        assertThat(counters.top(PopularityWindow.DAY, 10)).isEmpty();
+        assertThat(counters.top(PopularityWindow.WEEK, 10)).containsExactly(2L);
+        assertThat(counters.top(PopularityWindow.MONTH, 10)).containsExactly(1L, 2L);
+
+        advance(Duration.ofDays(23));
+        assertThat(counters.top(PopularityWindow.MONTH, 10)).containsExactly(2L);
+        assertThat(counters.recentLikes()).isEqualTo(1);
+
+        // Пропуск больше самого длинного окна очищает всё за один сдвиг
+        advance(Duration.ofDays(365));
+        assertThat(counters.top(PopularityWindow.MONTH, 10)).isEmpty();
+        assertThat(counters.recentLikes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Отмена лайка вычитается из окон, в которые он входит; отмена неизвестного лайка ничего не меняет")
+    void testLikeRemoved() {
+        counters.likeAdded(1, 1);
+        counters.likeAdded(2, 1);
+        counters.likeAdded(2, 2);
+        advance(Duration.ofDays(2));
+        counters.likeRemoved(2, 1);
+        counters.likeRemoved(2, 99);
+
+        assertThat(counters.count(PopularityWindow.WEEK, 2)).isEqualTo(1);
+        assertThat(counters.top(PopularityWindow.WEEK, 10)).containsExactly(1L, 2L);
+
+        counters.likeRemoved(2, 2);
+        assertThat(counters.top(PopularityWindow.WEEK, 10)).containsExactly(1L);
+        assertThat(counters.hot(10)).containsExactly(1L);
+
+        counters.filmDeleted(1);
+        assertThat(counters.top(PopularityWindow.MONTH, 10)).isEmpty();
+        assertThat(counters.recentLikes()).isZero();
+    }
+
+    @Test
+    @DisplayName("Горячий счёт убывает вдвое за период полураспада, свежие лайки обгоняют старые")
+    void testHotDecay() {
+        counters.likeAdded(1, 1);
+        counters.likeAdded(1, 2);
+        counters.likeAdded(1, 3);
+        assertThat(counters.hotScore(1)).isEqualTo(3 * TrendingCounters.HOT_SCALE);
+
+        advance(Duration.ofHours(24));
+        assertThat(counters.hotScore(1)).isEqualTo(3 * TrendingCounters.HOT_SCALE / 2);
+
+        // Три лайка двухдневной давности весят меньше одного свежего
+        advance(Duration.ofHours(24));
+        counters.likeAdded(2, 1);
+        assertThat(counters.hot(10)).containsExactly(2L, 1L);
+        assertThat(counters.top(PopularityWindow.MONTH, 10)).containsExactly(1L, 2L);
+
+        // Отмена старого лайка вычитает его затухший вклад
+        counters.likeRemoved(1, 1);
+        assertThat(counters.hotScore(1)).isEqualTo(2 * TrendingCounters.HOT_SCALE / 4);
+    }
+
+    @Test
+    @DisplayName("Загрузка учитывает время лайков, а лайки из будущего относит к текущему часу")
+    void testReload() {
+        Instant now = Instant.ofEpochMilli(clock.get());
+        List<FilmLike> likes = List.of(
+                new FilmLike(1, 1, now.minus(Duration.ofDays(3))),
+                new FilmLike(1, 2, now.minus(Duration.ofDays(3))),
+                new FilmLike(2, 1, now.plus(Duration.ofMinutes(45))),
+                new FilmLike(3, 1, now.minus(Duration.ofDays(31))));
+        counters.likeAdded(9, 9);
+
+        counters.reload((since, action) -> likes.stream()
+                .filter(like -> !like.createdAt().isBefore(since))
+                .forEach(action));
+
+        assertThat(counters.top(PopularityWindow.DAY, 10)).containsExactly(2L);
+        assertThat(counters.top(PopularityWindow.WEEK, 10)).containsExactly(1L, 2L);
+        assertThat(counters.hotScore(2)).isEqualTo(TrendingCounters.HOT_SCALE);
+        assertThat(counters.hotScore(1)).isEqualTo(2 * TrendingCounters.HOT_SCALE / 8);
+        assertThat(counters.recentLikes()).isEqualTo(3);
+
+        // Лайк из будущего отменяется так же, как поставленный сейчас
+        counters.likeRemoved(2, 1);
+        assertThat(counters.top(PopularityWindow.DAY, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Окно задаётся как 24h, 7d или 30d")
+    void testWindowNames() {
+        assertThat(PopularityWindow.of("24h")).isEqualTo(PopularityWindow.DAY);
+        assertThat(PopularityWindow.of("7d")).isEqualTo(PopularityWindow.WEEK);
+        assertThat(PopularityWindow.of("30d")).isEqualTo(PopularityWindow.MONTH);
+        assertThatThrownBy(() -> PopularityWindow.of("1y")).isInstanceOf(ValidationException.class);
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toMillis());
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dump.DumpDbStorage;
+import ru.yandex.practicum.filmorate.storage.dump.DumpTable;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Загрузка меняет настройки таблиц и фиксирует данные сама, поэтому тест идёт вне тестовой транзакции
+ * и в собственном контексте с отдельной базой.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DumpDbStorage.class, FilmDbStorage.class, UserDbStorage.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class DumpDbStorageTest {
+
+    private final DumpDbStorage dumpStorage;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Выгруженные таблицы загружаются обратно без изменений, неудачная загрузка таблицу не меняет")
+    void testExportImportRoundTrip() {
+        User first = createUser("dump1");
+        User second = createUser("dump2");
+        Film film = createFilm();
+        filmStorage.addLike(film.getId(), first.getId());
+        userStorage.addFriend(first.getId(), second.getId());
+
+        Map<DumpTable, List<Object[]>> exported = new EnumMap<>(DumpTable.class);
+        for (DumpTable table : DumpTable.values()) {
+            exported.put(table, exportRows(table));
+        }
+        assertThat(exported.get(DumpTable.LIKES)).hasSize(1);
+        assertThat(exported.get(DumpTable.FILM_GENRES)).hasSize(2);
+
+        // Ссылка на несуществующий фильм отвергается при переносе, таблица остаётся пустой
+        jdbcTemplate.update("DELETE FROM likes");
+        Object[] orphan = {999L, first.getId(), null};
+        assertThatThrownBy(() -> dumpStorage.importRows(DumpTable.LIKES, List.<Object[]>of(orphan).iterator()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(exportRows(DumpTable.LIKES)).isEmpty();
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (999, ?)",
+                first.getId())).isInstanceOf(DataIntegrityViolationException.class);
+
+        // Справочник сливается целиком или никак: строка без названия отменяет и уже прочитанные строки
+        Object[] renamed = {1L, "Переименован"};
+        Object[] unnamed = {2L, null};
+        assertThatThrownBy(() -> dumpStorage.importRows(DumpTable.GENRES,
+                List.of(renamed, unnamed).iterator()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(exportRows(DumpTable.GENRES)).containsExactlyElementsOf(exported.get(DumpTable.GENRES));
+
+        jdbcTemplate.update("DELETE FROM friendships");
+        jdbcTemplate.update("DELETE FROM film_genres");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+        // Дочерние таблицы раньше родительских: внешние ключи проверяются при переносе каждой таблицы,
+        // поэтому порядок перечисления DumpTable обязателен
+        assertThatThrownBy(() -> dumpStorage.importRows(DumpTable.FILM_GENRES,
+                exported.get(DumpTable.FILM_GENRES).iterator()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        for (DumpTable table : DumpTable.values()) {
+            long rows = dumpStorage.importRows(table, exported.get(table).iterator());
+            assertThat(rows).isEqualTo(exported.get(table).size());
+        }
+        for (DumpTable table : DumpTable.values()) {
+            assertThat(exportRows(table)).as(table.table()).containsExactlyElementsOf(exported.get(table));
+        }
+
+        assertThatThrownBy(() -> dumpStorage.importRows(DumpTable.USERS, exported.get(DumpTable.USERS).iterator()))
+                .isInstanceOf(ValidationException.class);
+        // Счётчик id сдвинут за загруженные id
+        assertThat(createUser("dump3").getId()).isGreaterThan(second.getId());
+    }
+
+    private List<Object[]> exportRows(DumpTable table) {
+        List<Object[]> rows = new ArrayList<>();
+        dumpStorage.export(table, rows::add);
+        return rows;
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.create(user);
+    }
+
+    private Film createFilm() {
+        Film film = new Film();
+        film.setName("Dump");
+        film.setDescription("Round trip");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(2L);
+        film.setMpa(mpa);
+        Genre comedy = new Genre();
+        comedy.setId(1L);
+        Genre drama = new Genre();
+        drama.setId(2L);
+        film.setGenres(Set.of(comedy, drama));
+        return filmStorage.create(film);
+    }
+}
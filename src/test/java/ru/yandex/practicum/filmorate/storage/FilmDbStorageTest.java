@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
@@ -10,16 +11,31 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.PreconditionFailedException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
@@ -32,15 +48,30 @@ class FilmDbStorageTest {
 
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
+    private final QueryCountingJdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
 
     @TestConfiguration
     static class AdditionalConfig {
+        @Bean
+        public QueryCountingJdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new QueryCountingJdbcTemplate(dataSource);
+        }
+
         @Bean
         public UserDbStorage userDbStorage(JdbcTemplate jdbcTemplate) {
             return new UserDbStorage(jdbcTemplate);
         }
     }
 
+    /**
+     * Тесты поискового индекса фиксируют свои записи: индекс меняется только после фиксации.
+     */
+    @AfterEach
+    void deleteCommittedFilms() {
+        filmStorage.findAll().forEach(film -> filmStorage.delete(film.getId()));
+    }
+
     @Test
     @DisplayName("Создаём фильм, а затем находим его по ID")
     void testCreateAndFindById() {
@@ -50,13 +81,13 @@ class FilmDbStorageTest {
         film.setReleaseDate(LocalDate.of(2000, 1, 1));
         film.setDuration(120);
 
-        // Устанавливаем MPA (предположим, что в data.sql есть запись с id=1, name='G')
+        // Устанавливаем MPA (предположим, что в миграции V4__reference_data.sql есть запись с id=1, name='G')
         MpaRating mpa = new MpaRating();
         mpa.setId(1L);
         mpa.setName("G");
         film.setMpa(mpa);
 
-        // Устанавливаем жанры (если в data.sql есть записи, например: id=1 - "Комедия", id=2 - "Драма")
+        // Устанавливаем жанры (если в миграции V4__reference_data.sql есть записи, например: id=1 - "Комедия", id=2 - "Драма")
         Genre comedy = new Genre();
         comedy.setId(1L);
         comedy.setName("Комедия");
@@ -77,7 +108,7 @@ class FilmDbStorageTest {
     @Test
     @DisplayName("Проверяем метод findAll()")
     void testFindAll() {
-        // Изначально база должна быть пуста (если data.sql не создаёт фильмов)
+        // Изначально база должна быть пуста (миграции не создают фильмов)
         Collection<Film> emptyList = filmStorage.findAll();
         assertThat(emptyList).isEmpty();
 
@@ -196,4 +227,331 @@ class FilmDbStorageTest {
         // Удаляем лайк
         filmStorage.removeLike(film.getId(), user.getId());
     }
+
+    @Test
+    @DisplayName("Жанры загружаются пакетно: число запросов не растёт вместе с выборкой")
+    void testGenresLoadedWithConstantQueryCount() {
+        createFilmsWithGenres(3);
+        jdbcTemplate.reset();
+        Collection<Film> small = filmStorage.findAll();
+        int findAllQueries = jdbcTemplate.getStatementCount();
+        jdbcTemplate.reset();
+        filmStorage.getPopularFilms(100);
+        int popularQueries = jdbcTemplate.getStatementCount();
+        assertThat(findAllQueries).isEqualTo(2);
+        assertThat(popularQueries).isEqualTo(2);
+
+        createFilmsWithGenres(30);
+        jdbcTemplate.reset();
+        Collection<Film> large = filmStorage.findAll();
+        assertThat(jdbcTemplate.getStatementCount()).isEqualTo(findAllQueries);
+        jdbcTemplate.reset();
+        Collection<Film> popular = filmStorage.getPopularFilms(100);
+        assertThat(jdbcTemplate.getStatementCount()).isEqualTo(popularQueries);
+
+        assertThat(small).hasSize(3);
+        assertThat(large).hasSize(33);
+        assertThat(popular).hasSize(33);
+        assertThat(large).allSatisfy(film -> assertThat(film.getGenres())
+                .extracting(Genre::getId)
+                .containsExactlyInAnyOrder(1L, 2L));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Поисковый индекс следует за созданием, обновлением и удалением фильма")
+    void testSearchFollowsWrites() {
+        Film film = new Film();
+        film.setName("Searchable Title");
+        film.setDescription("Original description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Film created = filmStorage.create(film);
+
+        assertThat(filmStorage.search("searcha", 10)).extracting(Film::getId).containsExactly(created.getId());
+        assertThat(filmStorage.search("original", 10)).extracting(Film::getId).containsExactly(created.getId());
+
+        created.setName("Renamed");
+        created.setDescription("Updated text");
+        filmStorage.update(created);
+        assertThat(filmStorage.search("searchable", 10)).isEmpty();
+        assertThat(filmStorage.search("updated", 10)).extracting(Film::getId).containsExactly(created.getId());
+
+        // Перестроенный с нуля индекс совпадает с инкрементальным
+        filmStorage.reloadSearchIndex();
+        assertThat(filmStorage.search("renam", 10)).extracting(Film::getId).containsExactly(created.getId());
+
+        filmStorage.delete(created.getId());
+        assertThat(filmStorage.search("renamed", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Версия фильма меняется при обновлении, но не при лайке")
+    void testVersionChangesOnUpdate() {
+        Film film = new Film();
+        film.setName("Versioned");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Film created = filmStorage.create(film);
+        User user = new User();
+        user.setEmail("version@example.com");
+        user.setLogin("version");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        userStorage.create(user);
+
+        EntityVersion initial = filmStorage.findVersion(created.getId()).orElseThrow();
+        filmStorage.addLike(created.getId(), user.getId());
+        assertThat(filmStorage.findVersion(created.getId())).contains(initial);
+
+        created.setDescription("Changed");
+        filmStorage.update(created);
+        assertThat(filmStorage.findVersion(created.getId()).orElseThrow().eTag()).isNotEqualTo(initial.eTag());
+
+        filmStorage.delete(created.getId());
+        assertThat(filmStorage.findVersion(created.getId())).isEmpty();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Обновление пишет только изменившиеся жанры и не перечитывает фильм")
+    void testUpdateWritesGenreDiff() {
+        createFilmsWithGenres(1);
+        Film film = filmStorage.findAll().iterator().next();
+        Genre thriller = new Genre();
+        thriller.setId(4L);
+
+        jdbcTemplate.reset();
+        film.setName("Same genres");
+        Film updated = filmStorage.update(film);
+        // Обновление строки со старым текстом для индекса + чтение текущих жанров
+        assertThat(jdbcTemplate.getStatementCount()).isEqualTo(2);
+        assertThat(updated).isSameAs(film);
+
+        Genre comedy = film.getGenres().stream().filter(g -> g.getId() == 1L).findFirst().orElseThrow();
+        film.setGenres(Set.of(comedy, thriller));
+        jdbcTemplate.reset();
+        filmStorage.update(film);
+        // Плюс один батч удаления и один батч вставки
+        assertThat(jdbcTemplate.getStatementCount()).isEqualTo(4);
+        assertThat(filmStorage.findById(film.getId()).getGenres())
+                .extracting(Genre::getId)
+                .containsExactlyInAnyOrder(1L, 4L);
+        assertThat(filmStorage.search("same", 10)).extracting(Film::getId).containsExactly(film.getId());
+    }
+
+    @Test
+    @DisplayName("Обновление с ожидаемой версией отклоняется, если фильм уже изменён")
+    void testUpdateWithExpectedVersion() {
+        createFilmsWithGenres(1);
+        Film film = filmStorage.findAll().iterator().next();
+        long version = EntityVersion.parseVersion(filmStorage.findVersion(film.getId()).orElseThrow().eTag())
+                .orElseThrow();
+
+        film.setName("First writer");
+        EntityVersion updated = filmStorage.update(film, version).version();
+        // Версия из обновления совпадает с прочитанной заново и годится для следующего If-Match
+        assertThat(filmStorage.findVersion(film.getId())).contains(updated);
+        assertThat(EntityVersion.parseVersion(updated.eTag())).hasValue(version + 1);
+
+        film.setName("Second writer");
+        assertThatThrownBy(() -> filmStorage.update(film, version))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThat(filmStorage.findById(film.getId()).getName()).isEqualTo("First writer");
+        assertThat(filmStorage.search("second", 10)).isEmpty();
+
+        filmStorage.update(film, version + 1);
+        assertThat(filmStorage.findById(film.getId()).getName()).isEqualTo("Second writer");
+
+        film.setId(-1L);
+        assertThatThrownBy(() -> filmStorage.update(film, version))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Поисковый индекс меняется только после фиксации транзакции и не видит откаченных изменений")
+    void testSearchFollowsCommit() {
+        createFilmsWithGenres(1);
+        Film film = filmStorage.findAll().iterator().next();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            film.setName("Rolled back");
+            filmStorage.update(film);
+            assertThat(filmStorage.search("rolled", 10)).isEmpty();
+            status.setRollbackOnly();
+        });
+        assertThat(filmStorage.search("rolled", 10)).isEmpty();
+        assertThat(filmStorage.search("film 0", 10)).extracting(Film::getId).containsExactly(film.getId());
+
+        transaction.executeWithoutResult(status -> {
+            film.setName("Committed");
+            filmStorage.update(film);
+            assertThat(filmStorage.search("committed", 10)).isEmpty();
+        });
+        assertThat(filmStorage.search("committed", 10)).extracting(Film::getId).containsExactly(film.getId());
+        assertThat(filmStorage.search("film 0", 10)).isEmpty();
+    }
+
+    private void createFilmsWithGenres(int count) {
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Batch film");
+            film.setReleaseDate(LocalDate.of(2001, 1, 1));
+            film.setDuration(90);
+
+            MpaRating mpa = new MpaRating();
+            mpa.setId(1L);
+            film.setMpa(mpa);
+
+            Genre comedy = new Genre();
+            comedy.setId(1L);
+            Genre drama = new Genre();
+            drama.setId(2L);
+            film.setGenres(Set.of(comedy, drama));
+
+            filmStorage.create(film);
+        }
+    }
+
+    @Test
+    @DisplayName("Постраничная выдача по id и потоковое чтение всех фильмов")
+    void testFindPageAndStreamAll() {
+        createFilmsWithGenres(5);
+        List<Long> ids = filmStorage.findAll().stream().map(Film::getId).sorted().toList();
+
+        List<Film> firstPage = filmStorage.findPage(0, 2);
+        assertThat(firstPage).extracting(Film::getId).containsExactly(ids.get(0), ids.get(1));
+        List<Film> lastPage = filmStorage.findPage(ids.get(3), 2);
+        assertThat(lastPage).extracting(Film::getId).containsExactly(ids.get(4));
+        assertThat(lastPage.get(0).getGenres()).hasSize(2);
+        assertThat(filmStorage.findPage(ids.get(4), 2)).isEmpty();
+
+        List<Film> streamed = new ArrayList<>();
+        filmStorage.streamAll(streamed::add);
+        assertThat(streamed).extracting(Film::getId).containsExactlyElementsOf(ids);
+        assertThat(streamed).allSatisfy(film -> assertThat(film.getGenres()).hasSize(2));
+    }
+
+    @Test
+    @DisplayName("Счётчик лайков обновляется вместе с лайком и восстанавливается сверкой")
+    void testLikeCountMaintainedAndReconciled() {
+        User user = new User();
+        user.setEmail("counter@example.com");
+        user.setLogin("counter");
+        user.setName("Counter");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user = userStorage.create(user);
+
+        createFilmsWithGenres(2);
+        List<Long> ids = filmStorage.findAll().stream().map(Film::getId).sorted().toList();
+        Long first = ids.get(0);
+        Long second = ids.get(1);
+
+        filmStorage.addLike(second, user.getId());
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId).containsExactly(second, first);
+        assertThat(filmStorage.reconcileLikeCounts()).isZero();
+
+        // Счётчик разошёлся с таблицей likes — сверка возвращает правильный порядок
+        jdbcTemplate.update("UPDATE films SET like_count = 5 WHERE id = ?", first);
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId).containsExactly(first, second);
+        assertThat(filmStorage.reconcileLikeCounts()).isEqualTo(1);
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId).containsExactly(second, first);
+
+        assertThat(filmStorage.removeLike(second, user.getId())).isTrue();
+        assertThat(filmStorage.removeLike(second, user.getId())).isFalse();
+        assertThat(filmStorage.reconcileLikeCounts()).isZero();
+    }
+
+    @Test
+    @DisplayName("Проверка существования фильмов без загрузки")
+    void testExistsById() {
+        createFilmsWithGenres(2);
+        List<Long> ids = filmStorage.findAll().stream().map(Film::getId).toList();
+
+        jdbcTemplate.reset();
+        assertThat(filmStorage.existsById(ids.get(0))).isTrue();
+        assertThat(filmStorage.existsById(-1L)).isFalse();
+        assertThat(jdbcTemplate.getStatementCount()).isEqualTo(2);
+
+        assertThat(filmStorage.existsAll(ids)).isTrue();
+        assertThat(filmStorage.existsAll(List.of(ids.get(0), ids.get(0)))).isTrue();
+        assertThat(filmStorage.existsAll(List.of(ids.get(0), -1L))).isFalse();
+        assertThat(filmStorage.existsAll(List.of())).isTrue();
+    }
+
+    @Test
+    @DisplayName("Пакет лайков применяется по порядку, пишется батчами и обновляет счётчики")
+    void testApplyLikes() {
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("batch" + i + "@example.com");
+            user.setLogin("batch" + i);
+            user.setName("Batch " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(userStorage.create(user).getId());
+        }
+        createFilmsWithGenres(2);
+        List<Long> films = filmStorage.findAll().stream().map(Film::getId).sorted().toList();
+        filmStorage.addLike(films.get(0), users.get(0));
+
+        jdbcTemplate.reset();
+        List<Boolean> changed = filmStorage.applyLikes(List.of(
+                new LikeOperation(films.get(0), users.get(0), LikeOperation.Type.ADD),
+                new LikeOperation(films.get(0), users.get(1), LikeOperation.Type.ADD),
+                new LikeOperation(films.get(1), users.get(1), LikeOperation.Type.ADD),
+                new LikeOperation(films.get(1), users.get(2), LikeOperation.Type.ADD),
+                new LikeOperation(films.get(1), users.get(2), LikeOperation.Type.REMOVE),
+                new LikeOperation(films.get(0), users.get(0), LikeOperation.Type.REMOVE),
+                new LikeOperation(films.get(0), users.get(2), LikeOperation.Type.REMOVE)));
+        // Чтение текущих лайков + батчи вставки, удаления и обновления счётчиков
+        assertThat(jdbcTemplate.getStatementCount()).isEqualTo(4);
+
+        assertThat(changed).containsExactly(false, true, true, true, true, true, false);
+        assertThat(filmStorage.getLikeCounts())
+                .containsEntry(films.get(0), 1L)
+                .containsEntry(films.get(1), 1L);
+        assertThat(filmStorage.reconcileLikeCounts()).isZero();
+    }
+
+    @Test
+    @DisplayName("Лайки с временем отдаются начиная с заданного момента, лайки без времени — нет")
+    void testStreamLikesSince() {
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("recent" + i + "@example.com");
+            user.setLogin("recent" + i);
+            user.setName("Recent " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(userStorage.create(user).getId());
+        }
+        createFilmsWithGenres(1);
+        Long film = filmStorage.findAll().iterator().next().getId();
+        Instant now = Instant.now();
+        filmStorage.addLike(film, users.get(0));
+        filmStorage.addLike(film, users.get(1));
+        filmStorage.addLike(film, users.get(2));
+        // Лайк месячной давности и лайк, поставленный до появления столбца created_at
+        jdbcTemplate.update("UPDATE likes SET created_at = ? WHERE film_id = ? AND user_id = ?",
+                Timestamp.from(now.minus(Duration.ofDays(40))), film, users.get(1));
+        jdbcTemplate.update("UPDATE likes SET created_at = NULL WHERE film_id = ? AND user_id = ?",
+                film, users.get(2));
+
+        List<FilmLike> likes = new ArrayList<>();
+        filmStorage.streamLikesSince(now.minus(Duration.ofDays(30)), likes::add);
+
+        assertThat(likes).hasSize(1);
+        assertThat(likes.get(0).filmId()).isEqualTo(film);
+        assertThat(likes.get(0).userId()).isEqualTo(users.get(0));
+        assertThat(likes.get(0).createdAt()).isCloseTo(now, within(1, ChronoUnit.MINUTES));
+    }
 }
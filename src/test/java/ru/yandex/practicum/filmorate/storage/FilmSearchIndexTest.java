@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FilmSearchIndex();
+        index.add(1, "Interstellar", "Space travel through a wormhole");
+        index.add(2, "The Martian", "An astronaut is stranded in space");
+        index.add(3, "Space Jam", "Basketball with cartoons");
+        index.add(4, "Ёлки", "Новогодняя комедия");
+    }
+
+    @Test
+    @DisplayName("Совпадения в названии идут раньше совпадений в описании")
+    void testNameMatchesFirst() {
+        assertThat(index.search("space", 10)).containsExactly(3L, 1L, 2L);
+        assertThat(index.search("SPACE", 2)).containsExactly(3L, 1L);
+        assertThat(index.search("wormhole", 10)).containsExactly(1L);
+        assertThat(index.search("unknown", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Последнее слово запроса ищется как префикс названия, остальные — целиком")
+    void testPrefixSearch() {
+        assertThat(index.search("inter", 10)).containsExactly(1L);
+        assertThat(index.search("the mar", 10)).containsExactly(2L);
+        assertThat(index.search("mar the", 10)).isEmpty();
+        assertThat(index.search("елк", 10)).containsExactly(4L);
+        assertThat(index.search("новогодняя", 10)).containsExactly(4L);
+    }
+
+    @Test
+    @DisplayName("Удаление и переиндексация убирают старые слова")
+    void testRemove() {
+        index.remove(1, "Interstellar", "Space travel through a wormhole");
+        index.add(1, "Tenet", "Time inversion");
+
+        assertThat(index.search("inter", 10)).isEmpty();
+        assertThat(index.search("space", 10)).containsExactly(3L, 2L);
+        assertThat(index.search("ten", 10)).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("Id больше Integer.MAX_VALUE индексируются и упорядочиваются как long")
+    void testLongIds() {
+        long big = Integer.MAX_VALUE + 10L;
+        index.add(big, "Space Odyssey", "Monolith");
+        index.add(Integer.MAX_VALUE + 1L, "Odyssey", "Space voyage");
+
+        assertThat(index.search("space", 10)).containsExactly(3L, big, 1L, 2L, Integer.MAX_VALUE + 1L);
+        assertThat(index.search("odys", 10)).containsExactly(Integer.MAX_VALUE + 1L, big);
+
+        index.remove(big, "Space Odyssey", "Monolith");
+        assertThat(index.search("odyssey", 10)).containsExactly(Integer.MAX_VALUE + 1L);
+        assertThat(index.search("monolith", 10)).isEmpty();
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphIndexTest {
+
+    @Test
+    @DisplayName("Рекомендации упорядочены по числу общих друзей и не содержат самого пользователя и его друзей")
+    void testSuggestRanksByMutualFriends() {
+        FriendGraphIndex graph = new FriendGraphIndex();
+        graph.add(1, 2);
+        graph.add(1, 3);
+        graph.add(1, 4);
+        // 5 — друг у троих друзей, 6 — у двоих, 7 — у одного; 4 уже в друзьях, 1 — сам пользователь
+        for (long friend : new long[]{2, 3, 4}) {
+            graph.add(friend, 5);
+            graph.add(friend, 1);
+        }
+        graph.add(2, 6);
+        graph.add(3, 6);
+        graph.add(2, 7);
+        graph.add(2, 4);
+
+        assertThat(graph.suggest(1, 10, 100)).containsExactly(5, 6, 7);
+        assertThat(graph.suggest(1, 2, 100)).containsExactly(5, 6);
+        assertThat(graph.suggest(5, 10, 100)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("После ранней остановки порядок топа учитывает непросмотренных друзей")
+    void testSuggestOrderAfterEarlyStop() {
+        FriendGraphIndex graph = new FriendGraphIndex();
+        // 20 друзей обходятся по возрастанию id, первая проверка остановки — после 16-го.
+        // К этому моменту у 100 счётчик 16, у 101 — 13, у 102 — 1: состав топа-2 уже не изменится,
+        // но четыре оставшихся друга знают только 101 и выводят его на первое место
+        for (long friend = 2; friend <= 21; friend++) {
+            graph.add(1, friend);
+            if (friend <= 17) {
+                graph.add(friend, 100);
+            }
+            if (friend <= 14 || friend >= 18) {
+                graph.add(friend, 101);
+            }
+        }
+        graph.add(2, 102);
+
+        assertThat(graph.suggest(1, 2, 100)).containsExactly(101, 100);
+    }
+
+    @Test
+    @DisplayName("Ранняя остановка не меняет ни состав, ни порядок топа по сравнению с полным перебором")
+    void testSuggestMatchesBruteForce() {
+        Random random = new Random(7);
+        FriendGraphIndex graph = new FriendGraphIndex();
+        Map<Long, Set<Long>> edges = new HashMap<>();
+        int users = 300;
+        for (long user = 1; user <= users; user++) {
+            for (int i = 0; i < 40; i++) {
+                double r = random.nextDouble();
+                long friend = 1 + (long) (users * r * r);
+                if (friend != user) {
+                    graph.add(user, friend);
+                    edges.computeIfAbsent(user, k -> new HashSet<>()).add(friend);
+                }
+            }
+        }
+
+        for (long user = 1; user <= 20; user++) {
+            Set<Long> direct = edges.getOrDefault(user, Set.of());
+            Map<Long, Integer> mutual = new HashMap<>();
+            for (Long friend : direct) {
+                for (Long candidate : edges.getOrDefault(friend, Set.of())) {
+                    if (candidate != user && !direct.contains(candidate)) {
+                        mutual.merge(candidate, 1, Integer::sum);
+                    }
+                }
+            }
+            List<Long> expected = mutual.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .toList();
+
+            long[] suggested = graph.suggest(user, 5, 1000);
+            assertThat(Arrays.stream(suggested).boxed().toList())
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Проверка вхождения в выборку совпадает с самой выборкой")
+    void testSampleContains() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200; round++) {
+            long[] values = random.longs(1 + random.nextInt(300), 1, 1000).toArray();
+            LongIdSet set = LongIdSet.of(values);
+            int count = 1 + random.nextInt(set.size());
+            Set<Long> sample = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                sample.add(set.sample(i, count));
+            }
+            for (long id = 0; id <= 1000; id++) {
+                assertThat(set.sampleContains(id, count)).isEqualTo(sample.contains(id));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Счётчик на примитивах растёт без потерь и отдаёт топ по убыванию")
+    void testLongIntCounter() {
+        LongIntCounter counter = new LongIntCounter(2);
+        for (long key = 1; key <= 1000; key++) {
+            for (int i = 0; i < key % 7; i++) {
+                counter.increment(key);
+            }
+        }
+        assertThat(counter.size()).isEqualTo(1000 - 1000 / 7);
+        assertThat(counter.get(6)).isEqualTo(6);
+        assertThat(counter.get(7)).isZero();
+        assertThat(counter.top(3)).containsExactly(6, 13, 20);
+        assertThat(counter.countAtRank(0)).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Изменения во время перезагрузки повторяются поверх загруженного графа")
+    void testReloadReplaysConcurrentChanges() {
+        FriendGraphIndex graph = new FriendGraphIndex();
+        graph.add(1, 2);
+        graph.add(3, 4);
+        graph.reload(() -> {
+            Map<Long, LongIdSet> snapshot = Map.of(1L, LongIdSet.of(2), 3L, LongIdSet.of(4), 5L, LongIdSet.of(6));
+            // Снимок читался вперемешку с изменениями: в нём ещё есть 3 -> 4, нет 1 -> 7, а 5 -> 6 уже есть
+            graph.add(1, 7);
+            graph.remove(3, 4);
+            graph.add(5, 6);
+            return snapshot;
+        });
+
+        assertThat(graph.friendsOf(1).toArray()).containsExactly(2, 7);
+        assertThat(graph.friendsOf(3).isEmpty()).isTrue();
+        assertThat(graph.friendsOf(5).toArray()).containsExactly(6);
+        assertThat(graph.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class InMemoryStorageStressTest {
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 2_000;
+
+    @Test
+    @DisplayName("Параллельное создание фильмов и лайки не теряют обновлений")
+    void testConcurrentFilmsAndLikes() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        Film hot = storage.create(newFilm());
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                storage.create(newFilm());
+                long userId = (long) thread * PER_THREAD + i;
+                storage.addLike(hot.getId(), userId);
+                if (i % 2 == 0) {
+                    storage.removeLike(hot.getId(), userId);
+                }
+            }
+        });
+
+        assertThat(storage.findAll()).hasSize(THREADS * PER_THREAD + 1);
+        assertThat(storage.findAll()).extracting(Film::getId).doesNotHaveDuplicates();
+        assertThat(storage.getLikeCounts().get(hot.getId())).isEqualTo(THREADS * PER_THREAD / 2L);
+        assertThat(storage.getPopularFilms(3)).first().isEqualTo(hot);
+    }
+
+    @Test
+    @DisplayName("Топ строится частичной сортировкой в правильном порядке")
+    void testPopularFilmsOrder() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            films.add(storage.create(newFilm()));
+        }
+        for (long user = 0; user < 3; user++) {
+            storage.addLike(films.get(7).getId(), user);
+        }
+        storage.addLike(films.get(4).getId(), 1L);
+        storage.addLike(films.get(2).getId(), 1L);
+
+        Collection<Film> popular = storage.getPopularFilms(4);
+        assertThat(popular).extracting(Film::getId).containsExactly(
+                films.get(7).getId(), films.get(2).getId(), films.get(4).getId(), films.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("Параллельное добавление друзей не теряет обновлений")
+    void testConcurrentFriends() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        User popular = storage.create(newUser(0));
+        User other = storage.create(newUser(1));
+        List<User> users = new CopyOnWriteArrayList<>();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PER_THREAD / 10; i++) {
+                User user = storage.create(newUser(2 + thread * PER_THREAD + i));
+                users.add(user);
+                storage.addFriend(popular.getId(), user.getId());
+                if (i % 2 == 0) {
+                    storage.addFriend(other.getId(), user.getId());
+                }
+            }
+        });
+
+        assertThat(storage.getFriends(popular.getId())).hasSize(users.size());
+        assertThat(storage.getCommonFriends(popular.getId(), other.getId())).hasSize(users.size() / 2);
+
+        storage.delete(users.get(0).getId());
+        assertThat(storage.getFriends(popular.getId())).hasSize(users.size() - 1);
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Film newFilm() {
+        Film film = new Film();
+        film.setName("Film");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+
+    private static User newUser(int n) {
+        User user = new User();
+        user.setEmail("user" + n + "@example.com");
+        user.setLogin("user" + n);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
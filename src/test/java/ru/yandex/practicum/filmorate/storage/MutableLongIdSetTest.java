@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MutableLongIdSetTest {
+
+    @Test
+    @DisplayName("Добавление и удаление на месте совпадают с TreeSet при росте и сжатии массива")
+    void testMatchesTreeSet() {
+        Random random = new Random(11);
+        MutableLongIdSet set = new MutableLongIdSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            long id = random.nextInt(2_000);
+            // Сначала в основном добавления, затем в основном удаления, чтобы массив и вырос, и сжался
+            boolean add = random.nextInt(10) < (i < 10_000 ? 8 : 1);
+            if (add) {
+                assertThat(set.add(id)).isEqualTo(expected.add(id));
+            } else {
+                assertThat(set.remove(id)).isEqualTo(expected.remove(id));
+            }
+        }
+        assertThat(set.size()).isEqualTo(expected.size());
+        assertThat(set.snapshot().toArray()).containsExactly(expected.stream().mapToLong(Long::longValue).toArray());
+        assertThat(set.contains(expected.first())).isTrue();
+    }
+
+    @Test
+    @DisplayName("Снимок переиспользуется до изменения и не меняется вместе с множеством")
+    void testSnapshotIsStable() {
+        LongIdSet initial = LongIdSet.of(3, 1, 2);
+        MutableLongIdSet set = new MutableLongIdSet(initial);
+        assertThat(set.snapshot()).isSameAs(initial);
+
+        set.add(0);
+        set.remove(2);
+        LongIdSet snapshot = set.snapshot();
+        assertThat(snapshot.toArray()).containsExactly(0, 1, 3);
+        assertThat(set.snapshot()).isSameAs(snapshot);
+        // Исходное множество, с которого начиналось изменяемое, не затронуто
+        assertThat(initial.toArray()).containsExactly(1, 2, 3);
+
+        set.add(5);
+        assertThat(snapshot.toArray()).containsExactly(0, 1, 3);
+        assertThat(set.snapshot().toArray()).containsExactly(0, 1, 3, 5);
+
+        set.remove(0);
+        set.remove(1);
+        set.remove(3);
+        set.remove(5);
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.snapshot()).isSameAs(LongIdSet.EMPTY);
+    }
+}
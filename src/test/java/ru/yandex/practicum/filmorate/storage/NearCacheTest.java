@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NearCacheTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Long, String> loader = id -> {
+        loads.incrementAndGet();
+        return "value-" + id;
+    };
+
+    @Test
+    @DisplayName("Повторное чтение идёт из кэша, сброс записи заставляет загрузить её заново")
+    void testHitAndInvalidate() {
+        NearCache<String> cache = newCache(10, Duration.ZERO);
+
+        assertThat(cache.get(1L, loader)).isEqualTo("value-1");
+        assertThat(cache.get(1L, loader)).isEqualTo("value-1");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getHitRatio()).isEqualTo(0.5);
+
+        cache.invalidate(1L);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getMemoryEstimate()).isZero();
+        cache.get(1L, loader);
+        assertThat(loads).hasValue(2);
+
+        // Отсутствующая сущность не кэшируется
+        assertThat(cache.get(2L, id -> null)).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("При переполнении вытесняется запись, которую дольше всех не читали")
+    void testEvictsLeastRecentlyUsed() {
+        NearCache<String> cache = newCache(2, Duration.ZERO);
+
+        cache.get(1L, loader);
+        cache.get(2L, loader);
+        cache.get(1L, loader);
+        cache.get(3L, loader);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.getMemoryEstimate()).isEqualTo(2 * (NearCache.ENTRY_OVERHEAD_BYTES + 7));
+        cache.get(1L, loader);
+        assertThat(loads).hasValue(3);
+        cache.get(2L, loader);
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    @DisplayName("Запись с истёкшим временем жизни загружается заново")
+    void testExpiresAfterTtl() {
+        NearCache<String> cache = newCache(10, Duration.ofSeconds(1));
+
+        cache.get(1L, loader);
+        clock.addAndGet(Duration.ofMillis(999).toNanos());
+        cache.get(1L, loader);
+        assertThat(loads).hasValue(1);
+
+        clock.addAndGet(Duration.ofMillis(1).toNanos());
+        cache.get(1L, loader);
+        assertThat(loads).hasValue(2);
+        assertThat(cache.getExpirations()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Значение, загруженное до сброса, не попадает в кэш")
+    void testInvalidationDuringLoad() {
+        NearCache<String> cache = newCache(10, Duration.ZERO);
+
+        String stale = cache.get(1L, id -> {
+            cache.invalidate(id);
+            return "stale";
+        });
+        assertThat(stale).isEqualTo("stale");
+        assertThat(cache.size()).isZero();
+
+        cache.get(2L, id -> {
+            cache.clear();
+            return "stale";
+        });
+        assertThat(cache.get(2L, loader)).isEqualTo("value-2");
+    }
+
+    @Test
+    @DisplayName("Выключенный кэш каждый раз обращается к хранилищу")
+    void testDisabled() {
+        NearCache<String> cache = new NearCache<>(false, 10, Duration.ZERO, String::length, clock::get);
+
+        cache.get(1L, loader);
+        cache.get(1L, loader);
+        assertThat(loads).hasValue(2);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    @DisplayName("Запись, которую вызывающий считает устаревшей, загружается заново; пакет догружает только промахи")
+    void testFreshnessAndGetAll() {
+        NearCache<String> cache = newCache(10, Duration.ZERO);
+
+        cache.get(1L, loader);
+        assertThat(cache.get(1L, loader, value -> value.equals("value-1"))).isEqualTo("value-1");
+        assertThat(cache.get(1L, id -> "reloaded", value -> !value.equals("value-1"))).isEqualTo("reloaded");
+        assertThat(cache.getExpirations()).isEqualTo(1);
+        assertThat(cache.get(1L, loader)).isEqualTo("reloaded");
+
+        List<String> values = cache.getAll(List.of(3L, 1L, 2L), missing -> {
+            assertThat(missing).containsExactly(3L, 2L);
+            return Map.of(2L, "value-2");
+        });
+        assertThat(values).containsExactly(null, "reloaded", "value-2");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getAll(List.of(2L), missing -> Map.of())).containsExactly("value-2");
+    }
+
+    private NearCache<String> newCache(int maxEntries, Duration ttl) {
+        return new NearCache<>(true, maxEntries, ttl, String::length, clock::get);
+    }
+}
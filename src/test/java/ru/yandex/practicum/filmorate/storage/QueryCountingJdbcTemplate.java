@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JdbcTemplate для тестов, который считает все выполненные через него JDBC-запросы.
+ */
+public class QueryCountingJdbcTemplate extends JdbcTemplate {
+    private final AtomicInteger statements = new AtomicInteger();
+
+    public QueryCountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        statements.incrementAndGet();
+        super.applyStatementSettings(stmt);
+    }
+
+    public int getStatementCount() {
+        return statements.get();
+    }
+
+    public void reset() {
+        statements.set(0);
+    }
+}
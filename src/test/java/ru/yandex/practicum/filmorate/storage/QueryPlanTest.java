@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dump.DumpDbStorage;
+import ru.yandex.practicum.filmorate.storage.dump.DumpTable;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Планы H2 для всех запросов хранилищ: запросы, которые обслуживают отдельные HTTP-запросы,
+ * не должны читать таблицы целиком. Запросы идут мимо тестовой транзакции, поэтому
+ * у класса отдельный контекст и своя база.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({FilmDbStorage.class, UserDbStorage.class, GenreDbStorage.class, MpaDbStorage.class, DumpDbStorage.class,
+        QueryPlanTest.AdditionalConfig.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class QueryPlanTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    private final DumpDbStorage dumpStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @TestConfiguration
+    static class AdditionalConfig {
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(new StatementRecordingDataSource(dataSource));
+        }
+    }
+
+    @Test
+    @DisplayName("Запросы отдельных операций хранилищ идут по индексам, полный просмотр — только у выгрузок")
+    void testHotQueriesDoNotScanTables() {
+        StatementRecordingDataSource recorder = (StatementRecordingDataSource) jdbcTemplate.getDataSource();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            users.add(createUser("plan" + i));
+        }
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            films.add(createFilm("Plan film " + i));
+        }
+        long user = users.get(0).getId();
+        long other = users.get(1).getId();
+        long film = films.get(0).getId();
+        long otherFilm = films.get(1).getId();
+
+        recorder.clear();
+        filmStorage.findById(film);
+        filmStorage.findByIds(List.of(film, otherFilm));
+        filmStorage.existsById(film);
+        filmStorage.existsAll(List.of(film, otherFilm));
+        filmStorage.findPage(0, 10);
+        filmStorage.findVersion(film);
+        filmStorage.getPopularFilms(10);
+        filmStorage.search("plan", 10);
+        filmStorage.update(films.get(2));
+        filmStorage.addLike(film, user);
+        filmStorage.hasLike(film, user);
+        filmStorage.removeLike(film, user);
+        filmStorage.applyLikes(List.of(
+                new LikeOperation(film, other, LikeOperation.Type.ADD),
+                new LikeOperation(otherFilm, other, LikeOperation.Type.ADD),
+                new LikeOperation(otherFilm, other, LikeOperation.Type.REMOVE)));
+        filmStorage.streamLikesSince(Instant.now().minus(Duration.ofDays(30)), like -> {
+        });
+        userStorage.findById(user);
+        userStorage.findByIds(List.of(user, other));
+        userStorage.existsById(user);
+        userStorage.existsAll(List.of(user, other));
+        userStorage.findPage(0, 10);
+        userStorage.findVersion(user);
+        userStorage.update(users.get(2));
+        userStorage.addFriend(user, other);
+        userStorage.getFriends(user);
+        userStorage.getCommonFriends(user, other);
+        userStorage.getSuggestedFriends(user, 10, 100);
+        userStorage.removeFriend(user, other);
+        filmStorage.delete(films.get(2).getId());
+        userStorage.delete(users.get(2).getId());
+
+        Map<String, List<Object>> hot = recorder.getStatements();
+        assertThat(hot).isNotEmpty();
+        Map<String, String> scans = new LinkedHashMap<>();
+        hot.forEach((sql, args) -> {
+            String plan = explain(sql, args);
+            if (plan != null && plan.contains("tableScan")) {
+                scans.put(sql, plan);
+            }
+        });
+        assertThat(scans).as("Запросы с полным просмотром таблицы").isEmpty();
+
+        // Выгрузки и перестроение индексов в памяти читают таблицы целиком намеренно: для них планы
+        // только строятся, а полный просмотр в них заодно подтверждает, что проверка выше его распознаёт
+        recorder.clear();
+        filmStorage.findAll();
+        filmStorage.streamAll(f -> {
+        });
+        filmStorage.getLikeCounts();
+        filmStorage.getLikesByFilm();
+        filmStorage.reconcileLikeCounts();
+        filmStorage.reloadSearchIndex();
+        userStorage.findAll();
+        userStorage.streamAll(u -> {
+        });
+        userStorage.reloadFriendGraph();
+        genreStorage.refresh();
+        mpaStorage.refresh();
+        for (DumpTable table : DumpTable.values()) {
+            dumpStorage.export(table, row -> {
+            });
+        }
+        assertThat(recorder.getStatements().entrySet())
+                .extracting(entry -> explain(entry.getKey(), entry.getValue()))
+                .anyMatch(plan -> plan != null && plan.contains("tableScan"));
+    }
+
+    @Test
+    @DisplayName("Обратные связи лайков, дружбы и жанров читаются по индексам из миграций")
+    void testReverseLookupsUseIndexes() {
+        assertThat(explain("SELECT film_id FROM likes WHERE user_id = ?", List.of(1L)))
+                .containsIgnoringCase("IDX_LIKES_USER");
+        assertThat(explain("SELECT user_id FROM friendships WHERE friend_id = ?", List.of(1L)))
+                .containsIgnoringCase("IDX_FRIENDSHIPS_FRIEND");
+        assertThat(explain("SELECT film_id FROM film_genres WHERE genre_id = ?", List.of(1L)))
+                .containsIgnoringCase("IDX_FILM_GENRES_GENRE");
+    }
+
+    /**
+     * План запроса или null для вставок, у которых нет выбора пути доступа.
+     */
+    private String explain(String sql, List<Object> args) {
+        String statement = sql.toUpperCase(Locale.ROOT);
+        if (!statement.startsWith("SELECT") && !statement.startsWith("UPDATE") && !statement.startsWith("DELETE")) {
+            return null;
+        }
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args.toArray()));
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.create(user);
+    }
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Query plan");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1L);
+        film.setMpa(mpa);
+        Genre genre = new Genre();
+        genre.setId(1L);
+        film.setGenres(Set.of(genre));
+        return filmStorage.create(film);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({GenreDbStorage.class, MpaDbStorage.class, ReferenceDataCacheTest.AdditionalConfig.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ReferenceDataCacheTest {
+
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    private final QueryCountingJdbcTemplate jdbcTemplate;
+
+    @TestConfiguration
+    static class AdditionalConfig {
+        @Bean
+        public QueryCountingJdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new QueryCountingJdbcTemplate(dataSource);
+        }
+    }
+
+    @Test
+    @DisplayName("Справочники жанров и MPA читаются из памяти без запросов к БД")
+    void testLookupsDoNotQueryDatabase() {
+        long genreHits = genreStorage.getCache().getHits();
+        long genreMisses = genreStorage.getCache().getMisses();
+        long mpaMisses = mpaStorage.getCache().getMisses();
+        jdbcTemplate.reset();
+
+        assertThat(genreStorage.findAll()).isNotEmpty();
+        assertThat(genreStorage.findById(1L)).isPresent();
+        assertThat(genreStorage.findByIds(List.of(1L, 2L, 100L))).hasSize(2);
+        assertThat(mpaStorage.findAll()).hasSize(5);
+        assertThat(mpaStorage.findById(3L)).isPresent();
+        assertThat(mpaStorage.findById(100L)).isEmpty();
+
+        assertThat(jdbcTemplate.getStatementCount()).isZero();
+        assertThat(genreStorage.getCache().getMisses() - genreMisses).isEqualTo(1);
+        assertThat(mpaStorage.getCache().getMisses() - mpaMisses).isEqualTo(1);
+        assertThat(genreStorage.getCache().getHits() - genreHits).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("ETag справочника зависит только от содержимого")
+    void testVersionFollowsContent() {
+        // Кэш переживает откат транзакций соседних тестов, поэтому сначала сверяем его с БД
+        genreStorage.refresh();
+        mpaStorage.refresh();
+        EntityVersion before = genreStorage.getCache().getVersion();
+        EntityVersion mpaBefore = mpaStorage.getCache().getVersion();
+        genreStorage.refresh();
+        assertThat(genreStorage.getCache().getVersion()).isEqualTo(before);
+
+        Genre genre = new Genre();
+        genre.setName("Вестерн");
+        genreStorage.create(genre);
+        assertThat(genreStorage.getCache().getVersion().eTag()).isNotEqualTo(before.eTag());
+        // Справочник MPA не менялся, и его ETag остался прежним
+        mpaStorage.refresh();
+        assertThat(mpaStorage.getCache().getVersion().eTag()).isEqualTo(mpaBefore.eTag());
+    }
+
+    @Test
+    @DisplayName("Новый жанр сразу виден после create")
+    void testCreateRefreshesGenres() {
+        int before = genreStorage.findAll().size();
+        Genre genre = new Genre();
+        genre.setName("Фантастика");
+        genreStorage.create(genre);
+
+        assertThat(genreStorage.findAll())
+                .hasSize(before + 1)
+                .extracting(Genre::getName)
+                .contains("Фантастика");
+    }
+}
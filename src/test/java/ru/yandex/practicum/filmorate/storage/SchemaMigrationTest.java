@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Миграция базы, созданной исходными schema.sql и data.sql (копии в test/resources/db/legacy),
+ * с настройками Flyway из application.properties.
+ */
+class SchemaMigrationTest {
+
+    @Test
+    @DisplayName("База из исходного schema.sql получает все миграции и сохраняет данные")
+    void testMigratesLegacyDatabase() throws IOException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:legacy" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("db/legacy/schema.sql"), new ClassPathResource("db/legacy/data.sql"));
+        populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+        populator.execute(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("INSERT INTO users (email, login, name, birthday) VALUES ('a@b.ru', 'a', 'A', '2000-01-01')");
+        jdbc.update("INSERT INTO films (name, description, release_date, duration, mpa_id) " +
+                "VALUES ('Film', 'Описание', '2000-01-01', 100, 1)");
+        jdbc.update("INSERT INTO likes (film_id, user_id) VALUES (1, 1)");
+
+        Properties properties = PropertiesLoaderUtils.loadProperties(
+                new EncodedResource(new ClassPathResource("application.properties"), StandardCharsets.UTF_8));
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(Boolean.parseBoolean(properties.getProperty("spring.flyway.baseline-on-migrate")))
+                .baselineVersion(properties.getProperty("spring.flyway.baseline-version"))
+                .load()
+                .migrate();
+
+        assertThat(jdbc.queryForObject("SELECT like_count FROM films WHERE id = 1", Integer.class)).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT version FROM films WHERE id = 1", Long.class)).isZero();
+        assertThat(jdbc.queryForObject("SELECT version FROM users WHERE id = 1", Long.class)).isZero();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE created_at IS NULL", Integer.class))
+                .isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM replication_heartbeat", Integer.class)).isEqualTo(1);
+        // Справочники из data.sql не дублируются миграцией V4
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM genres", Integer.class)).isEqualTo(6);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM mpa_ratings", Integer.class)).isEqualTo(5);
+    }
+}
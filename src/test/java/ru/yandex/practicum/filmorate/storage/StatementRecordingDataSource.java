@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * DataSource для тестов, который запоминает текст каждого выполненного запроса и значения его параметров
+ * (для запроса, выполненного несколько раз, — последние).
+ */
+public class StatementRecordingDataSource extends DelegatingDataSource {
+    private final Map<String, List<Object>> statements = new LinkedHashMap<>();
+
+    public StatementRecordingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    public synchronized Map<String, List<Object>> getStatements() {
+        return new LinkedHashMap<>(statements);
+    }
+
+    public synchronized void clear() {
+        statements.clear();
+    }
+
+    private synchronized void record(String sql, Map<Integer, Object> parameters) {
+        List<Object> values = new ArrayList<>();
+        for (int i = 1; i <= parameters.size(); i++) {
+            values.add(parameters.get(i));
+        }
+        statements.put(sql.trim(), values);
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, (method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof PreparedStatement statement && args != null && args[0] instanceof String sql) {
+                return wrapPrepared(statement, sql);
+            }
+            if (result instanceof Statement statement) {
+                return wrapStatement(statement);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement wrapPrepared(PreparedStatement statement, String sql) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        return proxy(PreparedStatement.class, (method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, name.equals("setNull") ? null : args[1]);
+            } else if ((name.startsWith("execute") || name.equals("addBatch")) && (args == null || args.length == 0)) {
+                record(sql, parameters);
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private Statement wrapStatement(Statement statement) {
+        return proxy(Statement.class, (method, args) -> {
+            String name = method.getName();
+            if ((name.startsWith("execute") || name.equals("addBatch")) && args != null && args[0] instanceof String sql) {
+                record(sql, Map.of());
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method, args));
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+}
@@ -1,18 +1,25 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -23,6 +30,16 @@ import static org.assertj.core.api.Assertions.*;
 class UserDbStorageTest {
 
     private final UserDbStorage userStorage;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Тесты дружбы идут без общей транзакции теста: граф в памяти меняется только после фиксации,
+     * поэтому их пользователи удаляются явно.
+     */
+    @AfterEach
+    void deleteCommittedUsers() {
+        userStorage.findAll().forEach(user -> userStorage.delete(user.getId()));
+    }
 
     @Test
     @DisplayName("Проверяем, что после создания пользователя можно найти его по ID")
@@ -120,6 +137,7 @@ class UserDbStorageTest {
     }
 
     @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @DisplayName("Проверяем работу с друзьями (односторонняя дружба)")
     void testAddAndRemoveFriend() {
         // Создадим двух пользователей
@@ -151,4 +169,132 @@ class UserDbStorageTest {
         userStorage.removeFriend(user1.getId(), user2.getId());
         assertThat(userStorage.getFriends(user1.getId())).isEmpty();
     }
+
+    @Test
+    @DisplayName("Постраничная выдача по id и потоковое чтение всех пользователей")
+    void testFindPageAndStreamAll() {
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("page" + i + "@example.com");
+            user.setLogin("page" + i);
+            user.setName("Page " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userStorage.create(user);
+        }
+        List<Long> ids = userStorage.findAll().stream().map(User::getId).sorted().toList();
+
+        assertThat(userStorage.findPage(0, 2)).extracting(User::getId).containsExactly(ids.get(0), ids.get(1));
+        assertThat(userStorage.findPage(ids.get(1), 2)).extracting(User::getId).containsExactly(ids.get(2));
+
+        List<User> streamed = new ArrayList<>();
+        userStorage.streamAll(streamed::add);
+        assertThat(streamed).extracting(User::getId).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    @DisplayName("Проверка существования пользователей без загрузки")
+    void testExistsById() {
+        User user = new User();
+        user.setEmail("exists@example.com");
+        user.setLogin("exists");
+        user.setName("Exists");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user = userStorage.create(user);
+
+        assertThat(userStorage.existsById(user.getId())).isTrue();
+        assertThat(userStorage.existsById(-1L)).isFalse();
+        assertThat(userStorage.existsAll(List.of(user.getId()))).isTrue();
+        assertThat(userStorage.existsAll(List.of(user.getId(), -1L))).isFalse();
+
+        // Удаление несуществующей дружбы сообщает, что ничего не изменилось
+        assertThat(userStorage.removeFriend(user.getId(), -1L)).isFalse();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Общие друзья считаются по графу в памяти, который совпадает с таблицей после перезагрузки")
+    void testCommonFriendsFromFriendGraph() {
+        User user1 = createUser("common1");
+        User user2 = createUser("common2");
+        User friend1 = createUser("friend1");
+        User friend2 = createUser("friend2");
+        User friend3 = createUser("friend3");
+
+        userStorage.addFriend(user1.getId(), friend1.getId());
+        userStorage.addFriend(user1.getId(), friend2.getId());
+        userStorage.addFriend(user1.getId(), friend3.getId());
+        userStorage.addFriend(user2.getId(), friend3.getId());
+        userStorage.addFriend(user2.getId(), friend1.getId());
+
+        assertThat(userStorage.getCommonFriends(user1.getId(), user2.getId()))
+                .extracting(User::getId)
+                .containsExactly(friend1.getId(), friend3.getId());
+
+        // Удаление пользователя убирает его из чужих списков, как ON DELETE CASCADE в БД
+        userStorage.delete(friend3.getId());
+        assertThat(userStorage.getCommonFriends(user1.getId(), user2.getId()))
+                .extracting(User::getId)
+                .containsExactly(friend1.getId());
+        assertThat(userStorage.getFriends(user1.getId()))
+                .extracting(User::getId)
+                .containsExactly(friend1.getId(), friend2.getId());
+
+        userStorage.reloadFriendGraph();
+        assertThat(userStorage.getFriends(user1.getId()))
+                .extracting(User::getId)
+                .containsExactly(friend1.getId(), friend2.getId());
+        assertThat(userStorage.getCommonFriends(user1.getId(), user2.getId()))
+                .extracting(User::getId)
+                .containsExactly(friend1.getId());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Граф дружбы меняется только после фиксации транзакции, откат его не затрагивает")
+    void testFriendGraphFollowsCommit() {
+        User user = createUser("tx1");
+        User friend = createUser("tx2");
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            userStorage.addFriend(user.getId(), friend.getId());
+            status.setRollbackOnly();
+        });
+        assertThat(userStorage.getFriends(user.getId())).isEmpty();
+
+        transaction.executeWithoutResult(status -> {
+            userStorage.addFriend(user.getId(), friend.getId());
+            // До фиксации граф показывает прежнее состояние
+            assertThat(userStorage.getFriends(user.getId())).isEmpty();
+        });
+        assertThat(userStorage.getFriends(user.getId())).extracting(User::getId).containsExactly(friend.getId());
+
+        transaction.executeWithoutResult(status -> {
+            userStorage.removeFriend(user.getId(), friend.getId());
+            userStorage.delete(friend.getId());
+            status.setRollbackOnly();
+        });
+        assertThat(userStorage.getFriends(user.getId())).extracting(User::getId).containsExactly(friend.getId());
+    }
+
+    @Test
+    @DisplayName("Пакетная загрузка пользователей сохраняет порядок id и пропускает отсутствующие")
+    void testFindByIds() {
+        User user1 = createUser("batch1");
+        User user2 = createUser("batch2");
+
+        assertThat(userStorage.findByIds(List.of(user2.getId(), -1L, user1.getId())))
+                .extracting(User::getId)
+                .containsExactly(user2.getId(), user1.getId());
+        assertThat(userStorage.findByIds(List.of())).isEmpty();
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.create(user);
+    }
 }